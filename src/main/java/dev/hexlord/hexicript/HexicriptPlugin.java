@@ -9,6 +9,7 @@ import dev.hexlord.hexicript.core.ScriptManager;
 import dev.hexlord.hexicript.events.HexicriptEventManager;
 import dev.hexlord.hexicript.integrations.IntegrationManager;
 import dev.hexlord.hexicript.metrics.MetricsManager;
+import dev.hexlord.hexicript.scheduler.ScriptScheduler;
 import dev.hexlord.hexicript.storage.DataManager;
 import dev.hexlord.hexicript.utils.Logger;
 import dev.hexlord.hexicript.utils.UpdateChecker;
@@ -36,6 +37,7 @@ public class HexicriptPlugin extends JavaPlugin {
     private ConfigManager configManager;
     private ScriptEngine scriptEngine;
     private ScriptManager scriptManager;
+    private ScriptScheduler scheduler;
     private HexicriptEventManager eventManager;
     private DataManager dataManager;
     private MetricsManager metricsManager;
@@ -83,6 +85,9 @@ public class HexicriptPlugin extends JavaPlugin {
             // Load scripts
             loadScripts();
             
+            // Reschedule persistent tasks now that their scripts are loaded
+            scheduler.restorePersistentTasks();
+            
             // Register event listeners
             registerEventListeners();
             
@@ -137,9 +142,17 @@ public class HexicriptPlugin extends JavaPlugin {
             dataManager.saveAll();
         }
         
+        // Cancel scheduled scripts
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        
         // Stop script engine
         if (scriptEngine != null) {
             scriptEngine.shutdown();
+            
+            // Flush pending variable writes once no script can produce more
+            scriptEngine.getVariableManager().shutdown();
         }
         
         // Unregister all listeners
@@ -186,9 +199,6 @@ public class HexicriptPlugin extends JavaPlugin {
         // Initialize configuration manager
         configManager = new ConfigManager(this);
         
-        // Initialize script engine
-        scriptEngine = new ScriptEngine(this);
-        
         // Initialize data manager
         dataManager = new DataManager(this);
         
@@ -226,7 +236,10 @@ public class HexicriptPlugin extends JavaPlugin {
             // Initialize core components
             variableManager = new VariableManager(this);
             scriptEngine = new ScriptEngine(this);
+            scriptEngine.start();
             scriptManager = new ScriptManager(this);
+            scheduler = new ScriptScheduler(this);
+            scheduler.start();
             eventManager = new HexicriptEventManager(this);
             dataManager = new DataManager(this);
             integrationManager = new IntegrationManager(this);
@@ -471,6 +484,7 @@ public class HexicriptPlugin extends JavaPlugin {
     public ConfigManager getConfigManager() { return configManager; }
     public ScriptEngine getScriptEngine() { return scriptEngine; }
     public ScriptManager getScriptManager() { return scriptManager; }
+    public ScriptScheduler getScheduler() { return scheduler; }
     public HexicriptEventManager getEventManager() { return eventManager; }
     public DataManager getDataManager() { return dataManager; }
     public MetricsManager getMetricsManager() { return metricsManager; }
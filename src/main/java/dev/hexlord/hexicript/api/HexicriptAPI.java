@@ -1,6 +1,8 @@
 package dev.hexlord.hexicript.api;
 
 import dev.hexlord.hexicript.core.Script;
+import dev.hexlord.hexicript.core.variables.VariableSubscription;
+import dev.hexlord.hexicript.core.variables.VariableWatcher;
 import org.bukkit.command.CommandSender;
 import org.bukkit.plugin.Plugin;
 
@@ -50,6 +52,14 @@ public interface HexicriptAPI {
      */
     void unregisterFunction(String namespace, String functionName);
     
+    /**
+     * Watch a script variable for changes
+     * @param variable The variable reference, e.g. "{score}" or "{kills::%player%}"
+     * @param watcher Called on the main thread at most once per tick per variable with its latest value
+     * @return The subscription; cancel it to stop watching
+     */
+    VariableSubscription watchVariable(String variable, VariableWatcher watcher);
+    
     /**
      * Check if a script with the given name exists
      */
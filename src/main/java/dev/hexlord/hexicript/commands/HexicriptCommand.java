@@ -1,7 +1,11 @@
 package dev.hexlord.hexicript.commands;
 
 import dev.hexlord.hexicript.HexicriptPlugin;
+import dev.hexlord.hexicript.core.memory.ScriptMemoryTracker;
+import dev.hexlord.hexicript.core.memory.ScriptMemoryUsage;
 import dev.hexlord.hexicript.core.script.Script;
+import dev.hexlord.hexicript.events.EventRecorder;
+import dev.hexlord.hexicript.scheduler.LoadGovernor;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -9,6 +13,8 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -73,6 +79,9 @@ public class HexicriptCommand implements CommandExecutor, TabCompleter {
             case "perf":
                 return handlePerformance(sender, args);
                 
+            case "record":
+                return handleRecord(sender, args);
+                
             case "version":
                 return handleVersion(sender, args);
                 
@@ -99,6 +108,7 @@ public class HexicriptCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(ChatColor.GREEN + "/hexicript test <script>" + ChatColor.GRAY + " - Test script syntax");
         sender.sendMessage(ChatColor.GREEN + "/hexicript variables [player]" + ChatColor.GRAY + " - View script variables");
         sender.sendMessage(ChatColor.GREEN + "/hexicript performance" + ChatColor.GRAY + " - View performance statistics");
+        sender.sendMessage(ChatColor.GREEN + "/hexicript record <start [name]|stop>" + ChatColor.GRAY + " - Record script events for replay");
         sender.sendMessage(ChatColor.GREEN + "/hexicript version" + ChatColor.GRAY + " - Show plugin version");
         sender.sendMessage(ChatColor.GREEN + "/hexicript help" + ChatColor.GRAY + " - Show this help menu");
         sender.sendMessage("");
@@ -205,12 +215,28 @@ public class HexicriptCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage(ChatColor.YELLOW + "Description: " + ChatColor.WHITE + script.getDescription());
         }
         
+        sender.sendMessage(ChatColor.YELLOW + "Priority: " + ChatColor.WHITE + script.getPriority().name().toLowerCase());
         sender.sendMessage(ChatColor.YELLOW + "Statements: " + ChatColor.WHITE + script.getStatements().size());
         sender.sendMessage(ChatColor.YELLOW + "Functions: " + ChatColor.WHITE + script.getDefinedFunctions().size());
         sender.sendMessage(ChatColor.YELLOW + "Events: " + ChatColor.WHITE + script.getUsedEvents().size());
         sender.sendMessage(ChatColor.YELLOW + "Variables: " + ChatColor.WHITE + script.getUsedVariables().size());
         sender.sendMessage(ChatColor.YELLOW + "Executions: " + ChatColor.WHITE + script.getExecutionCount());
         
+        ScriptMemoryTracker memoryTracker = plugin.getScriptEngine().getMemoryTracker();
+        ScriptMemoryUsage memory = memoryTracker.getUsage(script.getName());
+        if (memory != null) {
+            String limit = memoryTracker.getLimitBytes() > 0
+                ? " / " + ScriptMemoryTracker.formatBytes(memoryTracker.getLimitBytes()) : "";
+            ChatColor stateColor = memory.getState() == ScriptMemoryUsage.State.NORMAL ? ChatColor.GREEN
+                : memory.getState() == ScriptMemoryUsage.State.WARNED ? ChatColor.GOLD : ChatColor.RED;
+            sender.sendMessage(ChatColor.YELLOW + "Memory: " + ChatColor.WHITE +
+                             ScriptMemoryTracker.formatBytes(memory.getTotalBytes()) + limit + " " +
+                             stateColor + "(" + memory.getState().name().toLowerCase() + ")");
+            sender.sendMessage(ChatColor.GRAY + "  Variables: " + ScriptMemoryTracker.formatBytes(memory.getVariableBytes()) +
+                             ", Compiled: " + ScriptMemoryTracker.formatBytes(memory.getCompiledBytes()) +
+                             ", Templates: " + ScriptMemoryTracker.formatBytes(memory.getTemplateBytes()));
+        }
+        
         if (script.getExecutionCount() > 0) {
             sender.sendMessage(ChatColor.YELLOW + "Avg Execution Time: " + ChatColor.WHITE + 
                              script.getAverageExecutionTime() + "ms");
@@ -351,6 +377,14 @@ public class HexicriptCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(ChatColor.YELLOW + "Average Execution Time: " + ChatColor.WHITE + engine.getAverageExecutionTime() + "ms");
         sender.sendMessage(ChatColor.YELLOW + "Scripts Loaded: " + ChatColor.WHITE + plugin.getScriptsLoaded());
         
+        LoadGovernor governor = plugin.getScheduler().getLoadGovernor();
+        sender.sendMessage(ChatColor.YELLOW + "Tick Time: " + ChatColor.WHITE + String.format("%.1f", governor.getAverageMspt()) + "ms " +
+                         (governor.getLevel() == LoadGovernor.Level.NORMAL ? ChatColor.GREEN : ChatColor.GOLD) +
+                         "(" + governor.getLevel().name().toLowerCase() + ")");
+        if (governor.getDeferredCount() > 0) {
+            sender.sendMessage(ChatColor.YELLOW + "Deferred Executions: " + ChatColor.WHITE + governor.getDeferredCount());
+        }
+        
         if (metricsManager != null) {
             var metrics = metricsManager.getMetrics();
             sender.sendMessage(ChatColor.YELLOW + "Memory Usage: " + ChatColor.WHITE + metrics.get("memory_usage"));
@@ -360,6 +394,56 @@ public class HexicriptCommand implements CommandExecutor, TabCompleter {
         return true;
     }
     
+    /**
+     * Handle record command
+     * Traces are written to the traces folder and replayed offline with the ReplayDriver of the test sources
+     */
+    private boolean handleRecord(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("hexicript.admin")) {
+            sender.sendMessage(ChatColor.RED + "You don't have permission to record events!");
+            return true;
+        }
+        
+        var router = plugin.getScriptEngine().getEventRouter();
+        String action = args.length > 1 ? args[1].toLowerCase() : "";
+        
+        if (action.equals("start")) {
+            String name = args.length > 2 ? args[2] : "trace-" + System.currentTimeMillis();
+            if (!name.matches("[A-Za-z0-9_-]+")) {
+                sender.sendMessage(ChatColor.RED + "Trace names may only contain letters, digits, - and _");
+                return true;
+            }
+            
+            File file = new File(new File(plugin.getDataFolder(), "traces"), name + ".hxtrace");
+            try {
+                router.startRecording(file);
+                sender.sendMessage(ChatColor.GREEN + "⏺ Recording events to " + ChatColor.WHITE + "traces/" + file.getName());
+            } catch (IOException e) {
+                sender.sendMessage(ChatColor.RED + "Could not start recording: " + e.getMessage());
+            }
+            return true;
+        }
+        
+        if (action.equals("stop")) {
+            EventRecorder recorder = router.stopRecording();
+            if (recorder == null) {
+                sender.sendMessage(ChatColor.RED + "No recording is running.");
+            } else {
+                sender.sendMessage(ChatColor.GREEN + "⏹ Recorded " + ChatColor.WHITE + recorder.getEventCount() +
+                                 ChatColor.GREEN + " events in " + ChatColor.WHITE + (recorder.getDuration() / 1000) + "s" +
+                                 ChatColor.GREEN + " to " + ChatColor.WHITE + "traces/" + recorder.getFile().getName());
+            }
+            return true;
+        }
+        
+        EventRecorder recorder = router.getRecorder();
+        if (recorder != null) {
+            sender.sendMessage(ChatColor.YELLOW + "Recording: " + ChatColor.WHITE + recorder.getEventCount() + " events to traces/" + recorder.getFile().getName());
+        }
+        sender.sendMessage(ChatColor.GRAY + "Usage: " + ChatColor.YELLOW + "/hexicript record <start [name]|stop>");
+        return true;
+    }
+    
     /**
      * Handle version command
      */
@@ -392,7 +476,7 @@ public class HexicriptCommand implements CommandExecutor, TabCompleter {
             // First argument - subcommands
             List<String> subCommands = Arrays.asList(
                 "reload", "list", "info", "enable", "disable", "test", 
-                "variables", "performance", "version", "help"
+                "variables", "performance", "record", "version", "help"
             );
             
             return subCommands.stream()
@@ -413,6 +497,12 @@ public class HexicriptCommand implements CommandExecutor, TabCompleter {
                         .collect(Collectors.toList());
             }
             
+            if (subCommand.equals("record")) {
+                return Arrays.asList("start", "stop").stream()
+                        .filter(action -> action.startsWith(args[1].toLowerCase()))
+                        .collect(Collectors.toList());
+            }
+            
             if (subCommand.equals("variables")) {
                 // Player names
                 return null; // Let Bukkit handle player name completion
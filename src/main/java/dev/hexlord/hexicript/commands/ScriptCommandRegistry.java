@@ -0,0 +1,555 @@
+package dev.hexlord.hexicript.commands;
+
+import dev.hexlord.hexicript.core.ScriptEngine;
+import dev.hexlord.hexicript.core.execution.ExecutionContext;
+import dev.hexlord.hexicript.core.script.Script;
+import dev.hexlord.hexicript.core.script.ScriptStatement;
+import dev.hexlord.hexicript.utils.Logger;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandMap;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Commands defined by scripts, such as command "spleef join <arena>"
+ *
+ * Every command and alias of every active script is compiled into one token
+ * trie per root label whenever a script is loaded or unloaded. Running a
+ * command is then a single walk down the trie, binding argument tokens as it
+ * goes, and the handler runs with them as locals: {arg-arena} by name and
+ * {arg-1} by position, plus {args} for everything after the label. An
+ * argument written as <name...> takes the rest of the line.
+ *
+ * Tab completions for each node are computed while building the trie, so
+ * completing only filters a sorted array by prefix and by the permissions the
+ * sender holds. Each root label is registered with Bukkit the first time a
+ * script uses it and dispatches into whatever trie is current; it is removed
+ * from the command map again once no active script uses it.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public class ScriptCommandRegistry {
+    
+    private static final String[] NO_STRINGS = new String[0];
+    
+    // Usage lines shown for a command that does not match
+    private static final int MAX_USAGES = 8;
+    
+    private final ScriptEngine engine;
+    
+    // Tries by root label; never modified, only replaced
+    private volatile Map<String, Node> roots;
+    
+    // Commands of each active script in load order, guarded by this
+    private final Map<String, List<Definition>> definitions;
+    
+    // Bukkit commands registered so far by root label, only touched on the main thread
+    private final Map<String, RootCommand> registered;
+    private CommandMap commandMap;
+    private Map<String, Command> knownCommands;
+    
+    /**
+     * One command of a script, under its main path or one of its aliases
+     */
+    private static final class Definition {
+        private final Script script;
+        private final ScriptStatement statement;
+        private final String[] tokens;
+        private final String permission;
+        
+        private Definition(Script script, ScriptStatement statement, String[] tokens) {
+            this.script = script;
+            this.statement = statement;
+            this.tokens = tokens;
+            this.permission = (String) statement.getProperty("permission");
+        }
+        
+        private String usage() {
+            return "/" + String.join(" ", tokens);
+        }
+    }
+    
+    /**
+     * A position in a command: the literal words that may follow, the argument
+     * slot, and the command that ends here, if any
+     */
+    private static final class Node {
+        private final Map<String, Node> literals = new HashMap<>();
+        private Node argument;
+        private Node greedy;
+        private Definition definition;
+        
+        // Sorted literal completions, and the permission needed to see each (null if anyone may)
+        private String[] completions = NO_STRINGS;
+        private String[] completionPermissions = NO_STRINGS;
+        private String[] usages = NO_STRINGS;
+        
+        // Name of the argument accepted here, for player name completion
+        private String argumentName;
+    }
+    
+    /**
+     * A root label registered with Bukkit, dispatching into the current trie
+     */
+    private final class RootCommand extends Command {
+        private RootCommand(String label) {
+            super(label, "Script command", "/" + label, Collections.emptyList());
+        }
+        
+        @Override
+        public boolean execute(CommandSender sender, String label, String[] args) {
+            if (!dispatch(sender, getName(), args)) {
+                sender.sendMessage(ChatColor.RED + "Unknown command. Type \"/help\" for help.");
+            }
+            return true;
+        }
+        
+        @Override
+        public List<String> tabComplete(CommandSender sender, String alias, String[] args) {
+            return complete(sender, getName(), args);
+        }
+    }
+    
+    public ScriptCommandRegistry(ScriptEngine engine) {
+        this.engine = engine;
+        this.roots = Collections.emptyMap();
+        this.definitions = new LinkedHashMap<>();
+        this.registered = new HashMap<>();
+    }
+    
+    /**
+     * Add the commands of a script, replacing those of an earlier version
+     */
+    public synchronized void register(Script script) {
+        List<Definition> added = new ArrayList<>();
+        for (ScriptStatement statement : script.getStatements()) {
+            if (statement.getType() != ScriptStatement.Type.COMMAND || statement.getCommand() == null) {
+                continue;
+            }
+            
+            String[] tokens = tokenize(statement.getCommand());
+            added.add(new Definition(script, statement, tokens));
+            
+            // An alias replaces the literal words before the first argument
+            int literalCount = 0;
+            while (literalCount < tokens.length && !tokens[literalCount].startsWith("<")) {
+                literalCount++;
+            }
+            Object aliases = statement.getProperty("aliases");
+            if (aliases instanceof List) {
+                for (Object alias : (List<?>) aliases) {
+                    List<String> aliasTokens = new ArrayList<>(Arrays.asList(tokenize(alias.toString())));
+                    aliasTokens.addAll(Arrays.asList(tokens).subList(literalCount, tokens.length));
+                    added.add(new Definition(script, statement, aliasTokens.toArray(NO_STRINGS)));
+                }
+            }
+        }
+        
+        definitions.remove(script.getName());
+        if (!added.isEmpty()) {
+            definitions.put(script.getName(), added);
+        }
+        rebuild();
+    }
+    
+    /**
+     * Remove the commands of a script
+     */
+    public synchronized void unregister(String scriptName) {
+        if (definitions.remove(scriptName) != null) {
+            rebuild();
+        }
+    }
+    
+    private static String[] tokenize(String command) {
+        String trimmed = command.trim();
+        if (trimmed.startsWith("/")) {
+            trimmed = trimmed.substring(1);
+        }
+        return trimmed.isEmpty() ? NO_STRINGS : trimmed.split("\\s+");
+    }
+    
+    /**
+     * Compile every active command into fresh tries and swap them in
+     */
+    private void rebuild() {
+        Map<String, Node> next = new HashMap<>();
+        
+        for (List<Definition> scriptDefinitions : definitions.values()) {
+            for (Definition definition : scriptDefinitions) {
+                insert(next, definition);
+            }
+        }
+        next.values().forEach(ScriptCommandRegistry::freeze);
+        
+        roots = Collections.unmodifiableMap(next);
+        updateCommands();
+    }
+    
+    private static void insert(Map<String, Node> tries, Definition definition) {
+        String[] tokens = definition.tokens;
+        if (tokens.length == 0 || tokens[0].startsWith("<")) {
+            Logger.warning("Command '" + definition.usage() + "' of script '" + definition.script.getName() +
+                           "' must start with a word (line " + definition.statement.getLineNumber() + ")");
+            return;
+        }
+        
+        Node node = tries.computeIfAbsent(tokens[0].toLowerCase(), k -> new Node());
+        for (int i = 1; i < tokens.length; i++) {
+            String token = tokens[i];
+            if (token.startsWith("<") && token.endsWith("...>")) {
+                if (i != tokens.length - 1) {
+                    Logger.warning("Only the last argument of command '" + definition.usage() + "' may take the rest of the line");
+                    return;
+                }
+                if (node.greedy == null) {
+                    node.greedy = new Node();
+                }
+                node = node.greedy;
+            } else if (token.startsWith("<") && token.endsWith(">")) {
+                if (node.argument == null) {
+                    node.argument = new Node();
+                    node.argumentName = argumentName(token);
+                }
+                node = node.argument;
+            } else {
+                node = node.literals.computeIfAbsent(token.toLowerCase(), k -> new Node());
+            }
+        }
+        
+        if (node.definition != null) {
+            Logger.warning("Command '" + definition.usage() + "' of script '" + definition.script.getName() +
+                           "' is already defined by script '" + node.definition.script.getName() + "'");
+            return;
+        }
+        node.definition = definition;
+    }
+    
+    private static String argumentName(String token) {
+        String name = token.substring(1, token.length() - 1);
+        return name.endsWith("...") ? name.substring(0, name.length() - 3) : name;
+    }
+    
+    /**
+     * Precompute the completions and usage lines of a node and everything below it
+     * @return The permission needed for every command below, or null if some need none
+     */
+    private static String freeze(Node node) {
+        TreeMap<String, String> completions = new TreeMap<>();
+        List<String> usages = new ArrayList<>();
+        boolean open = false;
+        String shared = null;
+        
+        if (node.definition != null) {
+            usages.add(node.definition.usage());
+            open = node.definition.permission == null;
+            shared = node.definition.permission;
+        }
+        
+        for (Map.Entry<String, Node> literal : node.literals.entrySet()) {
+            String permission = freeze(literal.getValue());
+            completions.put(literal.getKey(), permission);
+            usages.addAll(Arrays.asList(literal.getValue().usages));
+            
+            if (permission == null) {
+                open = true;
+            } else if (shared == null) {
+                shared = permission;
+            } else if (!shared.equals(permission)) {
+                open = true;
+            }
+        }
+        for (Node child : new Node[] { node.argument, node.greedy }) {
+            if (child == null) {
+                continue;
+            }
+            String permission = freeze(child);
+            usages.addAll(Arrays.asList(child.usages));
+            if (permission == null || (shared != null && !shared.equals(permission))) {
+                open = true;
+            } else {
+                shared = permission;
+            }
+        }
+        
+        node.completions = completions.keySet().toArray(NO_STRINGS);
+        node.completionPermissions = completions.values().toArray(new String[0]);
+        Collections.sort(usages);
+        node.usages = usages.subList(0, Math.min(usages.size(), MAX_USAGES)).toArray(NO_STRINGS);
+        return open ? null : shared;
+    }
+    
+    /**
+     * Register Bukkit commands for newly used root labels and remove those no script uses any more
+     */
+    private void updateCommands() {
+        if (!Bukkit.isPrimaryThread()) {
+            // The command map is only touched on the main thread
+            engine.getPlugin().getScheduler().getMainThreadQueue().execute(this::updateCommands);
+            return;
+        }
+        
+        CommandMap map = getCommandMap();
+        if (map == null) {
+            return;
+        }
+        
+        Map<String, Node> current = roots;
+        boolean changed = false;
+        for (String label : current.keySet()) {
+            if (registered.containsKey(label)) {
+                continue;
+            }
+            
+            RootCommand command = new RootCommand(label);
+            if (!map.register("hexicript", command)) {
+                Logger.warning("Command /" + label + " is taken by another plugin, scripts can use /hexicript:" + label);
+            }
+            registered.put(label, command);
+            changed = true;
+        }
+        
+        Iterator<Map.Entry<String, RootCommand>> entries = registered.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, RootCommand> entry = entries.next();
+            if (!current.containsKey(entry.getKey())) {
+                removeCommand(map, entry.getKey(), entry.getValue());
+                entries.remove();
+                changed = true;
+            }
+        }
+        
+        if (changed) {
+            // Clients only suggest commands they were told about
+            Bukkit.getOnlinePlayers().forEach(Player::updateCommands);
+        }
+    }
+    
+    /**
+     * Take a root label out of the command map, under both its plain and its prefixed name
+     * Labels another plugin registered in the meantime are left alone
+     */
+    private void removeCommand(CommandMap map, String label, RootCommand command) {
+        command.unregister(map);
+        
+        Map<String, Command> known = getKnownCommands(map);
+        if (known != null) {
+            known.remove(label, command);
+            known.remove("hexicript:" + label, command);
+        }
+    }
+    
+    private CommandMap getCommandMap() {
+        if (commandMap == null) {
+            try {
+                // Not part of the Bukkit API, but every server implementation has it
+                commandMap = (CommandMap) Bukkit.getServer().getClass().getMethod("getCommandMap").invoke(Bukkit.getServer());
+            } catch (ReflectiveOperationException e) {
+                Logger.error("Cannot register script commands: " + e.getMessage());
+            }
+        }
+        return commandMap;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Map<String, Command> getKnownCommands(CommandMap map) {
+        if (knownCommands == null) {
+            try {
+                // SimpleCommandMap exposes it on newer servers, older ones only have the field
+                knownCommands = (Map<String, Command>) map.getClass().getMethod("getKnownCommands").invoke(map);
+            } catch (ReflectiveOperationException e) {
+                for (Class<?> type = map.getClass(); type != null && knownCommands == null; type = type.getSuperclass()) {
+                    try {
+                        Field field = type.getDeclaredField("knownCommands");
+                        field.setAccessible(true);
+                        knownCommands = (Map<String, Command>) field.get(map);
+                    } catch (ReflectiveOperationException ignored) {
+                        // Try the superclass
+                    }
+                }
+                if (knownCommands == null) {
+                    Logger.warning("Cannot remove script commands from the command map, they stay until restart");
+                }
+            }
+        }
+        return knownCommands;
+    }
+    
+    /**
+     * Run the script command a sender typed
+     * @return false if no script defines a command with this label
+     */
+    public boolean dispatch(CommandSender sender, String label, String[] args) {
+        Node root = roots.get(label.toLowerCase());
+        if (root == null) {
+            return false;
+        }
+        
+        List<String> values = new ArrayList<>(4);
+        Node target = match(root, args, 0, values);
+        if (target == null || !target.definition.script.isEnabled()) {
+            sendUsage(sender, root, args);
+            return true;
+        }
+        
+        Definition definition = target.definition;
+        if (definition.permission != null && !sender.hasPermission(definition.permission)) {
+            sender.sendMessage(ChatColor.RED + "You don't have permission to use this command!");
+            return true;
+        }
+        
+        run(sender, definition, args, values);
+        return true;
+    }
+    
+    /**
+     * Walk the trie, preferring literal words over arguments, and collect the argument values
+     * @return The node of the matched command, or null if none matches all tokens
+     */
+    private static Node match(Node node, String[] args, int index, List<String> values) {
+        if (index == args.length) {
+            return node.definition != null ? node : null;
+        }
+        
+        Node literal = node.literals.get(args[index].toLowerCase());
+        if (literal != null) {
+            Node found = match(literal, args, index + 1, values);
+            if (found != null) {
+                return found;
+            }
+        }
+        
+        if (node.argument != null) {
+            values.add(args[index]);
+            Node found = match(node.argument, args, index + 1, values);
+            if (found != null) {
+                return found;
+            }
+            values.remove(values.size() - 1);
+        }
+        
+        if (node.greedy != null && node.greedy.definition != null) {
+            values.add(String.join(" ", Arrays.copyOfRange(args, index, args.length)));
+            return node.greedy;
+        }
+        return null;
+    }
+    
+    /**
+     * Show the commands below the longest run of words that matched
+     */
+    private void sendUsage(CommandSender sender, Node root, String[] args) {
+        Node node = root;
+        for (String arg : args) {
+            Node literal = node.literals.get(arg.toLowerCase());
+            if (literal == null) {
+                break;
+            }
+            node = literal;
+        }
+        
+        sender.sendMessage(ChatColor.RED + "Usage:");
+        for (String usage : node.usages) {
+            sender.sendMessage(ChatColor.GRAY + "  " + usage);
+        }
+    }
+    
+    /**
+     * Run a command handler with its arguments as locals
+     */
+    private void run(CommandSender sender, Definition definition, String[] args, List<String> values) {
+        Script script = definition.script;
+        
+        ExecutionContext context = new ExecutionContext(sender instanceof Player ? (Player) sender : null, engine.getVariableManager());
+        context.setEventType("command");
+        context.setVariable("command", definition.usage());
+        context.setVariable("args", String.join(" ", args));
+        
+        int position = 0;
+        for (String token : definition.tokens) {
+            if (token.startsWith("<")) {
+                String value = values.get(position++);
+                context.setVariable("arg-" + argumentName(token), value);
+                context.setVariable("arg-" + position, value);
+            }
+        }
+        
+        engine.executeHandler(script, definition.statement, context).thenAccept(result -> {
+            if (result.isError()) {
+                Logger.error("Error in command " + definition.usage() + " of script '" + script.getName() + "': " + result.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Complete the last argument a sender is typing
+     */
+    public List<String> complete(CommandSender sender, String label, String[] args) {
+        Node node = roots.get(label.toLowerCase());
+        if (node == null || args.length == 0) {
+            return Collections.emptyList();
+        }
+        
+        for (int i = 0; i < args.length - 1 && node != null; i++) {
+            Node literal = node.literals.get(args[i].toLowerCase());
+            if (literal != null) {
+                node = literal;
+            } else if (node.greedy != null) {
+                return Collections.emptyList();
+            } else {
+                node = node.argument;
+            }
+        }
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        
+        String prefix = args[args.length - 1].toLowerCase();
+        List<String> completions = new ArrayList<>();
+        
+        // Completions are sorted, so those sharing the prefix are one run starting at its insertion point
+        int start = Arrays.binarySearch(node.completions, prefix);
+        for (int i = start < 0 ? -start - 1 : start; i < node.completions.length && node.completions[i].startsWith(prefix); i++) {
+            String permission = node.completionPermissions[i];
+            if (permission == null || sender.hasPermission(permission)) {
+                completions.add(node.completions[i]);
+            }
+        }
+        
+        if (node.argument != null && "player".equals(node.argumentName)) {
+            for (Player player : engine.getPlayerIndex().getOnlinePlayers()) {
+                if (player.getName().toLowerCase().startsWith(prefix)) {
+                    completions.add(player.getName());
+                }
+            }
+        }
+        return completions;
+    }
+    
+    /**
+     * Drop every script command and remove their labels from the command map
+     */
+    public synchronized void shutdown() {
+        definitions.clear();
+        roots = Collections.emptyMap();
+        updateCommands();
+    }
+    
+    // Getters
+    public int getRootCount() { return roots.size(); }
+    public synchronized int getCommandCount() { return definitions.values().stream().mapToInt(List::size).sum(); }
+}
@@ -1,25 +1,44 @@
 package dev.hexlord.hexicript.core;
 
 import dev.hexlord.hexicript.HexicriptPlugin;
+import dev.hexlord.hexicript.commands.ScriptCommandRegistry;
 import dev.hexlord.hexicript.core.parsing.ScriptParser;
 import dev.hexlord.hexicript.core.parsing.StatementParser;
+import dev.hexlord.hexicript.core.execution.CancellationToken;
 import dev.hexlord.hexicript.core.execution.ExecutionContext;
 import dev.hexlord.hexicript.core.execution.ExecutionResult;
 import dev.hexlord.hexicript.core.execution.ScriptExecutor;
+import dev.hexlord.hexicript.core.memory.ScriptMemoryTracker;
+import dev.hexlord.hexicript.core.players.PlayerIndex;
 import dev.hexlord.hexicript.core.script.Script;
 import dev.hexlord.hexicript.core.script.ScriptStatement;
+import dev.hexlord.hexicript.core.spatial.SpatialIndex;
+import dev.hexlord.hexicript.core.variables.VariableKey;
 import dev.hexlord.hexicript.core.variables.VariableManager;
+import dev.hexlord.hexicript.core.variables.VariableSubscription;
+import dev.hexlord.hexicript.events.EventRouter;
+import dev.hexlord.hexicript.events.ScriptErrorEvent;
+import dev.hexlord.hexicript.events.ScriptExecuteEvent;
+import dev.hexlord.hexicript.events.ScriptLoadEvent;
+import dev.hexlord.hexicript.scheduler.ScriptExecutors;
+import dev.hexlord.hexicript.scheduler.ScriptLanes;
+import dev.hexlord.hexicript.scheduler.TimingWheel;
 import dev.hexlord.hexicript.utils.Logger;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitTask;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Core script engine for hexicript
@@ -32,16 +51,48 @@ public class ScriptEngine {
     
     private final HexicriptPlugin plugin;
     
+    // Event type prefix the parser gives "on variable {x} change:" handlers
+    public static final String VARIABLE_CHANGE_EVENT = "variable_change:";
+    
+    private static final String[] NO_ARGS = new String[0];
+    
     // Core components
     private final ScriptParser parser;
     private final StatementParser statementParser;
     private final ScriptExecutor executor;
     private final VariableManager variableManager;
+    private final ScriptMemoryTracker memoryTracker;
     
     // Execution management
     private final ExecutorService asyncExecutor;
+    // Serial per-script lanes on top of the pool, or null when scripts share it freely
+    private final ScriptLanes scriptLanes;
     private final ConcurrentHashMap<String, BukkitTask> runningTasks;
     
+    // Executions waiting in the scheduler to be resumed
+    private final ConcurrentHashMap<ExecutionContext, Suspension> suspendedExecutions;
+    // Resumptions the saturated pool refused, retried in order from the tick
+    private final Queue<Suspension> refusedResumes;
+    
+    // Cancels every execution on shutdown; each active script has a child that is cancelled when it is unloaded
+    private final CancellationToken rootToken;
+    private final ConcurrentHashMap<String, CancellationToken> scriptTokens;
+    
+    // Variable watchers registered by each active script
+    private final ConcurrentHashMap<String, List<VariableSubscription>> scriptWatchers;
+    
+    // Bukkit event handlers of the active scripts
+    private final EventRouter eventRouter;
+    
+    // Online players by name and id, for statements that name a player
+    private final PlayerIndex playerIndex;
+    
+    // Players and mobs by chunk, for area loops
+    private final SpatialIndex spatialIndex;
+    
+    // Commands defined by the active scripts
+    private final ScriptCommandRegistry commandRegistry;
+    
     // Performance tracking
     private long totalExecutions = 0;
     private long totalExecutionTime = 0;
@@ -49,26 +100,49 @@ public class ScriptEngine {
     
     // Configuration
     private int maxLoopsPerTick;
+    private long tickBudgetNanos;
     private long maxExecutionTime;
+    private long maxWallTime;
     private boolean enableOptimization;
     private boolean enableAsyncExecution;
     
+    /**
+     * An execution waiting for the scheduler, so it can be woken or dropped early
+     */
+    private static final class Suspension {
+        private final ExecutionContext context;
+        private final CompletableFuture<ExecutionResult> future;
+        private volatile TimingWheel.Timer timer;
+        
+        private Suspension(ExecutionContext context, CompletableFuture<ExecutionResult> future) {
+            this.context = context;
+            this.future = future;
+        }
+    }
+    
     public ScriptEngine(HexicriptPlugin plugin) {
         this.plugin = plugin;
         
         // Initialize core components
         this.parser = new ScriptParser(this);
         this.statementParser = new StatementParser(this);
-        this.executor = new ScriptExecutor(this);
+        this.memoryTracker = new ScriptMemoryTracker(plugin.getConfigManager().getConfig());
         this.variableManager = new VariableManager(this);
+        this.playerIndex = new PlayerIndex(plugin);
+        this.spatialIndex = new SpatialIndex(plugin);
+        this.executor = new ScriptExecutor(this);
         
         // Initialize execution management
-        this.asyncExecutor = Executors.newCachedThreadPool(r -> {
-            Thread thread = new Thread(r, "hexicript-async-executor");
-            thread.setDaemon(true);
-            return thread;
-        });
+        this.asyncExecutor = ScriptExecutors.create(plugin.getConfigManager().getConfig(), "hexicript-async-executor");
+        this.scriptLanes = createScriptLanes();
         this.runningTasks = new ConcurrentHashMap<>();
+        this.scriptWatchers = new ConcurrentHashMap<>();
+        this.eventRouter = new EventRouter(this);
+        this.commandRegistry = new ScriptCommandRegistry(this);
+        this.suspendedExecutions = new ConcurrentHashMap<>();
+        this.refusedResumes = new ConcurrentLinkedQueue<>();
+        this.rootToken = new CancellationToken();
+        this.scriptTokens = new ConcurrentHashMap<>();
         
         // Load configuration
         loadConfiguration();
@@ -83,76 +157,390 @@ public class ScriptEngine {
         var config = plugin.getConfigManager().getConfig();
         
         this.maxLoopsPerTick = config.getInt("performance.max_loops_per_tick", 1000);
+        this.tickBudgetNanos = TimeUnit.MILLISECONDS.toNanos(config.getLong("performance.script_tick_budget_ms", 2));
         this.maxExecutionTime = config.getLong("performance.max_execution_time_ms", 5000);
+        this.maxWallTime = config.getLong("performance.max_wall_time_ms", 0);
         this.enableOptimization = config.getBoolean("performance.optimization.enable_script_caching", true);
         this.enableAsyncExecution = config.getBoolean("performance.optimization.enable_async_execution", true);
     }
     
+    /**
+     * Create the serial script lanes if performance.serial_lanes is enabled
+     */
+    private ScriptLanes createScriptLanes() {
+        var config = plugin.getConfigManager().getConfig();
+        if (!config.getBoolean("performance.serial_lanes", false)) {
+            return null;
+        }
+        
+        ScriptLanes lanes = new ScriptLanes(asyncExecutor,
+            config.getInt("performance.lane_count", 64),
+            Math.max(1, config.getInt("performance.max_concurrent_scripts", 50)));
+        Logger.info("Async executions of each script run one at a time on " + lanes.getLaneCount() + " serial lanes");
+        return lanes;
+    }
+    
+    /**
+     * Get the executor async work of a script runs on
+     * With serial lanes enabled this is the script's lane, otherwise the shared pool
+     */
+    public Executor getAsyncExecutor(Script script) {
+        return scriptLanes != null && script != null ? scriptLanes.laneFor(script.getName()) : asyncExecutor;
+    }
+    
     /**
      * Parse hexicript code into a Script object
      */
     public CompletableFuture<Script> parseScript(String name, String code) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                long startTime = System.currentTimeMillis();
-                
-                // Preprocess the code
-                String processedCode = preprocessCode(code);
-                
-                // Parse into statements
-                List<ScriptStatement> statements = parser.parseStatements(processedCode);
-                
-                // Create script object
-                Script script = new Script(name, code, statements);
-                
-                // Validate script
-                validateScript(script);
-                
-                // Optimize if enabled
-                if (enableOptimization) {
-                    optimizeScript(script);
-                }
-                
-                long parseTime = System.currentTimeMillis() - startTime;
-                Logger.debug("Parsed script '" + name + "' in " + parseTime + "ms");
-                
-                return script;
-                
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to parse script '" + name + "': " + e.getMessage(), e);
+        try {
+            return CompletableFuture.supplyAsync(() -> compileScript(name, code), asyncExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new RuntimeException("Failed to parse script '" + name + "': " + e.getMessage(), e));
+        }
+    }
+    
+    /**
+     * Parse, validate and optimize a script on the calling thread
+     */
+    private Script compileScript(String name, String code) {
+        try {
+            long startTime = System.currentTimeMillis();
+            
+            // Preprocess the code
+            String processedCode = preprocessCode(code);
+            
+            // Parse into statements
+            List<ScriptStatement> statements = parser.parseStatements(processedCode);
+            
+            // Create script object
+            Script script = new Script(name, code, statements);
+            
+            // Validate script
+            validateScript(script);
+            
+            // Optimize if enabled
+            if (enableOptimization) {
+                optimizeScript(script);
             }
-        }, asyncExecutor);
+            
+            // Attribute the compiled form to the script
+            memoryTracker.recordCompiled(script);
+            
+            long parseTime = System.currentTimeMillis() - startTime;
+            Logger.debug("Parsed script '" + name + "' in " + parseTime + "ms");
+            
+            return script;
+            
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse script '" + name + "': " + e.getMessage(), e);
+        }
     }
     
     /**
      * Execute a script with the given context
      */
     public CompletableFuture<ExecutionResult> executeScript(Script script, ExecutionContext context) {
-        return CompletableFuture.supplyAsync(() -> {
-            long startTime = System.currentTimeMillis();
-            
-            try {
-                // Check execution limits
-                if (System.currentTimeMillis() - startTime > maxExecutionTime) {
-                    throw new RuntimeException("Script execution timeout exceeded");
+        prepare(script, context);
+        
+        if (enableAsyncExecution) {
+            // Async executions read a pinned snapshot of globals and publish their writes after each slice
+            context.setAsyncExecution(true);
+            context.setVariableTransaction(variableManager.beginTransaction());
+        }
+        
+        CompletableFuture<ExecutionResult> future = new CompletableFuture<>();
+        try {
+            submitSlice(context, future, () -> executor.execute(script, context));
+        } catch (RejectedExecutionException e) {
+            // Saturated pool, nothing ran so nothing was written
+            Logger.warning("Rejected execution of script '" + script.getName() + "': " + e.getMessage());
+            return CompletableFuture.completedFuture(ExecutionResult.error("Script execution rejected: " + e.getMessage()));
+        }
+        return future;
+    }
+    
+    /**
+     * Execute a single handler statement of a script, such as an event handler
+     */
+    public CompletableFuture<ExecutionResult> executeHandler(Script script, ScriptStatement handler, ExecutionContext context) {
+        prepare(script, context);
+        
+        CompletableFuture<ExecutionResult> future = new CompletableFuture<>();
+        try {
+            submitSlice(context, future, () -> executor.executeStatement(handler, context));
+        } catch (RejectedExecutionException e) {
+            Logger.warning("Rejected execution of script '" + script.getName() + "': " + e.getMessage());
+            return CompletableFuture.completedFuture(ExecutionResult.error("Script execution rejected: " + e.getMessage()));
+        }
+        return future;
+    }
+    
+    /**
+     * Attach a script to a context, with its cancellation token and deadline unless the caller set them
+     */
+    private void prepare(Script script, ExecutionContext context) {
+        context.setScript(script);
+        if (context.getCancellationToken() == null) {
+            context.setCancellationToken(tokenFor(script));
+        }
+        if (context.getDeadline() == 0 && maxWallTime > 0) {
+            context.setTimeout(maxWallTime);
+        }
+        
+        // Runs for every execution, so nothing is built unless a plugin listens
+        if (ScriptExecuteEvent.hasListeners()) {
+            Bukkit.getPluginManager().callEvent(new ScriptExecuteEvent(script, NO_ARGS));
+        }
+    }
+    
+    /**
+     * Get the token that is cancelled when a script is unloaded
+     * Scripts that were never activated, such as inline code, only stop on shutdown
+     */
+    private CancellationToken tokenFor(Script script) {
+        return scriptTokens.getOrDefault(script.getName(), rootToken);
+    }
+    
+    /**
+     * Create a token for work started on behalf of a script, e.g. a scheduled task
+     * It is cancelled with the script, or on its own to stop just that work
+     */
+    public CancellationToken createCancellationToken(Script script) {
+        return tokenFor(script).child();
+    }
+    
+    /**
+     * Run one slice of an execution on the executor it belongs to
+     */
+    private void submitSlice(ExecutionContext context, CompletableFuture<ExecutionResult> future,
+                             Supplier<ExecutionResult> slice) {
+        // An async execution that asked for the main thread runs its next slice where it is resumed, on the main thread
+        Executor target = context.isAsyncExecution() && !context.isOnMainThread() ? getAsyncExecutor(context.getScript()) : Runnable::run;
+        target.execute(() -> runSlice(context, future, slice));
+    }
+    
+    /**
+     * Run one slice of an execution and either finish it or schedule the next slice
+     */
+    private void runSlice(ExecutionContext context, CompletableFuture<ExecutionResult> future,
+                          Supplier<ExecutionResult> slice) {
+        String scriptName = context.getScript().getName();
+        long startTime = System.nanoTime();
+        ExecutionResult result;
+        
+        try {
+            result = slice.get();
+        } catch (Exception e) {
+            Logger.error("Error executing script '" + scriptName + "': " + e.getMessage());
+            result = ExecutionResult.error("Script execution failed: " + e.getMessage());
+        }
+        context.setOnMainThread(false);
+        
+        // Each slice publishes its writes, so other scripts see progress between ticks,
+        // but a failed one leaves no partial writes behind
+        if (result.isError()) {
+            variableManager.discard(context);
+        } else {
+            variableManager.commit(context);
+        }
+        context.addRunTime(System.nanoTime() - startTime);
+        
+        if (result.isYield()) {
+            long ticks = (Long) result.getValue();
+            long deadline = context.getDeadline();
+            // Whatever runs after a yield runs on the main thread
+            Executor handoff = context.getMainThreadHandoff();
+            context.setMainThreadHandoff(null);
+            // Ticks are 50ms at full speed, so a wait that ends past the deadline can fail now rather than be held until then
+            if (deadline != 0 && System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ticks * 50) - deadline > 0) {
+                result = executor.stop(context, "Script execution deadline exceeded");
+            } else {
+                if (context.isAsyncExecution()) {
+                    context.setVariableTransaction(variableManager.beginTransaction());
                 }
-                
-                // Execute the script
-                ExecutionResult result = executor.execute(script, context);
-                
-                // Update performance metrics
-                long executionTime = System.currentTimeMillis() - startTime;
-                updatePerformanceMetrics(executionTime);
-                
-                Logger.debug("Executed script '" + script.getName() + "' in " + executionTime + "ms");
-                
-                return result;
-                
-            } catch (Exception e) {
-                Logger.error("Error executing script '" + script.getName() + "': " + e.getMessage());
-                return ExecutionResult.error("Script execution failed: " + e.getMessage());
+                // Nothing holds a thread while the execution waits; its state lives in the context
+                Suspension suspension = new Suspension(context, future);
+                suspendedExecutions.put(context, suspension);
+                if (ticks == 0) {
+                    // Reached a statement that needs the main thread, continue there as soon as possible
+                    context.setOnMainThread(true);
+                    (handoff != null ? handoff : plugin.getScheduler().getMainThreadQueue()).execute(() -> resumeSlice(context));
+                } else {
+                    suspension.timer = plugin.getScheduler().resume(() -> resumeSlice(context), ticks);
+                }
+                return;
+            }
+        }
+        
+        // Update performance metrics
+        long executionTime = TimeUnit.NANOSECONDS.toMillis(context.getRunTime());
+        updatePerformanceMetrics(executionTime);
+        
+        Logger.debug("Executed script '" + scriptName + "' in " + executionTime + "ms");
+        
+        if (result.isError() && ScriptErrorEvent.hasListeners()) {
+            Throwable error = result.getException() != null ? result.getException() : new RuntimeException(result.getMessage());
+            Bukkit.getPluginManager().callEvent(new ScriptErrorEvent(context.getScript(), error));
+        }
+        future.complete(result);
+    }
+    
+    /**
+     * Continue a yielded or waiting execution; called on the main thread by the scheduler
+     * Does nothing if the execution was already woken or dropped
+     */
+    private void resumeSlice(ExecutionContext context) {
+        Suspension suspension = suspendedExecutions.get(context);
+        if (suspension == null) {
+            return;
+        }
+        
+        // Earlier refused resumptions go first, so none of them is overtaken indefinitely
+        if (!refusedResumes.isEmpty() || !resume(suspension)) {
+            if (refusedResumes.isEmpty()) {
+                Logger.warning("Script pool is saturated, resuming waiting executions as it frees up");
+            }
+            refusedResumes.offer(suspension);
+        }
+    }
+    
+    /**
+     * Hand a suspended execution back to its executor
+     * An execution that already wrote variables must not be dropped, so one the pool
+     * refuses stays suspended and false is returned; it is only failed on shutdown
+     * @return Whether the suspension no longer needs resuming
+     */
+    private boolean resume(Suspension suspension) {
+        ExecutionContext context = suspension.context;
+        // Already woken or dropped, or the execution has since suspended again
+        if (!suspendedExecutions.remove(context, suspension)) {
+            return true;
+        }
+        
+        try {
+            submitSlice(context, suspension.future, () -> executor.resume(context));
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (asyncExecutor.isShutdown()) {
+                suspension.future.complete(ExecutionResult.error("Script execution cancelled: server shutting down"));
+                return true;
+            }
+            suspendedExecutions.put(context, suspension);
+            return false;
+        }
+    }
+    
+    /**
+     * Retry the resumptions the pool refused, oldest first, until it refuses again
+     */
+    private void retryRefusedResumes() {
+        Suspension suspension;
+        while ((suspension = refusedResumes.peek()) != null && resume(suspension)) {
+            refusedResumes.poll();
+        }
+    }
+    
+    /**
+     * Register the handlers of a loaded script that the engine dispatches itself
+     * Replaces the handlers of a previous version of the same script
+     */
+    public void activateScript(Script script) {
+        release(script.getName());
+        scriptTokens.put(script.getName(), rootToken.child());
+        Bukkit.getPluginManager().callEvent(new ScriptLoadEvent(script));
+        // Swaps in the new handlers in one step, so no event falls between versions
+        eventRouter.register(script);
+        commandRegistry.register(script);
+        
+        List<VariableSubscription> subscriptions = new ArrayList<>();
+        for (ScriptStatement statement : script.getStatements()) {
+            String eventType = statement.getEventType();
+            if (statement.getType() == ScriptStatement.Type.EVENT && eventType != null
+                && eventType.startsWith(VARIABLE_CHANGE_EVENT)) {
+                String variable = eventType.substring(VARIABLE_CHANGE_EVENT.length());
+                try {
+                    subscriptions.add(variableManager.watch(variable,
+                        (key, value) -> runVariableHandler(script, statement, key, value)));
+                } catch (IllegalArgumentException e) {
+                    script.addError("Line " + statement.getLineNumber() + ": " + e.getMessage());
+                }
+            }
+        }
+        
+        if (!subscriptions.isEmpty()) {
+            scriptWatchers.put(script.getName(), subscriptions);
+            Logger.debug("Registered " + subscriptions.size() + " variable watchers for script '" + script.getName() + "'");
+        }
+    }
+    
+    /**
+     * Remove the handlers registered by activateScript and stop its running executions
+     * Waiting executions are woken so they end on the next tick instead of when their wait is over
+     */
+    public void deactivateScript(String scriptName) {
+        eventRouter.unregister(scriptName);
+        commandRegistry.unregister(scriptName);
+        release(scriptName);
+    }
+    
+    /**
+     * Drop the watchers of a script and stop its executions
+     */
+    private void release(String scriptName) {
+        List<VariableSubscription> subscriptions = scriptWatchers.remove(scriptName);
+        if (subscriptions != null) {
+            subscriptions.forEach(VariableSubscription::cancel);
+        }
+        
+        CancellationToken token = scriptTokens.remove(scriptName);
+        if (token != null) {
+            token.cancel("script '" + scriptName + "' was unloaded");
+            wakeStoppedExecutions();
+        }
+    }
+    
+    /**
+     * Resume waiting executions that have been cancelled so they finish right away
+     */
+    public void wakeStoppedExecutions() {
+        for (var entry : suspendedExecutions.entrySet()) {
+            ExecutionContext context = entry.getKey();
+            if (context.getStopReason() == null) {
+                continue;
+            }
+            
+            TimingWheel.Timer timer = entry.getValue().timer;
+            if (timer != null) {
+                timer.cancel();
+            }
+            // Whichever of this and the timer runs first resumes it; the slice stops before running anything
+            plugin.getScheduler().getMainThreadQueue().execute(() -> resumeSlice(context));
+        }
+    }
+    
+    /**
+     * Run an "on variable {x} change:" handler
+     */
+    private void runVariableHandler(Script script, ScriptStatement handler, VariableKey key, Object value) {
+        if (!script.isEnabled()) {
+            return;
+        }
+        
+        // Player variables run with their owner as the player when online
+        Player owner = key.getType() == VariableManager.VariableType.PLAYER ? playerIndex.getPlayer(key.getOwner()) : null;
+        ExecutionContext context = new ExecutionContext(owner, variableManager);
+        context.setScript(script);
+        context.setEventType(handler.getEventType());
+        context.setVariable("event-variable", key.getName());
+        if (value != null) {
+            context.setVariable("event-value", value);
+        }
+        
+        executeHandler(script, handler, context).thenAccept(result -> {
+            if (result.isError()) {
+                Logger.error("Error in variable handler of script '" + script.getName() + "': " + result.getMessage());
             }
-        }, enableAsyncExecution ? asyncExecutor : Runnable::run);
+        });
     }
     
     /**
@@ -162,8 +550,10 @@ public class ScriptEngine {
         String scriptName = "inline-" + System.currentTimeMillis();
         ExecutionContext context = new ExecutionContext(player, variableManager);
         
+        // One-off scripts are only accounted while they run, or every call would leave its usage behind
         return parseScript(scriptName, code)
-            .thenCompose(script -> executeScript(script, context));
+            .thenCompose(script -> executeScript(script, context)
+                .whenComplete((result, error) -> memoryTracker.release(script)));
     }
     
     /**
@@ -171,10 +561,10 @@ public class ScriptEngine {
      */
     public ExecutionResult executeSyncCode(String code, Player player) {
         if (!Bukkit.isPrimaryThread()) {
-            // Switch to main thread
+            // Switch to main thread through the per-tick handoff queue
             CompletableFuture<ExecutionResult> future = new CompletableFuture<>();
             
-            Bukkit.getScheduler().runTask(plugin, () -> {
+            plugin.getScheduler().getMainThreadQueue().execute(() -> {
                 ExecutionResult result = executeSyncCode(code, player);
                 future.complete(result);
             });
@@ -189,9 +579,19 @@ public class ScriptEngine {
         try {
             String scriptName = "sync-" + System.currentTimeMillis();
             ExecutionContext context = new ExecutionContext(player, variableManager);
+            // The caller waits for the result, so this execution cannot be spread over ticks
+            context.setResumable(false);
+            // Nobody reads the result after the caller gives up, so stop there too
+            context.setTimeout(maxExecutionTime);
             
-            Script script = parseScript(scriptName, code).get();
-            return executeScript(script, context).get();
+            // Parsed and run on this thread: waiting on the pool here could wait on a pool
+            // thread that is itself waiting for the main thread
+            Script script = compileScript(scriptName, code);
+            prepare(script, context);
+            CompletableFuture<ExecutionResult> future = new CompletableFuture<>();
+            runSlice(context, future, () -> executor.execute(script, context));
+            memoryTracker.release(script);
+            return future.getNow(ExecutionResult.error("Sync execution did not finish"));
             
         } catch (Exception e) {
             return ExecutionResult.error("Sync execution failed: " + e.getMessage());
@@ -278,9 +678,9 @@ public class ScriptEngine {
      * Optimize variable usage
      */
     private void optimizeVariables(Script script) {
-        // Analyze variable usage patterns
-        // Pre-allocate frequently used variables
-        // Remove unused variables
+        // Compile every variable reference into a key template up front
+        long templateBytes = variableManager.precompile(script.getUsedVariables());
+        memoryTracker.recordTemplates(script, templateBytes);
     }
     
     /**
@@ -324,6 +724,29 @@ public class ScriptEngine {
         }
     }
     
+    /**
+     * Start following the server: registers listeners, so the plugin calls it exactly once
+     */
+    public void start() {
+        playerIndex.start();
+        spatialIndex.start();
+    }
+    
+    /**
+     * Per-tick upkeep, driven by the scheduler on the main thread
+     * Delivers variable changes, refreshes the spatial index and retries stalled script lanes
+     * and refused resumptions
+     */
+    public void tick() {
+        variableManager.deliverChanges();
+        spatialIndex.tick();
+        
+        if (scriptLanes != null) {
+            scriptLanes.resumeStalled();
+        }
+        retryRefusedResumes();
+    }
+    
     /**
      * Shutdown the script engine
      */
@@ -334,10 +757,35 @@ public class ScriptEngine {
         runningTasks.values().forEach(BukkitTask::cancel);
         runningTasks.clear();
         
+        // Stop variable watchers and event handlers
+        scriptWatchers.values().forEach(subscriptions -> subscriptions.forEach(VariableSubscription::cancel));
+        scriptWatchers.clear();
+        eventRouter.shutdown();
+        commandRegistry.shutdown();
+        playerIndex.shutdown();
+        spatialIndex.shutdown();
+        
+        // Running executions stop at their next loop iteration, queued ones as soon as they start
+        rootToken.cancel("server shutting down");
+        scriptTokens.clear();
+        
+        // Waiting executions will not be resumed, end them now
+        refusedResumes.clear();
+        for (ExecutionContext context : suspendedExecutions.keySet()) {
+            Suspension suspension = suspendedExecutions.remove(context);
+            if (suspension != null) {
+                if (suspension.timer != null) {
+                    suspension.timer.cancel();
+                }
+                suspension.future.complete(ExecutionResult.error("Script execution cancelled: server shutting down"));
+            }
+        }
+        
         // Shutdown async executor
         asyncExecutor.shutdown();
         try {
             if (!asyncExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                Logger.warning("Async script work did not stop within 5 seconds, interrupting it");
                 asyncExecutor.shutdownNow();
             }
         } catch (InterruptedException e) {
@@ -348,17 +796,42 @@ public class ScriptEngine {
         Logger.info("Script engine shutdown complete.");
     }
     
+    /**
+     * Get the loop iterations an execution may run per tick, reduced while the server is behind
+     */
+    public int getMaxLoopsPerTick() {
+        return Math.max(1, (int) (maxLoopsPerTick * getBudgetScale()));
+    }
+    
+    /**
+     * Get the time an execution may run per tick, reduced while the server is behind
+     */
+    public long getTickBudgetNanos() {
+        return (long) (tickBudgetNanos * getBudgetScale());
+    }
+    
+    private double getBudgetScale() {
+        return plugin.getScheduler() != null ? plugin.getScheduler().getLoadGovernor().getBudgetScale() : 1.0;
+    }
+    
     // Getters
     public HexicriptPlugin getPlugin() { return plugin; }
     public ScriptParser getParser() { return parser; }
     public StatementParser getStatementParser() { return statementParser; }
     public ScriptExecutor getExecutor() { return executor; }
     public VariableManager getVariableManager() { return variableManager; }
+    public ScriptMemoryTracker getMemoryTracker() { return memoryTracker; }
+    public ExecutorService getAsyncExecutor() { return asyncExecutor; }
+    public ScriptLanes getScriptLanes() { return scriptLanes; }
+    public EventRouter getEventRouter() { return eventRouter; }
+    public ScriptCommandRegistry getCommandRegistry() { return commandRegistry; }
+    public PlayerIndex getPlayerIndex() { return playerIndex; }
+    public SpatialIndex getSpatialIndex() { return spatialIndex; }
     
     // Performance metrics
     public long getTotalExecutions() { return totalExecutions; }
     public long getTotalExecutionTime() { return totalExecutionTime; }
     public long getAverageExecutionTime() { return averageExecutionTime; }
-    public int getMaxLoopsPerTick() { return maxLoopsPerTick; }
+    public int getSuspendedExecutionCount() { return suspendedExecutions.size(); }
     public long getMaxExecutionTime() { return maxExecutionTime; }
 }
\ No newline at end of file
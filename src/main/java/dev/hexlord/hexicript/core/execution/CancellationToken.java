@@ -0,0 +1,64 @@
+package dev.hexlord.hexicript.core.execution;
+
+/**
+ * Cooperative cancellation signal for script executions
+ *
+ * Tokens form a short chain: the engine owns a root token, each active script
+ * a child of it, and a scheduled task a child of its script. Cancelling a token
+ * cancels everything below it. Executions poll the token at loop back-edges and
+ * when they resume, so a cancelled script stops within one iteration instead
+ * of running to its timeout.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public final class CancellationToken {
+    
+    private final CancellationToken parent;
+    private volatile String reason;
+    
+    public CancellationToken() {
+        this(null);
+    }
+    
+    private CancellationToken(CancellationToken parent) {
+        this.parent = parent;
+    }
+    
+    /**
+     * Create a token that is also cancelled when this one is
+     */
+    public CancellationToken child() {
+        return new CancellationToken(this);
+    }
+    
+    /**
+     * Cancel this token and every token below it
+     * The first reason given is kept
+     */
+    public void cancel(String reason) {
+        if (this.reason == null) {
+            this.reason = reason;
+        }
+    }
+    
+    /**
+     * Check if this token or one above it has been cancelled
+     */
+    public boolean isCancelled() {
+        return getReason() != null;
+    }
+    
+    /**
+     * Get why this token was cancelled, or null if it was not
+     */
+    public String getReason() {
+        for (CancellationToken token = this; token != null; token = token.parent) {
+            String tokenReason = token.reason;
+            if (tokenReason != null) {
+                return tokenReason;
+            }
+        }
+        return null;
+    }
+}
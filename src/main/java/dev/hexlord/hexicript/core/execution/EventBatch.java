@@ -0,0 +1,64 @@
+package dev.hexlord.hexicript.core.execution;
+
+import org.bukkit.entity.Player;
+
+/**
+ * The events a batched handler runs once for, as compact records
+ *
+ * Each record is the player of one event and the values of its event-*
+ * locals, stored in one flat array in the order of the names. A handler
+ * walks them with "loop all events:", which sets the locals of each record
+ * in turn.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public final class EventBatch {
+    
+    private final String[] names;
+    private final Player[] players;
+    private final Object[] values;
+    
+    public EventBatch(String[] names, Player[] players, Object[] values) {
+        this.names = names;
+        this.players = players;
+        this.values = values;
+    }
+    
+    /**
+     * Set the locals of one record, with its player as loop-player
+     */
+    void setVariables(int index, ExecutionContext context) {
+        int offset = index * names.length;
+        for (int i = 0; i < names.length; i++) {
+            context.setVariable(names[i], values[offset + i]);
+        }
+        context.setVariable("loop-player", players[index]);
+    }
+    
+    /**
+     * Get the number of events in this batch
+     */
+    public int size() {
+        return players.length;
+    }
+    
+    /**
+     * Get the player of one event, or null if it has none
+     */
+    public Player getPlayer(int index) {
+        return players[index];
+    }
+    
+    /**
+     * Get the value of one event-* local of one event, or null if events of this batch have no such local
+     */
+    public Object getVariable(int index, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return values[index * names.length + i];
+            }
+        }
+        return null;
+    }
+}
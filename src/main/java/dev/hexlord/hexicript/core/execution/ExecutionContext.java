@@ -1,11 +1,17 @@
 package dev.hexlord.hexicript.core.execution;
 
+import dev.hexlord.hexicript.core.script.Script;
 import dev.hexlord.hexicript.core.variables.VariableManager;
+import dev.hexlord.hexicript.core.variables.VariableTransaction;
 import org.bukkit.entity.Player;
 import org.bukkit.event.Event;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Execution context for script execution
@@ -23,16 +29,36 @@ public class ExecutionContext {
     // Event context (if executing from an event)
     private Event triggerEvent;
     private String eventType;
+    private EventBatch eventBatch;
     
     // Execution metadata
+    private Script script;
     private final long startTime;
     private int loopDepth = 0;
     private boolean asyncExecution = false;
     
+    // Snapshot of global variables used by async executions
+    private VariableTransaction variableTransaction;
+    
+    // Resumable state: the statement stack and the time spent running so far
+    private final Deque<ExecutionFrame> frames;
+    private long runTime;
+    private boolean resumable = true;
+    
+    // Cooperative stop: a cancellation token and a wall-clock deadline in nanoTime, 0 for none
+    private CancellationToken cancellationToken;
+    private long deadline;
+    
+    // Set while running on an event's own thread: where the execution goes once it needs the main thread
+    private Executor mainThreadHandoff;
+    // Set while an async execution runs a slice on the main thread, for statements that need it
+    private boolean onMainThread;
+    
     public ExecutionContext(Player player, VariableManager variableManager) {
         this.player = player;
         this.variableManager = variableManager;
         this.localVariables = new HashMap<>();
+        this.frames = new ArrayDeque<>();
         this.startTime = System.currentTimeMillis();
     }
     
@@ -41,10 +67,17 @@ public class ExecutionContext {
      */
     public ExecutionContext copy() {
         ExecutionContext copy = new ExecutionContext(player, variableManager);
+        copy.script = this.script;
         copy.triggerEvent = this.triggerEvent;
         copy.eventType = this.eventType;
+        copy.eventBatch = this.eventBatch;
         copy.loopDepth = this.loopDepth;
         copy.asyncExecution = this.asyncExecution;
+        copy.variableTransaction = this.variableTransaction;
+        copy.resumable = this.resumable;
+        copy.cancellationToken = this.cancellationToken;
+        copy.deadline = this.deadline;
+        copy.mainThreadHandoff = this.mainThreadHandoff;
         copy.localVariables.putAll(this.localVariables);
         return copy;
     }
@@ -91,6 +124,59 @@ public class ExecutionContext {
         return System.currentTimeMillis() - startTime;
     }
     
+    /**
+     * Add the time a slice of this execution ran for, in nanoseconds
+     */
+    public void addRunTime(long nanos) {
+        runTime += nanos;
+    }
+    
+    /**
+     * Check if the execution stopped part way and can be resumed
+     */
+    public boolean isSuspended() {
+        return !frames.isEmpty();
+    }
+    
+    /**
+     * Set a deadline this many milliseconds from now
+     */
+    public void setTimeout(long millis) {
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+    
+    /**
+     * Check if this execution was cancelled or is past its deadline
+     * @return Why it has to stop, or null if it may carry on
+     */
+    public String getStopReason() {
+        if (cancellationToken != null) {
+            String reason = cancellationToken.getReason();
+            if (reason != null) {
+                return "Script execution cancelled: " + reason;
+            }
+        }
+        if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+            return "Script execution deadline exceeded";
+        }
+        return null;
+    }
+    
+    /**
+     * Check if this execution is running off the main thread outside the async pool,
+     * e.g. on the thread of an async chat event
+     */
+    public boolean isOffMainThread() {
+        return mainThreadHandoff != null;
+    }
+    
+    /**
+     * Get the statement stack of this execution
+     */
+    Deque<ExecutionFrame> getFrames() {
+        return frames;
+    }
+    
     /**
      * Enter a loop (increment loop depth)
      */
@@ -115,17 +201,34 @@ public class ExecutionContext {
     }
     
     // Setters
+    public void setScript(Script script) { this.script = script; }
     public void setTriggerEvent(Event event) { this.triggerEvent = event; }
     public void setEventType(String eventType) { this.eventType = eventType; }
+    public void setEventBatch(EventBatch eventBatch) { this.eventBatch = eventBatch; }
     public void setAsyncExecution(boolean asyncExecution) { this.asyncExecution = asyncExecution; }
+    public void setVariableTransaction(VariableTransaction variableTransaction) { this.variableTransaction = variableTransaction; }
+    public void setResumable(boolean resumable) { this.resumable = resumable; }
+    public void setCancellationToken(CancellationToken cancellationToken) { this.cancellationToken = cancellationToken; }
+    public void setDeadline(long deadline) { this.deadline = deadline; }
+    public void setMainThreadHandoff(Executor mainThreadHandoff) { this.mainThreadHandoff = mainThreadHandoff; }
+    public void setOnMainThread(boolean onMainThread) { this.onMainThread = onMainThread; }
     
     // Getters
+    public Script getScript() { return script; }
     public Player getPlayer() { return player; }
     public VariableManager getVariableManager() { return variableManager; }
     public Map<String, Object> getLocalVariables() { return new HashMap<>(localVariables); }
     public Event getTriggerEvent() { return triggerEvent; }
     public String getEventType() { return eventType; }
+    public EventBatch getEventBatch() { return eventBatch; }
     public long getStartTime() { return startTime; }
     public int getLoopDepth() { return loopDepth; }
     public boolean isAsyncExecution() { return asyncExecution; }
+    public VariableTransaction getVariableTransaction() { return variableTransaction; }
+    public long getRunTime() { return runTime; }
+    public boolean isResumable() { return resumable; }
+    public CancellationToken getCancellationToken() { return cancellationToken; }
+    public long getDeadline() { return deadline; }
+    public Executor getMainThreadHandoff() { return mainThreadHandoff; }
+    public boolean isOnMainThread() { return onMainThread; }
 }
\ No newline at end of file
@@ -0,0 +1,182 @@
+package dev.hexlord.hexicript.core.execution;
+
+import dev.hexlord.hexicript.core.script.ScriptStatement;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One level of the explicit statement stack an execution runs on
+ *
+ * Every block that would otherwise be a recursive call (event and command
+ * handlers, functions, conditions, loops) gets a frame holding its statement
+ * list and position. Keeping that state here instead of on the Java stack is
+ * what lets an execution stop at a loop back-edge and pick up again on a later
+ * tick.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+final class ExecutionFrame {
+    
+    /**
+     * How a frame treats the results of its statements
+     */
+    enum Kind {
+        SCRIPT,     // Top level of a script, stops on error or return
+        STATEMENT,  // A single statement run on its own, ends with that statement's result
+        BLOCK,      // Handler or condition body, stops on any non-success result
+        FUNCTION,   // Function body, stops on error or return
+        LOOP        // Loop body, repeated until its elements run out
+    }
+    
+    private final Kind kind;
+    private final ScriptStatement statement;
+    private final List<ScriptStatement> statements;
+    private final String completion;
+    private int index;
+    
+    // Loop state: the snapshot or event batch being looped over (null for counted loops) and the current iteration
+    private final Object[] elements;
+    private final String elementVariable;
+    private final EventBatch batch;
+    private final int count;
+    private int iteration = -1;
+    
+    // Run time of the execution when this frame was entered, for statement statistics
+    private long enteredAt;
+    
+    private ExecutionFrame(Kind kind, ScriptStatement statement, List<ScriptStatement> statements,
+                           String completion, Object[] elements, String elementVariable, EventBatch batch, int count) {
+        this.kind = kind;
+        this.statement = statement;
+        this.statements = statements;
+        this.completion = completion;
+        this.elements = elements;
+        this.elementVariable = elementVariable;
+        this.batch = batch;
+        this.count = count;
+        // Loops start at the end of their body so the first back-edge sets up iteration one
+        this.index = kind == Kind.LOOP ? statements.size() : 0;
+    }
+    
+    static ExecutionFrame script(List<ScriptStatement> statements) {
+        return new ExecutionFrame(Kind.SCRIPT, null, statements, "Script executed successfully", null, null, null, 0);
+    }
+    
+    static ExecutionFrame statement(ScriptStatement statement) {
+        return new ExecutionFrame(Kind.STATEMENT, null, Collections.singletonList(statement), "Statement executed", null, null, null, 0);
+    }
+    
+    static ExecutionFrame block(ScriptStatement statement, List<ScriptStatement> statements, String completion) {
+        return new ExecutionFrame(Kind.BLOCK, statement, statements, completion, null, null, null, 0);
+    }
+    
+    static ExecutionFrame function(ScriptStatement statement) {
+        return new ExecutionFrame(Kind.FUNCTION, statement, statement.getChildren(), "Function executed", null, null, null, 0);
+    }
+    
+    static ExecutionFrame loop(ScriptStatement statement, Object[] elements, int count) {
+        return new ExecutionFrame(Kind.LOOP, statement, statement.getChildren(), "Loop completed", elements, "loop-player", null, count);
+    }
+    
+    static ExecutionFrame loop(ScriptStatement statement, String elementVariable, Object[] elements) {
+        return new ExecutionFrame(Kind.LOOP, statement, statement.getChildren(), "Loop completed", elements, elementVariable, null, elements.length);
+    }
+    
+    static ExecutionFrame loop(ScriptStatement statement, EventBatch batch) {
+        return new ExecutionFrame(Kind.LOOP, statement, statement.getChildren(), "Loop completed", null, null, batch, batch.size());
+    }
+    
+    /**
+     * Check if there are statements left in the current pass
+     */
+    boolean hasNext() {
+        return index < statements.size();
+    }
+    
+    /**
+     * Look at the next statement of the current pass without taking it
+     */
+    ScriptStatement peek() {
+        return statements.get(index);
+    }
+    
+    /**
+     * Take the next statement of the current pass
+     */
+    ScriptStatement next() {
+        return statements.get(index++);
+    }
+    
+    /**
+     * Skip the rest of the current pass
+     */
+    void skipRest() {
+        index = statements.size();
+    }
+    
+    /**
+     * Start the next loop iteration, setting its loop variable
+     * Returns false once the loop has run out of iterations
+     */
+    boolean nextIteration(ExecutionContext context) {
+        if (kind != Kind.LOOP || iteration + 1 >= count) {
+            return false;
+        }
+        
+        iteration++;
+        index = 0;
+        if (elements != null) {
+            context.setVariable(elementVariable, elements[iteration]);
+        } else if (batch != null) {
+            batch.setVariables(iteration, context);
+            context.setVariable("loop-number", iteration + 1);
+        } else {
+            context.setVariable("loop-number", iteration + 1);
+        }
+        return true;
+    }
+    
+    /**
+     * Handle the result of a statement run in this frame
+     * Returns null to carry on with the frame, or the result the frame exits with
+     */
+    ExecutionResult handle(ExecutionResult result) {
+        ExecutionResult.Type type = result.getType();
+        
+        switch (kind) {
+            case STATEMENT:
+                return result;
+            case SCRIPT:
+            case FUNCTION:
+                return type == ExecutionResult.Type.ERROR || type == ExecutionResult.Type.RETURN ? result : null;
+            case LOOP:
+                if (type == ExecutionResult.Type.BREAK) {
+                    return ExecutionResult.success("Loop broken");
+                }
+                if (type == ExecutionResult.Type.CONTINUE) {
+                    skipRest();
+                    return null;
+                }
+                return type == ExecutionResult.Type.SUCCESS ? null : result;
+            case BLOCK:
+            default:
+                return type == ExecutionResult.Type.SUCCESS ? null : result;
+        }
+    }
+    
+    /**
+     * Get the result of running off the end of this frame
+     */
+    ExecutionResult complete() {
+        return ExecutionResult.success(completion);
+    }
+    
+    void setEnteredAt(long enteredAt) { this.enteredAt = enteredAt; }
+    
+    // Getters
+    Kind getKind() { return kind; }
+    ScriptStatement getStatement() { return statement; }
+    long getEnteredAt() { return enteredAt; }
+}
@@ -18,7 +18,8 @@ public class ExecutionResult {
         RETURN,     // Return statement encountered
         BREAK,      // Break statement encountered
         CONTINUE,   // Continue statement encountered
-        CANCEL      // Event cancelled
+        CANCEL,     // Event cancelled
+        YIELD       // Stopped at its tick budget or a wait, value holds the ticks until it resumes, 0 to continue on the main thread
     }
     
     private final Type type;
@@ -89,6 +90,20 @@ public class ExecutionResult {
         return new ExecutionResult(Type.CANCEL, "Cancel", null, null);
     }
     
+    /**
+     * Create a yield execution result, resuming after the given number of ticks
+     */
+    public static ExecutionResult resumeAfter(long ticks) {
+        return new ExecutionResult(Type.YIELD, "Yield", ticks, null);
+    }
+    
+    /**
+     * Create a yield execution result for an execution that has to continue on the main thread
+     */
+    public static ExecutionResult continueOnMainThread() {
+        return new ExecutionResult(Type.YIELD, "Main thread", 0L, null);
+    }
+    
     /**
      * Check if the execution was successful
      */
@@ -103,6 +118,13 @@ public class ExecutionResult {
         return type == Type.ERROR;
     }
     
+    /**
+     * Check if the execution stopped early and continues on a later tick
+     */
+    public boolean isYield() {
+        return type == Type.YIELD;
+    }
+    
     /**
      * Check if this is a control flow result (return, break, continue, cancel)
      */
@@ -3,7 +3,10 @@ package dev.hexlord.hexicript.core.execution;
 import dev.hexlord.hexicript.core.ScriptEngine;
 import dev.hexlord.hexicript.core.script.Script;
 import dev.hexlord.hexicript.core.script.ScriptStatement;
+import dev.hexlord.hexicript.core.spatial.SpatialIndex;
 import dev.hexlord.hexicript.core.variables.VariableManager;
+import dev.hexlord.hexicript.scheduler.ScriptScheduler;
+import dev.hexlord.hexicript.scheduler.ScriptTask;
 import dev.hexlord.hexicript.utils.Logger;
 import dev.hexlord.hexicript.utils.PlayerUtils;
 import dev.hexlord.hexicript.utils.LocationUtils;
@@ -12,21 +15,34 @@ import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 /**
  * Executes parsed hexicript statements
  * Handles all statement types and manages execution flow
+ *
+ * Blocks run on an explicit frame stack kept in the execution context rather
+ * than through recursive calls, so a long loop can stop at its tick budget and
+ * resume on the next tick instead of being cut short or stalling the server.
  * 
  * @author hexlorddev
  * @version 2.0.0
  */
 public class ScriptExecutor {
     
+    // Loops over the players or entities in an area, as produced by the parser
+    private static final Pattern AREA_LOOP_PATTERN = Pattern.compile("^(players|entities):(region|within|nearest):.+");
+    
     private final ScriptEngine engine;
     private final VariableManager variableManager;
     
@@ -37,77 +53,358 @@ public class ScriptExecutor {
     
     /**
      * Execute a complete script
+     * A YIELD result means the script stopped at its tick budget; continue it with resume
      */
     public ExecutionResult execute(Script script, ExecutionContext context) {
-        long startTime = System.currentTimeMillis();
+        // Check if script is enabled
+        if (!script.isEnabled()) {
+            return ExecutionResult.error("Script is disabled");
+        }
+        
+        context.getFrames().clear();
+        context.getFrames().push(ExecutionFrame.script(script.getStatements()));
+        return resume(context);
+    }
+    
+    /**
+     * Execute a single statement, such as a handler, with its whole body
+     * A YIELD result means it stopped at its tick budget; continue it with resume
+     */
+    public ExecutionResult executeStatement(ScriptStatement statement, ExecutionContext context) {
+        context.getFrames().clear();
+        context.getFrames().push(ExecutionFrame.statement(statement));
+        return resume(context);
+    }
+    
+    /**
+     * Continue an execution from its statement stack
+     * Runs until the stack is empty, or until a loop has used this tick's
+     * iteration or time budget, in which case the stack is kept and a YIELD
+     * result is returned. A cancelled or timed-out execution stops when it
+     * resumes or at its next loop iteration. An execution running off the
+     * main thread also yields, with 0 ticks, before its first statement that
+     * is not async-safe, and an async execution before a loop that reads the world.
+     */
+    public ExecutionResult resume(ExecutionContext context) {
+        Deque<ExecutionFrame> frames = context.getFrames();
+        long sliceStart = System.nanoTime();
+        long deadline = sliceStart + engine.getTickBudgetNanos();
+        int iterations = 0;
+        
+        // Resuming after a wait or a queue is a blocking point, stop before running anything
+        String stopReason = context.getStopReason();
+        if (stopReason != null) {
+            return finish(context, ExecutionResult.error(stopReason));
+        }
         
         try {
-            // Check if script is enabled
-            if (!script.isEnabled()) {
-                return ExecutionResult.error("Script is disabled");
-            }
-            
-            // Execute all statements
-            for (ScriptStatement statement : script.getStatements()) {
-                ExecutionResult result = executeStatement(statement, context);
+            while (!frames.isEmpty()) {
+                ExecutionFrame frame = frames.peek();
+                ExecutionResult result;
                 
-                if (result.getType() == ExecutionResult.Type.ERROR) {
-                    return result;
+                if (frame.hasNext()) {
+                    // Off the main thread only async-safe statements run; the rest goes to the main thread from here
+                    if (context.isOffMainThread() && !isAsyncSafe(frame.peek())) {
+                        return ExecutionResult.continueOnMainThread();
+                    }
+                    // Loops over the world or the spatial index are entered on the main thread
+                    if (context.isAsyncExecution() && !context.isOnMainThread() && readsWorld(frame.peek())) {
+                        return ExecutionResult.continueOnMainThread();
+                    }
+                    
+                    ScriptStatement statement = frame.next();
+                    
+                    if (isBlock(statement)) {
+                        ExecutionFrame child = enter(statement, context);
+                        child.setEnteredAt(runTime(context, sliceStart));
+                        frames.push(child);
+                        continue;
+                    }
+                    
+                    result = executeSimpleStatement(statement, context);
+                    
+                    if (result.isYield()) {
+                        // A wait: the frame already points past it, so the execution carries on from the next statement
+                        if (!context.isResumable()) {
+                            return finish(context, ExecutionResult.error("Cannot wait in a synchronous execution (line " + statement.getLineNumber() + ")"));
+                        }
+                        return result;
+                    }
+                } else if (frame.nextIteration(context)) {
+                    // Loop back-edge: the only place an execution gives up its tick or is stopped
+                    stopReason = context.getStopReason();
+                    if (stopReason != null) {
+                        return finish(context, ExecutionResult.error(stopReason));
+                    }
+                    
+                    if (runTime(context, sliceStart) > TimeUnit.MILLISECONDS.toNanos(engine.getMaxExecutionTime())) {
+                        return finish(context, ExecutionResult.error("Script execution timeout exceeded"));
+                    }
+                    
+                    if (context.isResumable() && (++iterations >= engine.getMaxLoopsPerTick() || System.nanoTime() >= deadline)) {
+                        return ExecutionResult.resumeAfter(1);
+                    }
+                    continue;
+                } else {
+                    result = exit(frames, context, sliceStart).complete();
+                }
+                
+                // Hand the result up until a frame carries on with it
+                while (!frames.isEmpty()) {
+                    ExecutionResult exitResult = frames.peek().handle(result);
+                    if (exitResult == null) {
+                        break;
+                    }
+                    
+                    exit(frames, context, sliceStart);
+                    result = exitResult;
                 }
                 
-                if (result.getType() == ExecutionResult.Type.RETURN) {
+                if (frames.isEmpty()) {
                     return result;
                 }
                 
-                // Check for execution time limits
-                long elapsed = System.currentTimeMillis() - startTime;
-                if (elapsed > engine.getMaxExecutionTime()) {
-                    return ExecutionResult.error("Script execution timeout exceeded");
+                // Check for execution time limits between top-level statements
+                if (frames.size() == 1 && frames.peek().getKind() == ExecutionFrame.Kind.SCRIPT
+                    && runTime(context, sliceStart) > TimeUnit.MILLISECONDS.toNanos(engine.getMaxExecutionTime())) {
+                    return finish(context, ExecutionResult.error("Script execution timeout exceeded"));
                 }
             }
             
             return ExecutionResult.success("Script executed successfully");
             
         } catch (Exception e) {
-            Logger.error("Error executing script '" + script.getName() + "': " + e.getMessage());
-            return ExecutionResult.error("Script execution failed: " + e.getMessage());
+            String name = context.getScript() != null ? context.getScript().getName() : "unknown";
+            Logger.error("Error executing script '" + name + "': " + e.getMessage());
+            return finish(context, ExecutionResult.error("Script execution failed: " + e.getMessage()));
         }
     }
     
     /**
-     * Execute a single statement
+     * Stop a suspended execution without running any more of it
      */
-    public ExecutionResult executeStatement(ScriptStatement statement, ExecutionContext context) {
+    public ExecutionResult stop(ExecutionContext context, String reason) {
+        return finish(context, ExecutionResult.error(reason));
+    }
+    
+    /**
+     * Check if a statement runs a body of child statements
+     */
+    private boolean isBlock(ScriptStatement statement) {
+        switch (statement.getType()) {
+            case EVENT:
+            case FUNCTION:
+            case CONDITION:
+            case ELSE:
+            case LOOP:
+            case COMMAND:
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Check if a statement is a loop over entities of the world, which only the main thread may read
+     */
+    private boolean readsWorld(ScriptStatement statement) {
+        if (statement.getType() != ScriptStatement.Type.LOOP) {
+            return false;
+        }
+        String loopCondition = statement.getCondition();
+        return loopCondition.startsWith("entities:") || AREA_LOOP_PATTERN.matcher(loopCondition).matches();
+    }
+    
+    /**
+     * Check if a statement may run off the main thread
+     * Covers string work, variables, conditions and messages to the event's player;
+     * anything touching the world, other players or the server stays on the main thread
+     */
+    private boolean isAsyncSafe(ScriptStatement statement) {
+        switch (statement.getType()) {
+            case EVENT:
+            case CONDITION:
+            case ELSE:
+            case VARIABLE_SET:
+            case VARIABLE_ADD:
+            case WAIT:
+            case ACTION:
+                return true;
+            case SEND_MESSAGE:
+                return "player".equals(statement.getTarget());
+            case LOOP:
+                return statement.getCondition().startsWith("times:");
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Create the frame that runs the body of a block statement
+     */
+    private ExecutionFrame enter(ScriptStatement statement, ExecutionContext context) {
+        switch (statement.getType()) {
+            case EVENT:
+                // Event handlers are registered during script loading; this runs the handler body
+                return ExecutionFrame.block(statement, statement.getChildren(), "Event handler executed");
+                
+            case FUNCTION:
+                // Functions are defined during parsing; this runs the function body
+                return ExecutionFrame.function(statement);
+                
+            case CONDITION:
+                boolean conditionResult = evaluateCondition(statement.getCondition(), context);
+                return ExecutionFrame.block(statement,
+                    conditionResult ? statement.getChildren() : Collections.emptyList(), "Condition evaluated");
+                    
+            case ELSE:
+                // Else statements are handled as part of condition evaluation
+                return ExecutionFrame.block(statement, statement.getChildren(), "Else block executed");
+                
+            case LOOP:
+                return enterLoop(statement, context);
+                
+            case COMMAND:
+            default:
+                // Command handlers are registered during script loading; this runs the handler body
+                return ExecutionFrame.block(statement, statement.getChildren(), "Command handler executed");
+        }
+    }
+    
+    /**
+     * Create the frame for a loop statement
+     * Player loops iterate over a snapshot taken when the loop starts, event loops over the batch of a batched handler
+     * Area loops such as "players:within:10|player" are answered by the spatial index
+     */
+    private ExecutionFrame enterLoop(ScriptStatement statement, ExecutionContext context) {
+        String loopCondition = statement.getCondition();
+        
+        if (loopCondition.startsWith("times:")) {
+            // Loop X times
+            int times = Integer.parseInt(loopCondition.substring(6));
+            return ExecutionFrame.loop(statement, null, Math.max(0, times));
+        } else if (AREA_LOOP_PATTERN.matcher(loopCondition).matches()) {
+            return enterAreaLoop(statement, loopCondition, context);
+        } else if (loopCondition.startsWith("entities:")) {
+            // Loop through the living entities of the player's world, or of every world
+            List<Entity> entities = new ArrayList<>();
+            for (World world : context.getPlayer() != null ? List.of(context.getPlayer().getWorld()) : Bukkit.getWorlds()) {
+                entities.addAll(world.getLivingEntities());
+            }
+            return ExecutionFrame.loop(statement, "loop-entity", entities.toArray());
+        } else if (loopCondition.startsWith("players:")) {
+            // Loop through players
+            Object[] players = engine.getPlayerIndex().getOnlinePlayers();
+            return ExecutionFrame.loop(statement, players, players.length);
+        } else if (loopCondition.startsWith("events:") && context.getEventBatch() != null) {
+            // Loop through the events of a batched handler
+            return ExecutionFrame.loop(statement, context.getEventBatch());
+        }
+        
+        return ExecutionFrame.loop(statement, null, 0);
+    }
+    
+    /**
+     * Create the frame of a loop over the players or entities in an area
+     * Player loops set loop-player, entity loops loop-entity
+     */
+    private ExecutionFrame enterAreaLoop(ScriptStatement statement, String loopCondition, ExecutionContext context) {
+        String[] parts = loopCondition.split(":", 3);
+        String[] arguments = parts[2].split("\\|", 2);
+        boolean playersOnly = parts[0].equals("players");
+        SpatialIndex index = engine.getSpatialIndex();
+        
+        List<Entity> found;
+        switch (parts[1]) {
+            case "region":
+                found = index.inRegion(resolveLocation(arguments[0], context), resolveLocation(arguments[1], context), playersOnly);
+                break;
+            case "within":
+                found = index.within(resolveLocation(arguments[1], context), resolveNumber(arguments[0], context), playersOnly);
+                break;
+            case "nearest":
+                found = index.nearest(resolveLocation(arguments[1], context), (int) resolveNumber(arguments[0], context), playersOnly);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown loop: " + loopCondition);
+        }
+        return ExecutionFrame.loop(statement, playersOnly ? "loop-player" : "loop-entity", found.toArray());
+    }
+    
+    /**
+     * Resolve a location expression: a local or variable holding a location or entity, or location text
+     */
+    private Location resolveLocation(String expression, ExecutionContext context) {
+        String text = expression.trim();
+        Object value = null;
+        if ("player".equals(text)) {
+            value = context.getPlayer();
+        } else if (context.hasVariable(text)) {
+            value = context.getVariable(text);
+        } else if (text.startsWith("{") && text.endsWith("}") && text.indexOf('{', 1) < 0) {
+            value = variableManager.getVariable(text.substring(1, text.length() - 1), context);
+        }
+        
+        if (value instanceof Location) {
+            return (Location) value;
+        }
+        if (value instanceof Entity) {
+            return ((Entity) value).getLocation();
+        }
+        
+        Location location = LocationUtils.parseLocation(processVariables(text, context), context);
+        if (location == null) {
+            throw new IllegalArgumentException("Invalid location: " + text);
+        }
+        return location;
+    }
+    
+    private double resolveNumber(String expression, ExecutionContext context) {
+        String text = processVariables(expression.trim(), context);
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + text);
+        }
+    }
+    
+    /**
+     * Pop the top frame and record the run time of the block it belonged to
+     */
+    private ExecutionFrame exit(Deque<ExecutionFrame> frames, ExecutionContext context, long sliceStart) {
+        ExecutionFrame frame = frames.pop();
+        if (frame.getStatement() != null) {
+            long elapsed = runTime(context, sliceStart) - frame.getEnteredAt();
+            frame.getStatement().updateExecutionStats(TimeUnit.NANOSECONDS.toMillis(elapsed));
+        }
+        return frame;
+    }
+    
+    /**
+     * Drop whatever is left of the statement stack and return the final result
+     */
+    private ExecutionResult finish(ExecutionContext context, ExecutionResult result) {
+        context.getFrames().clear();
+        return result;
+    }
+    
+    /**
+     * Get how long an execution has run, including the current slice, in nanoseconds
+     */
+    private long runTime(ExecutionContext context, long sliceStart) {
+        return context.getRunTime() + System.nanoTime() - sliceStart;
+    }
+    
+    /**
+     * Execute a statement that has no body
+     */
+    private ExecutionResult executeSimpleStatement(ScriptStatement statement, ExecutionContext context) {
         long startTime = System.currentTimeMillis();
         
         try {
             ExecutionResult result;
             
             switch (statement.getType()) {
-                case EVENT:
-                    result = executeEventStatement(statement, context);
-                    break;
-                    
-                case FUNCTION:
-                    result = executeFunctionStatement(statement, context);
-                    break;
-                    
-                case CONDITION:
-                    result = executeConditionStatement(statement, context);
-                    break;
-                    
-                case ELSE:
-                    result = executeElseStatement(statement, context);
-                    break;
-                    
-                case LOOP:
-                    result = executeLoopStatement(statement, context);
-                    break;
-                    
-                case COMMAND:
-                    result = executeCommandStatement(statement, context);
-                    break;
-                    
                 case VARIABLE_SET:
                     result = executeVariableSetStatement(statement, context);
                     break;
@@ -136,6 +433,14 @@ public class ScriptExecutor {
                     result = executeAnimateStatement(statement, context);
                     break;
                     
+                case WAIT:
+                    result = executeWaitStatement(statement, context);
+                    break;
+                    
+                case SCHEDULE:
+                    result = executeScheduleStatement(statement, context);
+                    break;
+                    
                 case ACTION:
                 default:
                     result = executeActionStatement(statement, context);
@@ -154,149 +459,6 @@ public class ScriptExecutor {
         }
     }
     
-    /**
-     * Execute event statement (register event handler)
-     */
-    private ExecutionResult executeEventStatement(ScriptStatement statement, ExecutionContext context) {
-        // Event handlers are registered during script loading, not execution
-        // This method executes the event handler body when the event is triggered
-        
-        for (ScriptStatement child : statement.getChildren()) {
-            ExecutionResult result = executeStatement(child, context);
-            if (result.getType() != ExecutionResult.Type.SUCCESS) {
-                return result;
-            }
-        }
-        
-        return ExecutionResult.success("Event handler executed");
-    }
-    
-    /**
-     * Execute function statement
-     */
-    private ExecutionResult executeFunctionStatement(ScriptStatement statement, ExecutionContext context) {
-        // Functions are defined during parsing, this executes the function body
-        
-        for (ScriptStatement child : statement.getChildren()) {
-            ExecutionResult result = executeStatement(child, context);
-            if (result.getType() == ExecutionResult.Type.RETURN) {
-                return result;
-            }
-            if (result.getType() == ExecutionResult.Type.ERROR) {
-                return result;
-            }
-        }
-        
-        return ExecutionResult.success("Function executed");
-    }
-    
-    /**
-     * Execute condition statement
-     */
-    private ExecutionResult executeConditionStatement(ScriptStatement statement, ExecutionContext context) {
-        String condition = statement.getCondition();
-        boolean conditionResult = evaluateCondition(condition, context);
-        
-        if (conditionResult) {
-            for (ScriptStatement child : statement.getChildren()) {
-                ExecutionResult result = executeStatement(child, context);
-                if (result.getType() != ExecutionResult.Type.SUCCESS) {
-                    return result;
-                }
-            }
-        }
-        
-        return ExecutionResult.success("Condition evaluated");
-    }
-    
-    /**
-     * Execute else statement
-     */
-    private ExecutionResult executeElseStatement(ScriptStatement statement, ExecutionContext context) {
-        // Else statements are handled as part of condition evaluation
-        for (ScriptStatement child : statement.getChildren()) {
-            ExecutionResult result = executeStatement(child, context);
-            if (result.getType() != ExecutionResult.Type.SUCCESS) {
-                return result;
-            }
-        }
-        
-        return ExecutionResult.success("Else block executed");
-    }
-    
-    /**
-     * Execute loop statement
-     */
-    private ExecutionResult executeLoopStatement(ScriptStatement statement, ExecutionContext context) {
-        String loopCondition = statement.getCondition();
-        int maxLoops = engine.getMaxLoopsPerTick();
-        int loopCount = 0;
-        
-        if (loopCondition.startsWith("times:")) {
-            // Loop X times
-            int times = Integer.parseInt(loopCondition.substring(6));
-            for (int i = 0; i < times && loopCount < maxLoops; i++) {
-                context.setVariable("loop-number", i + 1);
-                
-                for (ScriptStatement child : statement.getChildren()) {
-                    ExecutionResult result = executeStatement(child, context);
-                    if (result.getType() == ExecutionResult.Type.BREAK) {
-                        return ExecutionResult.success("Loop broken");
-                    }
-                    if (result.getType() == ExecutionResult.Type.CONTINUE) {
-                        break;
-                    }
-                    if (result.getType() == ExecutionResult.Type.ERROR) {
-                        return result;
-                    }
-                }
-                
-                loopCount++;
-            }
-        } else if (loopCondition.startsWith("players:")) {
-            // Loop through players
-            for (Player player : Bukkit.getOnlinePlayers()) {
-                if (loopCount >= maxLoops) break;
-                
-                context.setVariable("loop-player", player);
-                
-                for (ScriptStatement child : statement.getChildren()) {
-                    ExecutionResult result = executeStatement(child, context);
-                    if (result.getType() == ExecutionResult.Type.BREAK) {
-                        return ExecutionResult.success("Loop broken");
-                    }
-                    if (result.getType() == ExecutionResult.Type.CONTINUE) {
-                        break;
-                    }
-                    if (result.getType() == ExecutionResult.Type.ERROR) {
-                        return result;
-                    }
-                }
-                
-                loopCount++;
-            }
-        }
-        
-        return ExecutionResult.success("Loop completed");
-    }
-    
-    /**
-     * Execute command statement
-     */
-    private ExecutionResult executeCommandStatement(ScriptStatement statement, ExecutionContext context) {
-        // Command handlers are registered during script loading
-        // This executes the command handler body
-        
-        for (ScriptStatement child : statement.getChildren()) {
-            ExecutionResult result = executeStatement(child, context);
-            if (result.getType() != ExecutionResult.Type.SUCCESS) {
-                return result;
-            }
-        }
-        
-        return ExecutionResult.success("Command handler executed");
-    }
-    
     /**
      * Execute variable set statement
      */
@@ -444,6 +606,64 @@ public class ScriptExecutor {
         }
     }
     
+    /**
+     * Execute wait statement
+     * Suspends the execution; the scheduler resumes it once the delay has passed
+     */
+    private ExecutionResult executeWaitStatement(ScriptStatement statement, ExecutionContext context) {
+        long ticks = resolveTicks(statement, context);
+        if (ticks < 0) {
+            return ExecutionResult.error("Invalid wait duration: " + statement.getAmount());
+        }
+        
+        return ExecutionResult.resumeAfter(ticks);
+    }
+    
+    /**
+     * Execute schedule statement
+     * Runs a loaded script after a delay or every period; a persistent schedule keeps the
+     * player and local variables of this execution and survives restarts
+     */
+    private ExecutionResult executeScheduleStatement(ScriptStatement statement, ExecutionContext context) {
+        Script target = engine.getPlugin().getScriptManager().getScript(statement.getTarget());
+        if (target == null) {
+            return ExecutionResult.error("Script not found: " + statement.getTarget());
+        }
+        long ticks = resolveTicks(statement, context);
+        if (ticks < 0) {
+            return ExecutionResult.error("Invalid schedule duration: " + statement.getAmount());
+        }
+        
+        ScriptScheduler scheduler = engine.getPlugin().getScheduler();
+        String[] args = new String[0];
+        boolean repeating = (Boolean) statement.getProperty("repeating");
+        ScriptTask task;
+        if ((Boolean) statement.getProperty("persistent")) {
+            task = repeating ? scheduler.runRepeatingPersistent(target, args, context, ticks, ticks)
+                             : scheduler.runLaterPersistent(target, args, context, ticks);
+        } else {
+            task = repeating ? scheduler.runRepeating(target, args, ticks, ticks)
+                             : scheduler.runLater(target, args, ticks);
+        }
+        return ExecutionResult.success("Script scheduled", task.getTaskId());
+    }
+    
+    /**
+     * Resolve the duration of a wait or schedule in ticks, at least one
+     * @return The ticks, or -1 if the amount is not a number
+     */
+    private long resolveTicks(ScriptStatement statement, ExecutionContext context) {
+        Object amount = evaluateExpression(statement.getAmount(), context);
+        int ticksPerUnit = (Integer) statement.getProperty("ticks_per_unit");
+        
+        try {
+            double duration = amount instanceof Number ? ((Number) amount).doubleValue() : Double.parseDouble(amount.toString());
+            return Math.max(1, Math.round(duration * ticksPerUnit));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
     /**
      * Execute generic action statement
      */
@@ -552,7 +772,7 @@ public class ScriptExecutor {
             return context.getPlayer();
         }
         
-        return Bukkit.getPlayer(playerRef);
+        return engine.getPlayerIndex().getPlayer(playerRef);
     }
     
     /**
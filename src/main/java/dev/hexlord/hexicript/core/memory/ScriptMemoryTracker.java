@@ -0,0 +1,283 @@
+package dev.hexlord.hexicript.core.memory;
+
+import dev.hexlord.hexicript.core.script.Script;
+import dev.hexlord.hexicript.core.variables.VariableKey;
+import dev.hexlord.hexicript.utils.Logger;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Attributes retained memory to the scripts that own it and enforces script.memory_limit
+ *
+ * Every variable write records the estimated size of the new value against
+ * the writing script and releases the size of the value it replaced, so the
+ * per-script totals are always current without walking the variable store.
+ * A variable belongs to the script that wrote it last.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public class ScriptMemoryTracker {
+    
+    /**
+     * What happens when a script reaches its memory limit
+     */
+    public enum LimitAction {
+        THROTTLE,   // Reject writes that would grow the script further
+        DISABLE     // Disable the script
+    }
+    
+    private final long limitBytes;
+    private final double warningRatio;
+    private final LimitAction limitAction;
+    
+    private final ConcurrentHashMap<String, ScriptMemoryUsage> usages;
+    private final ConcurrentHashMap<VariableKey, Allocation> allocations;
+    
+    /**
+     * Size of one variable and the script it is attributed to
+     */
+    private static final class Allocation {
+        final ScriptMemoryUsage owner;
+        final long bytes;
+        
+        Allocation(ScriptMemoryUsage owner, long bytes) {
+            this.owner = owner;
+            this.bytes = bytes;
+        }
+    }
+    
+    public ScriptMemoryTracker(FileConfiguration config) {
+        this.limitBytes = config.getLong("script.memory_limit", 128) * 1024L * 1024L;
+        this.warningRatio = config.getDouble("script.memory_warning_ratio", 0.8);
+        this.limitAction = parseAction(config.getString("script.memory_limit_action", "THROTTLE"));
+        this.usages = new ConcurrentHashMap<>();
+        this.allocations = new ConcurrentHashMap<>();
+    }
+    
+    private static LimitAction parseAction(String value) {
+        try {
+            return LimitAction.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            Logger.warning("Unknown script.memory_limit_action '" + value + "', using THROTTLE");
+            return LimitAction.THROTTLE;
+        }
+    }
+    
+    /**
+     * Record the compiled size of a freshly parsed script
+     */
+    public void recordCompiled(Script script) {
+        ScriptMemoryUsage usage = usageFor(script);
+        usage.setCompiledBytes(SizeEstimator.estimateStatements(script.getStatements()));
+        evaluate(usage);
+    }
+    
+    /**
+     * Record size of cached templates compiled for a script
+     * Replaces the size recorded for an earlier compile, so reloads do not add up
+     */
+    public void recordTemplates(Script script, long bytes) {
+        if (script == null) {
+            return;
+        }
+        ScriptMemoryUsage usage = usageFor(script);
+        usage.setTemplateBytes(bytes);
+        evaluate(usage);
+    }
+    
+    /**
+     * Record a variable write, replacing whatever the key held before
+     */
+    public void recordVariable(Script owner, VariableKey key, long valueBytes) {
+        ScriptMemoryUsage usage = owner != null ? usageFor(owner) : null;
+        Allocation next = new Allocation(usage, keyBytes(key) + valueBytes);
+        transfer(allocations.put(key, next), next);
+    }
+    
+    /**
+     * Record an in-place growth of a variable, such as appending to a list
+     */
+    public void recordGrowth(Script owner, VariableKey key, long delta) {
+        ScriptMemoryUsage usage = owner != null ? usageFor(owner) : null;
+        Allocation[] previous = new Allocation[1];
+        Allocation next = allocations.compute(key, (k, current) -> {
+            previous[0] = current;
+            long base = current != null ? current.bytes : keyBytes(k);
+            return new Allocation(usage, base + delta);
+        });
+        transfer(previous[0], next);
+    }
+    
+    /**
+     * Release the memory held by a removed variable
+     */
+    public void releaseVariable(VariableKey key) {
+        transfer(allocations.remove(key), null);
+    }
+    
+    /**
+     * Release every variable matching a filter
+     */
+    public void releaseVariables(Predicate<VariableKey> filter) {
+        List<VariableKey> keys = new ArrayList<>();
+        for (VariableKey key : allocations.keySet()) {
+            if (filter.test(key)) {
+                keys.add(key);
+            }
+        }
+        keys.forEach(this::releaseVariable);
+    }
+    
+    /**
+     * Forget a script that will not run again, such as one-off inline code
+     * Variables it wrote stay allocated until they are overwritten or removed
+     */
+    public void release(Script script) {
+        ScriptMemoryUsage usage = usages.get(script.getName());
+        // A newer script of the same name keeps its usage
+        if (usage != null && usage.getScript() == script) {
+            usages.remove(script.getName(), usage);
+        }
+    }
+    
+    /**
+     * Reject a write that would grow a throttled script
+     */
+    public void checkWrite(Script owner, VariableKey key, long valueBytes) {
+        if (owner == null) {
+            return;
+        }
+        
+        ScriptMemoryUsage usage = usages.get(owner.getName());
+        if (usage == null || usage.getState() != ScriptMemoryUsage.State.THROTTLED) {
+            return;
+        }
+        
+        Allocation current = allocations.get(key);
+        long currentBytes = current != null && current.owner == usage ? current.bytes : 0;
+        if (keyBytes(key) + valueBytes > currentBytes) {
+            throw limitExceeded(owner);
+        }
+    }
+    
+    /**
+     * Reject an in-place growth of a throttled script
+     */
+    public void checkGrowth(Script owner) {
+        if (owner == null) {
+            return;
+        }
+        
+        ScriptMemoryUsage usage = usages.get(owner.getName());
+        if (usage != null && usage.getState() == ScriptMemoryUsage.State.THROTTLED) {
+            throw limitExceeded(owner);
+        }
+    }
+    
+    private IllegalStateException limitExceeded(Script owner) {
+        return new IllegalStateException("Script '" + owner.getName() + "' has reached its memory limit of "
+            + formatBytes(limitBytes));
+    }
+    
+    /**
+     * Move an allocation from its previous owner to its new owner and re-check both
+     */
+    private void transfer(Allocation previous, Allocation next) {
+        if (previous != null && previous.owner != null) {
+            previous.owner.addVariableBytes(-previous.bytes);
+            if (next == null || next.owner != previous.owner) {
+                evaluate(previous.owner);
+            }
+        }
+        
+        if (next != null && next.owner != null) {
+            next.owner.addVariableBytes(next.bytes);
+            evaluate(next.owner);
+        }
+    }
+    
+    /**
+     * Apply warning and limit thresholds to a script
+     */
+    private void evaluate(ScriptMemoryUsage usage) {
+        if (limitBytes <= 0) {
+            return;
+        }
+        
+        long total = usage.getTotalBytes();
+        ScriptMemoryUsage.State state = usage.getState();
+        Script script = usage.getScript();
+        
+        if (state == ScriptMemoryUsage.State.DISABLED) {
+            return;
+        }
+        
+        if (total >= limitBytes) {
+            if (limitAction == LimitAction.DISABLE) {
+                usage.setState(ScriptMemoryUsage.State.DISABLED);
+                Logger.error("Script '" + usage.getScriptName() + "' exceeded its memory limit (" +
+                             formatBytes(total) + ") and was disabled");
+                if (script != null) {
+                    script.setEnabled(false);
+                    script.addError("Disabled after exceeding the memory limit of " + formatBytes(limitBytes));
+                }
+            } else if (state != ScriptMemoryUsage.State.THROTTLED) {
+                usage.setState(ScriptMemoryUsage.State.THROTTLED);
+                Logger.warning("Script '" + usage.getScriptName() + "' reached its memory limit (" +
+                               formatBytes(total) + "), further growth is rejected");
+            }
+        } else if (total >= limitBytes * warningRatio) {
+            if (state == ScriptMemoryUsage.State.NORMAL) {
+                usage.setState(ScriptMemoryUsage.State.WARNED);
+                Logger.warning("Script '" + usage.getScriptName() + "' is using " + formatBytes(total) +
+                               " of its " + formatBytes(limitBytes) + " memory limit");
+                if (script != null) {
+                    script.addWarning("Memory usage is close to the limit of " + formatBytes(limitBytes));
+                }
+            } else if (state == ScriptMemoryUsage.State.THROTTLED) {
+                usage.setState(ScriptMemoryUsage.State.WARNED);
+            }
+        } else if (state != ScriptMemoryUsage.State.NORMAL) {
+            usage.setState(ScriptMemoryUsage.State.NORMAL);
+        }
+    }
+    
+    private ScriptMemoryUsage usageFor(Script script) {
+        ScriptMemoryUsage usage = usages.computeIfAbsent(script.getName(), ScriptMemoryUsage::new);
+        if (usage.getScript() != script) {
+            // A reloaded script starts enforcement again
+            usage.setScript(script);
+            if (usage.getState() == ScriptMemoryUsage.State.DISABLED) {
+                usage.setState(ScriptMemoryUsage.State.NORMAL);
+            }
+        }
+        return usage;
+    }
+    
+    private static long keyBytes(VariableKey key) {
+        return 32 + SizeEstimator.estimateString(key.getOwner()) + SizeEstimator.estimateString(key.getName());
+    }
+    
+    /**
+     * Format a byte count for display
+     */
+    public static String formatBytes(long bytes) {
+        if (bytes >= 1024L * 1024L) {
+            return String.format("%.1fMB", bytes / (1024.0 * 1024.0));
+        }
+        if (bytes >= 1024L) {
+            return String.format("%.1fKB", bytes / 1024.0);
+        }
+        return bytes + "B";
+    }
+    
+    // Getters
+    public ScriptMemoryUsage getUsage(String scriptName) { return usages.get(scriptName); }
+    public long getLimitBytes() { return limitBytes; }
+    public LimitAction getLimitAction() { return limitAction; }
+}
@@ -0,0 +1,57 @@
+package dev.hexlord.hexicript.core.memory;
+
+import dev.hexlord.hexicript.core.script.Script;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running memory totals attributed to one script
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public class ScriptMemoryUsage {
+    
+    /**
+     * Enforcement state of a script
+     */
+    public enum State {
+        NORMAL,     // Below the warning threshold
+        WARNED,     // Above the warning threshold
+        THROTTLED,  // At the limit, growth is rejected
+        DISABLED    // At the limit, script was disabled
+    }
+    
+    private final String scriptName;
+    private volatile Script script;
+    private volatile State state = State.NORMAL;
+    
+    private final AtomicLong variableBytes = new AtomicLong();
+    private final AtomicLong compiledBytes = new AtomicLong();
+    private final AtomicLong templateBytes = new AtomicLong();
+    
+    public ScriptMemoryUsage(String scriptName) {
+        this.scriptName = scriptName;
+    }
+    
+    /**
+     * Get the total retained size in bytes
+     */
+    public long getTotalBytes() {
+        return variableBytes.get() + compiledBytes.get() + templateBytes.get();
+    }
+    
+    void addVariableBytes(long delta) { variableBytes.addAndGet(delta); }
+    void setCompiledBytes(long bytes) { compiledBytes.set(bytes); }
+    void setTemplateBytes(long bytes) { templateBytes.set(bytes); }
+    void setScript(Script script) { this.script = script; }
+    void setState(State state) { this.state = state; }
+    
+    // Getters
+    public String getScriptName() { return scriptName; }
+    public Script getScript() { return script; }
+    public State getState() { return state; }
+    public long getVariableBytes() { return variableBytes.get(); }
+    public long getCompiledBytes() { return compiledBytes.get(); }
+    public long getTemplateBytes() { return templateBytes.get(); }
+}
@@ -0,0 +1,115 @@
+package dev.hexlord.hexicript.core.memory;
+
+import dev.hexlord.hexicript.core.script.ScriptStatement;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the retained heap size of script values
+ * The numbers follow a 64-bit JVM with compressed oops and are meant for
+ * accounting and limits, not for exact measurement
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public final class SizeEstimator {
+    
+    private static final long OBJECT_HEADER = 16;
+    private static final long REFERENCE = 4;
+    private static final long STRING_OVERHEAD = 40;
+    private static final long MAP_ENTRY = 32;
+    private static final long COLLECTION_OVERHEAD = 32;
+    private static final long OPAQUE_OBJECT = 64;
+    private static final long STATEMENT_OVERHEAD = 160;
+    
+    // Nested containers beyond this depth are counted as opaque
+    private static final int MAX_DEPTH = 8;
+    
+    private SizeEstimator() {
+    }
+    
+    /**
+     * Estimate the retained size of a variable value
+     */
+    public static long estimate(Object value) {
+        return estimate(value, 0);
+    }
+    
+    /**
+     * Estimate the size of one map entry holding the given key and value
+     */
+    public static long estimateEntry(Object key, Object value) {
+        return MAP_ENTRY + estimate(key, 0) + estimate(value, 0);
+    }
+    
+    /**
+     * Estimate the size of a string
+     */
+    public static long estimateString(String value) {
+        return value == null ? 0 : STRING_OVERHEAD + value.length();
+    }
+    
+    /**
+     * Estimate the size of compiled statements, including their children
+     */
+    public static long estimateStatements(List<ScriptStatement> statements) {
+        long total = 0;
+        for (ScriptStatement statement : statements) {
+            total += STATEMENT_OVERHEAD;
+            total += estimateString(statement.getOriginalLine());
+            total += estimateString(statement.getCondition());
+            total += estimateString(statement.getVariable());
+            total += estimateString(statement.getValue());
+            total += estimateString(statement.getMessage());
+            for (String parameter : statement.getParameters()) {
+                total += REFERENCE + estimateString(parameter);
+            }
+            total += estimateStatements(statement.getChildren());
+        }
+        return total;
+    }
+    
+    private static long estimate(Object value, int depth) {
+        if (value == null) {
+            return 0;
+        }
+        
+        if (value instanceof String) {
+            return estimateString((String) value);
+        }
+        
+        if (value instanceof Integer || value instanceof Float || value instanceof Short
+                || value instanceof Byte || value instanceof Boolean || value instanceof Character) {
+            return OBJECT_HEADER;
+        }
+        
+        if (value instanceof Number) {
+            return OBJECT_HEADER + 8;
+        }
+        
+        if (depth >= MAX_DEPTH) {
+            return OPAQUE_OBJECT;
+        }
+        
+        if (value instanceof Map) {
+            long total = COLLECTION_OVERHEAD;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                total += MAP_ENTRY + estimate(entry.getKey(), depth + 1) + estimate(entry.getValue(), depth + 1);
+            }
+            return total;
+        }
+        
+        if (value instanceof Collection) {
+            long total = COLLECTION_OVERHEAD;
+            for (Object element : (Collection<?>) value) {
+                total += REFERENCE + estimate(element, depth + 1);
+            }
+            return total;
+        }
+        
+        // Server objects such as players and locations are owned by the server, count the handle only
+        return OPAQUE_OBJECT;
+    }
+}
@@ -23,11 +23,18 @@ public class ScriptParser {
     
     // Syntax patterns for hexicript
     private static final Pattern EVENT_PATTERN = Pattern.compile("^on\\s+(.+):");
+    private static final Pattern EVENT_OPTIONS_PATTERN = Pattern.compile("^(.+?)\\s*\\(([^)]*)\\)$");
+    private static final Pattern LOOP_REGION_PATTERN = Pattern.compile("^all\\s+(players|entities)\\s+(?:in\\s+region\\s+)?between\\s+(.+?)\\s+and\\s+(.+)$");
+    private static final Pattern LOOP_WITHIN_PATTERN = Pattern.compile("^all\\s+(players|entities)\\s+within\\s+(\\S+)\\s+(?:blocks?\\s+)?of\\s+(.+)$");
+    private static final Pattern LOOP_NEAREST_PATTERN = Pattern.compile("^(?:the\\s+)?(\\S+)\\s+nearest\\s+(players|entities)\\s+to\\s+(.+)$");
+    private static final Pattern BATCH_PATTERN = Pattern.compile("^batched(?:\\s+(\\d+))?$");
+    private static final Pattern DEBOUNCE_PATTERN = Pattern.compile("^debounce\\s+(\\d+)\\s+(ticks?|seconds?)$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern VARIABLE_CHANGE_PATTERN = Pattern.compile("^variable\\s+(\\{.+\\})\\s+change$", Pattern.CASE_INSENSITIVE);
     private static final Pattern FUNCTION_PATTERN = Pattern.compile("^function\\s+(\\w+)\\s*\\(([^)]*)\\)\\s*:");
     private static final Pattern CONDITION_PATTERN = Pattern.compile("^if\\s+(.+):");
     private static final Pattern ELSE_PATTERN = Pattern.compile("^else(\\s+if\\s+(.+))?:");
     private static final Pattern LOOP_PATTERN = Pattern.compile("^(loop|while)\\s+(.+):");
-    private static final Pattern COMMAND_PATTERN = Pattern.compile("^on\\s+command\\s+[\"'](/.+)[\"']:");
+    private static final Pattern COMMAND_PATTERN = Pattern.compile("^(?:on\\s+)?command\\s+[\"']/?([^\"']+)[\"']\\s*(?:\\(([^)]*)\\))?\\s*:$");
     private static final Pattern VARIABLE_SET_PATTERN = Pattern.compile("^set\\s+(\\{[^}]+\\})\\s+to\\s+(.+)");
     private static final Pattern VARIABLE_ADD_PATTERN = Pattern.compile("^add\\s+(.+)\\s+to\\s+(\\{[^}]+\\})");
     private static final Pattern SEND_PATTERN = Pattern.compile("^send\\s+[\"'](.*)[\"']\\s+to\\s+(.+)");
@@ -35,6 +42,8 @@ public class ScriptParser {
     private static final Pattern GIVE_PATTERN = Pattern.compile("^give\\s+(\\w+)\\s+(\\d+\\s+)?(.+)");
     private static final Pattern TELEPORT_PATTERN = Pattern.compile("^teleport\\s+(\\w+)\\s+to\\s+(.+)");
     private static final Pattern ANIMATE_PATTERN = Pattern.compile("^animate_(.+)\\((.*)\\)");
+    private static final Pattern WAIT_PATTERN = Pattern.compile("^wait\\s+(.+?)\\s+(ticks?|seconds?)$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SCHEDULE_PATTERN = Pattern.compile("^run\\s+[\"']([^\"']+)[\"']\\s+(in|every)\\s+(.+?)\\s+(ticks?|seconds?|minutes?|hours?)(\\s+persistently)?$", Pattern.CASE_INSENSITIVE);
     
     public ScriptParser(ScriptEngine engine) {
         this.engine = engine;
@@ -104,12 +113,30 @@ public class ScriptParser {
     private ScriptStatement parseStatement(String line, int lineNumber, int indentLevel) {
         // Try to match against different statement patterns
         
+        // Command handlers, before events since "on command" would read as an event
+        Matcher commandMatcher = COMMAND_PATTERN.matcher(line);
+        if (commandMatcher.matches()) {
+            ScriptStatement statement = new ScriptStatement(ScriptStatement.Type.COMMAND, line, lineNumber, indentLevel)
+                .setCommand("/" + commandMatcher.group(1).trim().replaceAll("\\s+", " "));
+            if (commandMatcher.group(2) != null) {
+                parseCommandOptions(commandMatcher.group(2), statement);
+            }
+            return statement;
+        }
+        
         // Event handlers
         Matcher eventMatcher = EVENT_PATTERN.matcher(line);
         if (eventMatcher.matches()) {
-            String eventType = eventMatcher.group(1);
-            return new ScriptStatement(ScriptStatement.Type.EVENT, line, lineNumber, indentLevel)
-                .setEventType(parseEventType(eventType));
+            String eventType = eventMatcher.group(1).trim();
+            ScriptStatement statement = new ScriptStatement(ScriptStatement.Type.EVENT, line, lineNumber, indentLevel);
+            
+            // Handler options follow the event in parentheses, e.g. "on player move (debounce 5 ticks, per player):"
+            Matcher optionsMatcher = EVENT_OPTIONS_PATTERN.matcher(eventType);
+            if (optionsMatcher.matches()) {
+                eventType = optionsMatcher.group(1);
+                parseEventOptions(optionsMatcher.group(2), statement);
+            }
+            return statement.setEventType(parseEventType(eventType));
         }
         
         // Function definitions
@@ -148,14 +175,6 @@ public class ScriptParser {
                 .setCondition(parseLoopCondition(loopCondition));
         }
         
-        // Command handlers
-        Matcher commandMatcher = COMMAND_PATTERN.matcher(line);
-        if (commandMatcher.matches()) {
-            String command = commandMatcher.group(1);
-            return new ScriptStatement(ScriptStatement.Type.COMMAND, line, lineNumber, indentLevel)
-                .setCommand(command);
-        }
-        
         // Variable operations
         Matcher varSetMatcher = VARIABLE_SET_PATTERN.matcher(line);
         if (varSetMatcher.matches()) {
@@ -222,14 +241,118 @@ public class ScriptParser {
                 .setParameters(parseParameters(parameters));
         }
         
+        // Delays
+        Matcher waitMatcher = WAIT_PATTERN.matcher(line);
+        if (waitMatcher.matches()) {
+            String amount = waitMatcher.group(1);
+            boolean seconds = waitMatcher.group(2).toLowerCase().startsWith("second");
+            return new ScriptStatement(ScriptStatement.Type.WAIT, line, lineNumber, indentLevel)
+                .setAmount(amount)
+                .setProperty("ticks_per_unit", seconds ? 20 : 1);
+        }
+        
+        // Scheduled runs of another script, "persistently" ones survive restarts
+        Matcher scheduleMatcher = SCHEDULE_PATTERN.matcher(line);
+        if (scheduleMatcher.matches()) {
+            return new ScriptStatement(ScriptStatement.Type.SCHEDULE, line, lineNumber, indentLevel)
+                .setTarget(scheduleMatcher.group(1))
+                .setAmount(scheduleMatcher.group(3))
+                .setProperty("ticks_per_unit", ticksPerUnit(scheduleMatcher.group(4)))
+                .setProperty("repeating", scheduleMatcher.group(2).equalsIgnoreCase("every"))
+                .setProperty("persistent", scheduleMatcher.group(5) != null);
+        }
+        
         // Generic action statement
         return new ScriptStatement(ScriptStatement.Type.ACTION, line, lineNumber, indentLevel);
     }
     
+    /**
+     * Get the number of ticks in a time unit such as "seconds"
+     */
+    private static int ticksPerUnit(String unit) {
+        switch (unit.toLowerCase().charAt(0)) {
+            case 's':
+                return 20;
+            case 'm':
+                return 20 * 60;
+            case 'h':
+                return 20 * 60 * 60;
+            default:
+                return 1;
+        }
+    }
+    
+    /**
+     * Parse handler options into statement properties
+     * "debounce N ticks|seconds" coalesces events, "per player" keeps one window per player,
+     * "block change" only passes moves onto another block,
+     * "batched [N]" runs once per tick, or every N events, for all events since the last run
+     */
+    private void parseEventOptions(String options, ScriptStatement statement) {
+        for (String option : options.split(",")) {
+            option = option.trim().toLowerCase();
+            if (option.isEmpty()) {
+                continue;
+            }
+            
+            Matcher debounceMatcher = DEBOUNCE_PATTERN.matcher(option);
+            Matcher batchMatcher = BATCH_PATTERN.matcher(option);
+            if (debounceMatcher.matches()) {
+                long amount = Long.parseLong(debounceMatcher.group(1));
+                boolean seconds = debounceMatcher.group(2).startsWith("second");
+                statement.setProperty("debounce_ticks", amount * (seconds ? 20 : 1));
+            } else if (option.equals("per player")) {
+                statement.setProperty("per_player", true);
+            } else if (option.equals("block change")) {
+                statement.setProperty("block_change", true);
+            } else if (batchMatcher.matches()) {
+                statement.setProperty("batch_size", batchMatcher.group(1) != null ? Integer.parseInt(batchMatcher.group(1)) : 0);
+            } else {
+                Logger.warning("Unknown event option '" + option + "' on line " + statement.getLineNumber());
+            }
+        }
+    }
+    
+    /**
+     * Parse command options into statement properties
+     * "aliases: a | b c" gives other words for the command's literal part, "permission: x" guards it
+     */
+    private void parseCommandOptions(String options, ScriptStatement statement) {
+        for (String option : options.split(",")) {
+            int colon = option.indexOf(':');
+            String key = (colon < 0 ? option : option.substring(0, colon)).trim().toLowerCase();
+            String value = colon < 0 ? "" : option.substring(colon + 1).trim();
+            if (key.isEmpty()) {
+                continue;
+            }
+            
+            if ((key.equals("aliases") || key.equals("alias")) && !value.isEmpty()) {
+                List<String> aliases = new ArrayList<>();
+                for (String alias : value.split("\\|")) {
+                    alias = alias.trim().replaceAll("^/", "").replaceAll("\\s+", " ");
+                    if (!alias.isEmpty()) {
+                        aliases.add(alias);
+                    }
+                }
+                statement.setProperty("aliases", aliases);
+            } else if (key.equals("permission") && !value.isEmpty()) {
+                statement.setProperty("permission", value);
+            } else {
+                Logger.warning("Unknown command option '" + option.trim() + "' on line " + statement.getLineNumber());
+            }
+        }
+    }
+    
     /**
      * Parse event type from event declaration
      */
     private String parseEventType(String eventDeclaration) {
+        // Variable watchers keep the variable reference as written
+        Matcher variableMatcher = VARIABLE_CHANGE_PATTERN.matcher(eventDeclaration.trim());
+        if (variableMatcher.matches()) {
+            return ScriptEngine.VARIABLE_CHANGE_EVENT + variableMatcher.group(1);
+        }
+        
         // Handle different event types
         eventDeclaration = eventDeclaration.toLowerCase().trim();
         
@@ -237,6 +360,8 @@ public class ScriptParser {
             return "player_join";
         } else if (eventDeclaration.startsWith("player leave") || eventDeclaration.startsWith("player quit")) {
             return "player_leave";
+        } else if (eventDeclaration.startsWith("player move")) {
+            return "player_move";
         } else if (eventDeclaration.startsWith("player death")) {
             return "player_death";
         } else if (eventDeclaration.startsWith("block break")) {
@@ -292,11 +417,27 @@ public class ScriptParser {
     private String parseLoopCondition(String loopCondition) {
         loopCondition = loopCondition.trim();
         
+        // Area loops, answered by the spatial index: "<kind>:<query>:<arguments separated by |>"
+        Matcher regionMatcher = LOOP_REGION_PATTERN.matcher(loopCondition);
+        if (regionMatcher.matches()) {
+            return regionMatcher.group(1) + ":region:" + regionMatcher.group(2) + "|" + regionMatcher.group(3);
+        }
+        Matcher withinMatcher = LOOP_WITHIN_PATTERN.matcher(loopCondition);
+        if (withinMatcher.matches()) {
+            return withinMatcher.group(1) + ":within:" + withinMatcher.group(2) + "|" + withinMatcher.group(3);
+        }
+        Matcher nearestMatcher = LOOP_NEAREST_PATTERN.matcher(loopCondition);
+        if (nearestMatcher.matches()) {
+            return nearestMatcher.group(2) + ":nearest:" + nearestMatcher.group(1) + "|" + nearestMatcher.group(3);
+        }
+        
         // Handle different loop types
         if (loopCondition.startsWith("all players")) {
             return "players:*";
         } else if (loopCondition.startsWith("all entities")) {
             return "entities:*";
+        } else if (loopCondition.startsWith("all events")) {
+            return "events:*";
         } else if (loopCondition.matches("\\d+\\s+times")) {
             String count = loopCondition.replaceAll("\\s+times", "");
             return "times:" + count;
@@ -0,0 +1,131 @@
+package dev.hexlord.hexicript.core.players;
+
+import dev.hexlord.hexicript.HexicriptPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Online players by exact name and by unique id, kept up to date from joins and quits
+ *
+ * Statements that name a player resolve it with one map lookup instead of
+ * Bukkit.getPlayer, which matches name prefixes against every online player.
+ * Names are matched exactly, ignoring case. Player loops iterate an array of
+ * the online players that is replaced, never changed, when someone joins or
+ * quits, so a loop can hold on to it across ticks without copying it.
+ *
+ * A joining player is indexed before script join handlers run and a quitting
+ * one is removed after quit handlers ran, so both can still resolve them.
+ * Lookups are safe from any thread; changes only happen on the main thread.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public class PlayerIndex implements Listener {
+    
+    private static final Player[] NO_PLAYERS = new Player[0];
+    
+    private final HexicriptPlugin plugin;
+    private final Map<String, Player> byName;
+    private final Map<UUID, Player> byId;
+    
+    // Online players; never modified, only replaced
+    private volatile Player[] online;
+    
+    public PlayerIndex(HexicriptPlugin plugin) {
+        this.plugin = plugin;
+        this.byName = new ConcurrentHashMap<>();
+        this.byId = new ConcurrentHashMap<>();
+        this.online = NO_PLAYERS;
+    }
+    
+    /**
+     * Index the players already online and start following joins and quits
+     */
+    public void start() {
+        // Players are already online after a reload
+        Player[] players = Bukkit.getOnlinePlayers().toArray(NO_PLAYERS);
+        for (Player player : players) {
+            byName.put(player.getName().toLowerCase(Locale.ROOT), player);
+            byId.put(player.getUniqueId(), player);
+        }
+        online = players;
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+    }
+    
+    /**
+     * Stop following joins and quits and forget every player
+     */
+    public void shutdown() {
+        HandlerList.unregisterAll(this);
+        byName.clear();
+        byId.clear();
+        online = NO_PLAYERS;
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        byName.put(player.getName().toLowerCase(Locale.ROOT), player);
+        if (byId.put(player.getUniqueId(), player) == null) {
+            // Kept in join order, as Bukkit lists them
+            Player[] players = Arrays.copyOf(online, online.length + 1);
+            players[online.length] = player;
+            online = players;
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        Player player = event.getPlayer();
+        byName.remove(player.getName().toLowerCase(Locale.ROOT), player);
+        if (byId.remove(player.getUniqueId(), player)) {
+            online = Arrays.stream(online).filter(other -> other != player).toArray(Player[]::new);
+        }
+    }
+    
+    /**
+     * Get an online player by exact name, ignoring case, or by unique id in text form
+     * @return The player, or null if no such player is online
+     */
+    public Player getPlayer(String nameOrId) {
+        Player player = byName.get(nameOrId.toLowerCase(Locale.ROOT));
+        if (player == null && nameOrId.length() == 36) {
+            try {
+                player = byId.get(UUID.fromString(nameOrId));
+            } catch (IllegalArgumentException e) {
+                // Not an id either
+            }
+        }
+        return player;
+    }
+    
+    /**
+     * Get an online player by unique id, or null if they are not online
+     */
+    public Player getPlayer(UUID id) {
+        return byId.get(id);
+    }
+    
+    /**
+     * Get the players online when they last changed
+     * The array is shared and must not be modified
+     */
+    public Player[] getOnlinePlayers() {
+        return online;
+    }
+    
+    // Getters
+    public int getOnlineCount() { return online.length; }
+}
@@ -17,6 +17,15 @@ import java.util.HashSet;
  */
 public class Script {
     
+    /**
+     * How much a script's work is protected when the server is under load
+     */
+    public enum Priority {
+        HIGH,       // Never throttled
+        NORMAL,     // Throttled only when the server is far behind
+        LOW         // Throttled first
+    }
+    
     private final String name;
     private final String originalCode;
     private final List<ScriptStatement> statements;
@@ -29,6 +38,7 @@ public class Script {
     private LocalDateTime created;
     private LocalDateTime lastModified;
     private LocalDateTime lastExecuted;
+    private Priority priority = Priority.NORMAL;
     
     // Script properties
     private boolean enabled = true;
@@ -118,6 +128,9 @@ public class Script {
                         requiredPermissions.add(permission);
                     }
                 }
+                if (statement.getProperty("permission") != null) {
+                    requiredPermissions.add((String) statement.getProperty("permission"));
+                }
                 break;
         }
         
@@ -148,6 +161,13 @@ public class Script {
             } else if (line.startsWith("# @permission ")) {
                 String permission = line.substring(14).trim();
                 this.requiredPermissions.add(permission);
+            } else if (line.startsWith("# @priority ")) {
+                String value = line.substring(12).trim().toUpperCase();
+                try {
+                    this.priority = Priority.valueOf(value);
+                } catch (IllegalArgumentException e) {
+                    addWarning("Unknown priority '" + value.toLowerCase() + "', using normal");
+                }
             }
         }
     }
@@ -267,6 +287,7 @@ public class Script {
         copy.author = this.author;
         copy.version = this.version;
         copy.description = this.description;
+        copy.priority = this.priority;
         copy.enabled = this.enabled;
         copy.compiled = this.compiled;
         copy.config = new HashMap<>(this.config);
@@ -283,6 +304,7 @@ public class Script {
     public void setAuthor(String author) { this.author = author; }
     public void setVersion(String version) { this.version = version; }
     public void setDescription(String description) { this.description = description; }
+    public void setPriority(Priority priority) { this.priority = priority; }
     public void setEnabled(boolean enabled) { this.enabled = enabled; }
     public void setCompiled(boolean compiled) { this.compiled = compiled; }
     public void setConfig(String key, Object value) { this.config.put(key, value); }
@@ -298,6 +320,7 @@ public class Script {
     public LocalDateTime getCreated() { return created; }
     public LocalDateTime getLastModified() { return lastModified; }
     public LocalDateTime getLastExecuted() { return lastExecuted; }
+    public Priority getPriority() { return priority; }
     public boolean isEnabled() { return enabled; }
     public boolean isCompiled() { return compiled; }
     public boolean hasErrors() { return hasErrors; }
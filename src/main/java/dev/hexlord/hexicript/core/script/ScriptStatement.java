@@ -56,6 +56,8 @@ public class ScriptStatement {
         SPAWN_ENTITY,
         
         // Flow control
+        WAIT,
+        SCHEDULE,
         RETURN,
         BREAK,
         CONTINUE,
@@ -0,0 +1,436 @@
+package dev.hexlord.hexicript.core.spatial;
+
+import dev.hexlord.hexicript.HexicriptPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDeathEvent;
+import org.bukkit.event.entity.EntitySpawnEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.world.EntitiesLoadEvent;
+import org.bukkit.event.world.EntitiesUnloadEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Players and living entities bucketed by the chunk they are in
+ *
+ * Area loops such as "loop all players between {pos1} and {pos2}" only look
+ * at the buckets of the chunks the area covers, instead of every entity of
+ * the world. Players are moved between buckets as their move and teleport
+ * events cross a chunk border. Other entities fire no move events, so they
+ * are added on spawn and load, removed on death and unload, and re-bucketed
+ * every few ticks. A query may therefore see a mob up to that many ticks
+ * behind; positions themselves are always read live.
+ *
+ * Players and other entities are kept in separate grids, so player queries
+ * never visit a mob. The index is only used on the main thread.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public class SpatialIndex implements Listener {
+    
+    private final HexicriptPlugin plugin;
+    private final boolean trackEntities;
+    private final long refreshTicks;
+    
+    private final Grid players;
+    private final Grid entities;
+    private final Grid[] playerGrids;
+    private final Grid[] allGrids;
+    
+    // Ticks left until the next entity refresh, or -1 while the index is stopped
+    private long refreshCountdown = -1;
+    
+    /**
+     * Buckets of one kind of entity: per world, by packed chunk coordinates
+     */
+    private static final class Grid {
+        private final Map<UUID, Map<Long, List<Entity>>> worlds = new HashMap<>();
+        private final Map<UUID, Cell> cells = new HashMap<>();
+        
+        /**
+         * Move an entity to the bucket of a location, if it is not already there
+         */
+        private void update(Entity entity, Location location) {
+            if (location == null || location.getWorld() == null) {
+                return;
+            }
+            UUID world = location.getWorld().getUID();
+            long chunk = chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+            
+            Cell cell = cells.get(entity.getUniqueId());
+            if (cell != null) {
+                if (cell.chunk == chunk && cell.world.equals(world)) {
+                    return;
+                }
+                unlink(cell);
+            } else {
+                cell = new Cell(entity);
+                cells.put(entity.getUniqueId(), cell);
+            }
+            
+            cell.world = world;
+            cell.chunk = chunk;
+            worlds.computeIfAbsent(world, k -> new HashMap<>())
+                  .computeIfAbsent(chunk, k -> new ArrayList<>(4))
+                  .add(entity);
+        }
+        
+        private void remove(Entity entity) {
+            Cell cell = cells.remove(entity.getUniqueId());
+            if (cell != null) {
+                unlink(cell);
+            }
+        }
+        
+        private void unlink(Cell cell) {
+            Map<Long, List<Entity>> buckets = worlds.get(cell.world);
+            List<Entity> bucket = buckets.get(cell.chunk);
+            bucket.remove(cell.entity);
+            // Empty buckets are dropped so a world's bucket count stays the number of occupied chunks
+            if (bucket.isEmpty()) {
+                buckets.remove(cell.chunk);
+                if (buckets.isEmpty()) {
+                    worlds.remove(cell.world);
+                }
+            }
+        }
+        
+        private Map<Long, List<Entity>> buckets(World world) {
+            return worlds.getOrDefault(world.getUID(), Collections.emptyMap());
+        }
+        
+        private void clear() {
+            worlds.clear();
+            cells.clear();
+        }
+    }
+    
+    /**
+     * Where an indexed entity was bucketed
+     */
+    private static final class Cell {
+        private final Entity entity;
+        private UUID world;
+        private long chunk;
+        
+        private Cell(Entity entity) {
+            this.entity = entity;
+        }
+    }
+    
+    /**
+     * Tests the live position of a candidate
+     */
+    private interface Area {
+        boolean contains(Location location);
+    }
+    
+    public SpatialIndex(HexicriptPlugin plugin) {
+        this.plugin = plugin;
+        
+        var config = plugin.getConfigManager().getConfig();
+        this.trackEntities = config.getBoolean("performance.spatial_index.track_entities", true);
+        this.refreshTicks = Math.max(1, config.getLong("performance.spatial_index.refresh_ticks", 20));
+        
+        this.players = new Grid();
+        this.entities = new Grid();
+        this.playerGrids = new Grid[] { players };
+        this.allGrids = new Grid[] { players, entities };
+    }
+    
+    /**
+     * Index what is already in the worlds and start following movement
+     */
+    public void start() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            players.update(player, player.getLocation());
+        }
+        if (trackEntities) {
+            for (World world : Bukkit.getWorlds()) {
+                for (LivingEntity entity : world.getLivingEntities()) {
+                    if (!(entity instanceof Player)) {
+                        entities.update(entity, entity.getLocation());
+                    }
+                }
+            }
+            refreshCountdown = refreshTicks;
+        }
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+    }
+    
+    /**
+     * Stop following movement and forget everything
+     */
+    public void shutdown() {
+        HandlerList.unregisterAll(this);
+        refreshCountdown = -1;
+        players.clear();
+        entities.clear();
+    }
+    
+    /**
+     * Refresh entity buckets every refresh_ticks ticks
+     * Called once per tick on the main thread by the scheduler
+     */
+    public void tick() {
+        if (refreshCountdown > 0 && --refreshCountdown == 0) {
+            refreshCountdown = refreshTicks;
+            refresh();
+        }
+    }
+    
+    /**
+     * Re-bucket entities that walked into another chunk and drop those gone without an event
+     */
+    private void refresh() {
+        for (Cell cell : new ArrayList<>(entities.cells.values())) {
+            if (cell.entity.isValid()) {
+                entities.update(cell.entity, cell.entity.getLocation());
+            } else {
+                entities.remove(cell.entity);
+            }
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        players.update(event.getPlayer(), event.getPlayer().getLocation());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        players.remove(event.getPlayer());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onMove(PlayerMoveEvent event) {
+        Location from = event.getFrom();
+        Location to = event.getTo();
+        // Almost every move stays in its chunk
+        if (to != null && ((from.getBlockX() >> 4) != (to.getBlockX() >> 4) || (from.getBlockZ() >> 4) != (to.getBlockZ() >> 4)
+            || from.getWorld() != to.getWorld())) {
+            players.update(event.getPlayer(), to);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTeleport(PlayerTeleportEvent event) {
+        players.update(event.getPlayer(), event.getTo());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRespawn(PlayerRespawnEvent event) {
+        players.update(event.getPlayer(), event.getRespawnLocation());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSpawn(EntitySpawnEvent event) {
+        if (trackEntities && event.getEntity() instanceof LivingEntity) {
+            entities.update(event.getEntity(), event.getLocation());
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onDeath(EntityDeathEvent event) {
+        // Dead players stay indexed until they respawn or quit
+        if (!(event.getEntity() instanceof Player)) {
+            entities.remove(event.getEntity());
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntitiesLoad(EntitiesLoadEvent event) {
+        if (!trackEntities) {
+            return;
+        }
+        for (Entity entity : event.getEntities()) {
+            if (entity instanceof LivingEntity && !(entity instanceof Player)) {
+                entities.update(entity, entity.getLocation());
+            }
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntitiesUnload(EntitiesUnloadEvent event) {
+        for (Entity entity : event.getEntities()) {
+            entities.remove(entity);
+        }
+    }
+    
+    /**
+     * Get the players, or entities including players, inside the box between two corners
+     * Both corners are part of the box, as whole blocks
+     */
+    public List<Entity> inRegion(Location corner, Location opposite, boolean playersOnly) {
+        if (corner.getWorld() == null || corner.getWorld() != opposite.getWorld()) {
+            return Collections.emptyList();
+        }
+        
+        int minX = Math.min(corner.getBlockX(), opposite.getBlockX());
+        int minY = Math.min(corner.getBlockY(), opposite.getBlockY());
+        int minZ = Math.min(corner.getBlockZ(), opposite.getBlockZ());
+        int maxX = Math.max(corner.getBlockX(), opposite.getBlockX());
+        int maxY = Math.max(corner.getBlockY(), opposite.getBlockY());
+        int maxZ = Math.max(corner.getBlockZ(), opposite.getBlockZ());
+        
+        return collect(corner.getWorld(), minX >> 4, minZ >> 4, maxX >> 4, maxZ >> 4, playersOnly, location ->
+            location.getBlockX() >= minX && location.getBlockX() <= maxX
+            && location.getBlockY() >= minY && location.getBlockY() <= maxY
+            && location.getBlockZ() >= minZ && location.getBlockZ() <= maxZ);
+    }
+    
+    /**
+     * Get the players, or entities including players, within a distance of a location
+     */
+    public List<Entity> within(Location center, double radius, boolean playersOnly) {
+        if (center.getWorld() == null || radius < 0) {
+            return Collections.emptyList();
+        }
+        
+        double radiusSquared = radius * radius;
+        return collect(center.getWorld(),
+            (int) Math.floor(center.getX() - radius) >> 4, (int) Math.floor(center.getZ() - radius) >> 4,
+            (int) Math.floor(center.getX() + radius) >> 4, (int) Math.floor(center.getZ() + radius) >> 4,
+            playersOnly, location -> location.distanceSquared(center) <= radiusSquared);
+    }
+    
+    /**
+     * Get up to count players, or entities including players, closest to a location, nearest first
+     * Searches rings of chunks outwards and stops once no closer candidate can be left
+     */
+    public List<Entity> nearest(Location center, int count, boolean playersOnly) {
+        World world = center.getWorld();
+        if (world == null || count <= 0) {
+            return Collections.emptyList();
+        }
+        
+        Grid[] grids = playersOnly ? playerGrids : allGrids;
+        int total = 0;
+        for (Grid grid : grids) {
+            total += grid.buckets(world).size();
+        }
+        
+        Comparator<Entity> byDistance = Comparator.comparingDouble(entity -> entity.getLocation().distanceSquared(center));
+        List<Entity> found = new ArrayList<>();
+        int centerX = center.getBlockX() >> 4;
+        int centerZ = center.getBlockZ() >> 4;
+        int visited = 0;
+        
+        for (int ring = 0; visited < total; ring++) {
+            // Past a ring as long as there are occupied chunks, going through all of them is cheaper
+            if (8 * ring > total) {
+                found.clear();
+                collect(world, grids, null, found);
+                break;
+            }
+            
+            // Everything in this ring is at least (ring - 1) chunks away
+            if (found.size() >= count) {
+                found.sort(byDistance);
+                double bound = Math.max(0, ring - 1) * 16.0;
+                if (found.get(count - 1).getLocation().distanceSquared(center) <= bound * bound) {
+                    break;
+                }
+            }
+            
+            for (int x = centerX - ring; x <= centerX + ring; x++) {
+                for (int z = centerZ - ring; z <= centerZ + ring; z++) {
+                    // Only the edge of the square is new
+                    if (Math.abs(x - centerX) != ring && Math.abs(z - centerZ) != ring) {
+                        continue;
+                    }
+                    for (Grid grid : grids) {
+                        List<Entity> bucket = grid.buckets(world).get(chunkKey(x, z));
+                        if (bucket != null) {
+                            visited++;
+                            addValid(bucket, null, found);
+                        }
+                    }
+                }
+            }
+        }
+        
+        found.sort(byDistance);
+        return found.size() > count ? new ArrayList<>(found.subList(0, count)) : found;
+    }
+    
+    /**
+     * Collect the valid entities of a chunk range whose position is in an area
+     */
+    private List<Entity> collect(World world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ,
+                                 boolean playersOnly, Area area) {
+        Grid[] grids = playersOnly ? playerGrids : allGrids;
+        List<Entity> found = new ArrayList<>();
+        long chunks = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+        
+        for (Grid grid : grids) {
+            Map<Long, List<Entity>> buckets = grid.buckets(world);
+            if (chunks > buckets.size()) {
+                // A large area over few occupied chunks: check the buckets instead of the chunks
+                for (Map.Entry<Long, List<Entity>> entry : buckets.entrySet()) {
+                    int x = (int) (entry.getKey() >> 32);
+                    int z = (int) (long) entry.getKey();
+                    if (x >= minChunkX && x <= maxChunkX && z >= minChunkZ && z <= maxChunkZ) {
+                        addValid(entry.getValue(), area, found);
+                    }
+                }
+                continue;
+            }
+            
+            for (int x = minChunkX; x <= maxChunkX; x++) {
+                for (int z = minChunkZ; z <= maxChunkZ; z++) {
+                    List<Entity> bucket = buckets.get(chunkKey(x, z));
+                    if (bucket != null) {
+                        addValid(bucket, area, found);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+    
+    private static void collect(World world, Grid[] grids, Area area, List<Entity> found) {
+        for (Grid grid : grids) {
+            for (List<Entity> bucket : grid.buckets(world).values()) {
+                addValid(bucket, area, found);
+            }
+        }
+    }
+    
+    private static void addValid(List<Entity> bucket, Area area, List<Entity> found) {
+        for (Entity entity : bucket) {
+            if (entity.isValid() && (area == null || area.contains(entity.getLocation()))) {
+                found.add(entity);
+            }
+        }
+    }
+    
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+    
+    // Getters
+    public int getPlayerCount() { return players.cells.size(); }
+    public int getEntityCount() { return entities.cells.size(); }
+    public boolean isTrackingEntities() { return trackEntities; }
+}
@@ -0,0 +1,407 @@
+package dev.hexlord.hexicript.core.variables;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable hash array mapped trie
+ *
+ * Every update returns a new map that shares all untouched branches with the
+ * previous one, so a version can be handed to another thread and read without
+ * locks while writers keep producing newer versions. The Map view is read-only;
+ * use {@link #plus} and {@link #minus} to derive new versions.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public final class PersistentMap<K, V> extends AbstractMap<K, V> {
+    
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+    
+    private final Node root;
+    private final int size;
+    
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+    
+    /**
+     * Get the empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+    
+    /**
+     * Create a persistent copy of a map
+     * Entries with a null key or value are left out, since this map cannot hold them
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentMap) {
+            return (PersistentMap<K, V>) map;
+        }
+        
+        PersistentMap<K, V> result = empty();
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                result = result.plus(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Return a map with the given key bound to the given value
+     * @throws NullPointerException if the key or value is null; use {@link #minus} to unbind a key
+     */
+    public PersistentMap<K, V> plus(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("PersistentMap does not permit null keys or values");
+        }
+        
+        boolean[] addedLeaf = new boolean[1];
+        Node start = root != null ? root : BitmapNode.EMPTY;
+        Node newRoot = start.assoc(0, hash(key), key, value, addedLeaf);
+        
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentMap<>(newRoot, addedLeaf[0] ? size + 1 : size);
+    }
+    
+    /**
+     * Return a map without the given key
+     */
+    public PersistentMap<K, V> minus(Object key) {
+        if (root == null || key == null) {
+            return this;
+        }
+        
+        Node newRoot = root.without(0, hash(key), key);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? empty() : new PersistentMap<>(newRoot, size - 1);
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (root == null || key == null) {
+            return null;
+        }
+        return (V) root.find(0, hash(key), key);
+    }
+    
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator<>(root);
+            }
+            
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+    
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+    
+    private static int bitpos(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+    
+    /**
+     * Trie node; arrays hold key/value pairs, a null key marks a child node in the value slot
+     */
+    private interface Node {
+        Object find(int shift, int hash, Object key);
+        
+        Node assoc(int shift, int hash, Object key, Object value, boolean[] addedLeaf);
+        
+        Node without(int shift, int hash, Object key);
+        
+        Object[] array();
+    }
+    
+    /**
+     * Node indexed by a 32-bit occupancy bitmap
+     */
+    private static final class BitmapNode implements Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+        
+        private final int bitmap;
+        private final Object[] array;
+        
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+        
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+        
+        @Override
+        public Object find(int shift, int hash, Object key) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            
+            int idx = index(bit);
+            Object k = array[2 * idx];
+            Object v = array[2 * idx + 1];
+            if (k == null) {
+                return ((Node) v).find(shift + BITS, hash, key);
+            }
+            return key.equals(k) ? v : null;
+        }
+        
+        @Override
+        public Node assoc(int shift, int hash, Object key, Object value, boolean[] addedLeaf) {
+            int bit = bitpos(hash, shift);
+            int idx = index(bit);
+            
+            if ((bitmap & bit) != 0) {
+                Object k = array[2 * idx];
+                Object v = array[2 * idx + 1];
+                
+                if (k == null) {
+                    Node child = ((Node) v).assoc(shift + BITS, hash, key, value, addedLeaf);
+                    return child == v ? this : new BitmapNode(bitmap, cloneAndSet(array, 2 * idx + 1, child));
+                }
+                
+                if (key.equals(k)) {
+                    return value == v ? this : new BitmapNode(bitmap, cloneAndSet(array, 2 * idx + 1, value));
+                }
+                
+                addedLeaf[0] = true;
+                Object[] newArray = cloneAndSet(array, 2 * idx, null);
+                newArray[2 * idx + 1] = createNode(shift + BITS, k, v, hash, key, value);
+                return new BitmapNode(bitmap, newArray);
+            }
+            
+            int n = Integer.bitCount(bitmap);
+            Object[] newArray = new Object[2 * (n + 1)];
+            System.arraycopy(array, 0, newArray, 0, 2 * idx);
+            newArray[2 * idx] = key;
+            newArray[2 * idx + 1] = value;
+            System.arraycopy(array, 2 * idx, newArray, 2 * (idx + 1), 2 * (n - idx));
+            addedLeaf[0] = true;
+            return new BitmapNode(bitmap | bit, newArray);
+        }
+        
+        @Override
+        public Node without(int shift, int hash, Object key) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            
+            int idx = index(bit);
+            Object k = array[2 * idx];
+            Object v = array[2 * idx + 1];
+            
+            if (k == null) {
+                Node child = ((Node) v).without(shift + BITS, hash, key);
+                if (child == v) {
+                    return this;
+                }
+                if (child != null) {
+                    return new BitmapNode(bitmap, cloneAndSet(array, 2 * idx + 1, child));
+                }
+            } else if (!key.equals(k)) {
+                return this;
+            }
+            
+            if (bitmap == bit) {
+                return null;
+            }
+            return new BitmapNode(bitmap ^ bit, removePair(array, idx));
+        }
+        
+        @Override
+        public Object[] array() {
+            return array;
+        }
+    }
+    
+    /**
+     * Node for keys whose full 32-bit hashes are equal
+     */
+    private static final class CollisionNode implements Node {
+        private final int hash;
+        private final Object[] array;
+        
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+        
+        private int findIndex(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        
+        @Override
+        public Object find(int shift, int hash, Object key) {
+            if (hash != this.hash) {
+                return null;
+            }
+            int idx = findIndex(key);
+            return idx < 0 ? null : array[idx + 1];
+        }
+        
+        @Override
+        public Node assoc(int shift, int hash, Object key, Object value, boolean[] addedLeaf) {
+            if (hash != this.hash) {
+                // Push this node one level down behind a bitmap node
+                return new BitmapNode(bitpos(this.hash, shift), new Object[] { null, this })
+                    .assoc(shift, hash, key, value, addedLeaf);
+            }
+            
+            int idx = findIndex(key);
+            if (idx >= 0) {
+                return array[idx + 1] == value ? this : new CollisionNode(hash, cloneAndSet(array, idx + 1, value));
+            }
+            
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            addedLeaf[0] = true;
+            return new CollisionNode(hash, newArray);
+        }
+        
+        @Override
+        public Node without(int shift, int hash, Object key) {
+            int idx = findIndex(key);
+            if (idx < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            return new CollisionNode(hash, removePair(array, idx / 2));
+        }
+        
+        @Override
+        public Object[] array() {
+            return array;
+        }
+    }
+    
+    private static Node createNode(int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+        int hash1 = hash(key1);
+        if (hash1 == hash2) {
+            return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+        }
+        
+        boolean[] addedLeaf = new boolean[1];
+        return BitmapNode.EMPTY
+            .assoc(shift, hash1, key1, value1, addedLeaf)
+            .assoc(shift, hash2, key2, value2, addedLeaf);
+    }
+    
+    private static Object[] cloneAndSet(Object[] array, int index, Object value) {
+        Object[] clone = array.clone();
+        clone[index] = value;
+        return clone;
+    }
+    
+    private static Object[] removePair(Object[] array, int pairIndex) {
+        Object[] newArray = new Object[array.length - 2];
+        System.arraycopy(array, 0, newArray, 0, 2 * pairIndex);
+        System.arraycopy(array, 2 * (pairIndex + 1), newArray, 2 * pairIndex, newArray.length - 2 * pairIndex);
+        return newArray;
+    }
+    
+    /**
+     * Depth-first iterator over the trie without materializing the entries
+     */
+    private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        private final ArrayDeque<Object[]> arrays = new ArrayDeque<>();
+        private final ArrayDeque<Integer> positions = new ArrayDeque<>();
+        private Map.Entry<K, V> next;
+        
+        EntryIterator(Node root) {
+            if (root != null) {
+                arrays.push(root.array());
+                positions.push(0);
+            }
+            advance();
+        }
+        
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (!arrays.isEmpty()) {
+                Object[] array = arrays.peek();
+                int pos = positions.pop();
+                
+                if (pos >= array.length) {
+                    arrays.pop();
+                    continue;
+                }
+                positions.push(pos + 2);
+                
+                Object key = array[pos];
+                Object value = array[pos + 1];
+                if (key == null) {
+                    arrays.push(((Node) value).array());
+                    positions.push(0);
+                } else {
+                    next = new AbstractMap.SimpleImmutableEntry<>((K) key, (V) value);
+                    return;
+                }
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+        
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> current = next;
+            advance();
+            return current;
+        }
+    }
+}
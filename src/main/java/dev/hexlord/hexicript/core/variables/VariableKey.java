@@ -0,0 +1,62 @@
+package dev.hexlord.hexicript.core.variables;
+
+import java.util.Objects;
+
+/**
+ * Identifies a persistent variable by scope, owner and name
+ * Global variables use an empty owner, player variables use the player name
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public final class VariableKey {
+    
+    private final VariableManager.VariableType type;
+    private final String owner;
+    private final String name;
+    private final int hash;
+    
+    public VariableKey(VariableManager.VariableType type, String owner, String name) {
+        this.type = type;
+        this.owner = owner != null ? owner : "";
+        this.name = name;
+        this.hash = Objects.hash(type, this.owner, name);
+    }
+    
+    /**
+     * Create a key for a global variable
+     */
+    public static VariableKey global(String name) {
+        return new VariableKey(VariableManager.VariableType.GLOBAL, "", name);
+    }
+    
+    /**
+     * Create a key for a player variable
+     */
+    public static VariableKey player(String playerName, String name) {
+        return new VariableKey(VariableManager.VariableType.PLAYER, playerName, name);
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof VariableKey)) return false;
+        VariableKey other = (VariableKey) o;
+        return type == other.type && owner.equals(other.owner) && name.equals(other.name);
+    }
+    
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+    
+    @Override
+    public String toString() {
+        return owner.isEmpty() ? type + ":" + name : type + ":" + owner + ":" + name;
+    }
+    
+    // Getters
+    public VariableManager.VariableType getType() { return type; }
+    public String getOwner() { return owner; }
+    public String getName() { return name; }
+}
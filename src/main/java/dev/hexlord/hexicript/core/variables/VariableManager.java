@@ -2,13 +2,21 @@ package dev.hexlord.hexicript.core.variables;
 
 import dev.hexlord.hexicript.core.ScriptEngine;
 import dev.hexlord.hexicript.core.execution.ExecutionContext;
+import dev.hexlord.hexicript.core.memory.ScriptMemoryTracker;
+import dev.hexlord.hexicript.core.memory.SizeEstimator;
+import dev.hexlord.hexicript.storage.VariableStorage;
 import dev.hexlord.hexicript.utils.Logger;
 import org.bukkit.entity.Player;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 /**
  * Manages script variables for hexicript
@@ -22,7 +30,10 @@ public class VariableManager {
     private final ScriptEngine engine;
     
     // Variable storage
-    private final Map<String, Object> globalVariables;
+    // Globals are published as immutable snapshots so async readers never block writers
+    private final AtomicReference<VariableSnapshot> globals;
+    // Async writes that replaced a value changed after the execution read it
+    private final AtomicLong commitConflicts;
     private final Map<String, Map<String, Object>> playerVariables;
     private final Map<String, Object> temporaryVariables;
     
@@ -30,6 +41,19 @@ public class VariableManager {
     private final Map<String, VariableType> variableTypes;
     private final Map<String, Long> variableLastAccess;
     
+    // Persistence backend for global and player variables
+    private final VariableStorage storage;
+    
+    // Per-script memory attribution
+    private final ScriptMemoryTracker memoryTracker;
+    
+    // Compiled variable references, keyed by their raw text
+    private final Map<String, VariableTemplate> templates;
+    private static final int MAX_CACHED_TEMPLATES = 10000;
+    
+    // Change notifications, delivered once per tick on the main thread
+    private final VariableWatchers watchers;
+    
     /**
      * Types of variables
      */
@@ -43,11 +67,37 @@ public class VariableManager {
     
     public VariableManager(ScriptEngine engine) {
         this.engine = engine;
-        this.globalVariables = new ConcurrentHashMap<>();
+        this.globals = new AtomicReference<>(VariableSnapshot.EMPTY);
+        this.commitConflicts = new AtomicLong();
         this.playerVariables = new ConcurrentHashMap<>();
         this.temporaryVariables = new ConcurrentHashMap<>();
         this.variableTypes = new ConcurrentHashMap<>();
         this.variableLastAccess = new ConcurrentHashMap<>();
+        this.storage = VariableStorage.create(engine.getPlugin());
+        this.memoryTracker = engine.getMemoryTracker();
+        this.templates = new ConcurrentHashMap<>();
+        this.watchers = new VariableWatchers();
+        
+        loadPersistedVariables();
+    }
+    
+    /**
+     * Populate the in-memory cache from the storage backend
+     */
+    private void loadPersistedVariables() {
+        storage.load((key, value) -> {
+            switch (key.getType()) {
+                case GLOBAL:
+                    publishGlobals(Collections.singletonMap(key.getName(), value), false);
+                    break;
+                    
+                case PLAYER:
+                    playerVariables.computeIfAbsent(key.getOwner(), k -> new ConcurrentHashMap<>())
+                                  .put(key.getName(), value);
+                    break;
+            }
+            variableTypes.put(key.getName(), key.getType());
+        });
     }
     
     /**
@@ -55,8 +105,9 @@ public class VariableManager {
      */
     public void setVariable(String name, Object value, ExecutionContext context) {
         // Determine variable type and storage location
-        VariableType type = determineVariableType(name);
-        String processedName = processVariableName(name, context);
+        VariableTemplate template = getTemplate(name);
+        VariableType type = template.getType();
+        String processedName = template.resolveName(context);
         
         // Update last access time
         variableLastAccess.put(processedName, System.currentTimeMillis());
@@ -64,17 +115,23 @@ public class VariableManager {
         
         switch (type) {
             case GLOBAL:
-                globalVariables.put(processedName, value);
+                account(VariableKey.global(processedName), value, context);
+                writeGlobal(processedName, value, context);
                 break;
                 
             case PLAYER:
-                String playerName = extractPlayerName(name, context);
+                String playerName = template.resolveOwner(context);
+                account(VariableKey.player(playerName, processedName), value, context);
                 playerVariables.computeIfAbsent(playerName, k -> new ConcurrentHashMap<>())
                               .put(processedName, value);
+                storage.write(VariableKey.player(playerName, processedName), value);
+                watchers.changed(VariableKey.player(playerName, processedName), value);
                 break;
                 
             case TEMPORARY:
+                account(temporaryKey(processedName), value, context);
                 temporaryVariables.put(processedName, value);
+                watchers.changed(temporaryKey(processedName), value);
                 break;
                 
             case LOCAL:
@@ -82,7 +139,7 @@ public class VariableManager {
                 break;
                 
             case LIST:
-                handleListVariable(processedName, value, context);
+                handleListVariable(template.resolveListName(context), value, context);
                 break;
         }
         
@@ -93,8 +150,9 @@ public class VariableManager {
      * Get a variable value
      */
     public Object getVariable(String name, ExecutionContext context) {
-        VariableType type = determineVariableType(name);
-        String processedName = processVariableName(name, context);
+        VariableTemplate template = getTemplate(name);
+        VariableType type = template.getType();
+        String processedName = template.resolveName(context);
         
         // Update last access time
         variableLastAccess.put(processedName, System.currentTimeMillis());
@@ -103,11 +161,11 @@ public class VariableManager {
         
         switch (type) {
             case GLOBAL:
-                value = globalVariables.get(processedName);
+                value = readGlobal(processedName, context);
                 break;
                 
             case PLAYER:
-                String playerName = extractPlayerName(name, context);
+                String playerName = template.resolveOwner(context);
                 Map<String, Object> playerVars = playerVariables.get(playerName);
                 if (playerVars != null) {
                     value = playerVars.get(processedName);
@@ -123,7 +181,7 @@ public class VariableManager {
                 break;
                 
             case LIST:
-                value = getListVariable(processedName, context);
+                value = readGlobal(template.resolveListName(context), context);
                 break;
         }
         
@@ -135,6 +193,12 @@ public class VariableManager {
      * Add a value to a variable (for numeric variables or lists)
      */
     public void addToVariable(String name, Object value, ExecutionContext context) {
+        VariableTemplate template = getTemplate(name);
+        if (template.getType() == VariableType.GLOBAL && value != null) {
+            addToGlobal(template.resolveName(context), value, context);
+            return;
+        }
+        
         Object currentValue = getVariable(name, context);
         
         if (currentValue == null) {
@@ -154,7 +218,7 @@ public class VariableManager {
         }
         // Handle list addition
         else if (name.endsWith("::*")) {
-            addToListVariable(name, value, context);
+            addToListVariable(getTemplate(name).resolveListName(context), value, context);
         }
         // Default: replace value
         else {
@@ -162,28 +226,62 @@ public class VariableManager {
         }
     }
     
+    /**
+     * Add to a global variable as a change applied to the value current when it is published,
+     * so concurrent additions from other executions are not lost
+     */
+    private void addToGlobal(String name, Object value, ExecutionContext context) {
+        variableLastAccess.put(name, System.currentTimeMillis());
+        variableTypes.put(name, VariableType.GLOBAL);
+        account(VariableKey.global(name), add(readGlobal(name, context), value), context);
+        updateGlobal(name, current -> add(current, value), context);
+    }
+    
+    /**
+     * Add a value to another: numbers are summed, strings concatenated, anything else replaced
+     */
+    private static Object add(Object current, Object value) {
+        if (current == null) {
+            return value;
+        }
+        if (current instanceof Number && value instanceof Number) {
+            return ((Number) current).doubleValue() + ((Number) value).doubleValue();
+        }
+        if (current instanceof String || value instanceof String) {
+            return current.toString() + value.toString();
+        }
+        return value;
+    }
+    
     /**
      * Remove a variable
      */
     public void removeVariable(String name, ExecutionContext context) {
-        VariableType type = determineVariableType(name);
-        String processedName = processVariableName(name, context);
+        VariableTemplate template = getTemplate(name);
+        VariableType type = template.getType();
+        String processedName = template.resolveName(context);
         
         switch (type) {
             case GLOBAL:
-                globalVariables.remove(processedName);
+                memoryTracker.releaseVariable(VariableKey.global(processedName));
+                writeGlobal(processedName, null, context);
                 break;
                 
             case PLAYER:
-                String playerName = extractPlayerName(name, context);
+                String playerName = template.resolveOwner(context);
                 Map<String, Object> playerVars = playerVariables.get(playerName);
                 if (playerVars != null) {
                     playerVars.remove(processedName);
                 }
+                memoryTracker.releaseVariable(VariableKey.player(playerName, processedName));
+                storage.delete(VariableKey.player(playerName, processedName));
+                watchers.changed(VariableKey.player(playerName, processedName), null);
                 break;
                 
             case TEMPORARY:
+                memoryTracker.releaseVariable(temporaryKey(processedName));
                 temporaryVariables.remove(processedName);
+                watchers.changed(temporaryKey(processedName), null);
                 break;
                 
             case LOCAL:
@@ -191,7 +289,7 @@ public class VariableManager {
                 break;
                 
             case LIST:
-                removeListVariable(processedName, context);
+                removeListVariable(template.resolveListName(context), context);
                 break;
         }
         
@@ -215,7 +313,12 @@ public class VariableManager {
         Set<String> names = new java.util.HashSet<>();
         
         // Add global variables
-        names.addAll(globalVariables.keySet());
+        VariableTransaction transaction = context.getVariableTransaction();
+        if (transaction != null) {
+            names.addAll(transaction.getNames());
+        } else {
+            names.addAll(globals.get().getVariables().keySet());
+        }
         
         // Add player variables
         if (context.getPlayer() != null) {
@@ -240,19 +343,40 @@ public class VariableManager {
     public void clearVariables(VariableType type, Player player) {
         switch (type) {
             case GLOBAL:
-                globalVariables.clear();
+                VariableSnapshot cleared = globals.getAndUpdate(current ->
+                    new VariableSnapshot(current.getVersion() + 1, PersistentMap.empty()));
+                cleared.getVariables().keySet().forEach(key -> {
+                    storage.delete(VariableKey.global(key));
+                    watchers.changed(VariableKey.global(key), null);
+                });
+                memoryTracker.releaseVariables(key -> key.getType() == VariableType.GLOBAL);
                 break;
                 
             case PLAYER:
                 if (player != null) {
-                    playerVariables.remove(player.getName());
+                    Map<String, Object> removed = playerVariables.remove(player.getName());
+                    if (removed != null) {
+                        removed.keySet().forEach(key -> {
+                            storage.delete(VariableKey.player(player.getName(), key));
+                            watchers.changed(VariableKey.player(player.getName(), key), null);
+                        });
+                    }
+                    memoryTracker.releaseVariables(key -> key.getType() == VariableType.PLAYER
+                                                          && key.getOwner().equals(player.getName()));
                 } else {
+                    playerVariables.forEach((owner, vars) -> vars.keySet().forEach(key -> {
+                        storage.delete(VariableKey.player(owner, key));
+                        watchers.changed(VariableKey.player(owner, key), null);
+                    }));
                     playerVariables.clear();
+                    memoryTracker.releaseVariables(key -> key.getType() == VariableType.PLAYER);
                 }
                 break;
                 
             case TEMPORARY:
+                temporaryVariables.keySet().forEach(key -> watchers.changed(temporaryKey(key), null));
                 temporaryVariables.clear();
+                memoryTracker.releaseVariables(key -> key.getType() == VariableType.TEMPORARY);
                 break;
         }
         
@@ -260,119 +384,261 @@ public class VariableManager {
     }
     
     /**
-     * Determine the type of a variable based on its name
+     * Get the compiled template for a raw variable reference
+     */
+    public VariableTemplate getTemplate(String name) {
+        VariableTemplate template = templates.get(name);
+        if (template == null) {
+            template = VariableTemplate.compile(name);
+            // Names built at runtime are compiled per access once the cache is full
+            if (templates.size() < MAX_CACHED_TEMPLATES) {
+                VariableTemplate existing = templates.putIfAbsent(name, template);
+                if (existing != null) {
+                    template = existing;
+                }
+            }
+        }
+        return template;
+    }
+    
+    /**
+     * Compile every variable reference of a script ahead of its first execution
+     * Returns the estimated size of the compiled templates
      */
-    private VariableType determineVariableType(String name) {
-        if (name.startsWith("{_")) {
-            return VariableType.TEMPORARY;
-        } else if (name.contains("::%") || name.contains("%::")) {
-            return VariableType.PLAYER;
-        } else if (name.endsWith("::*")) {
-            return VariableType.LIST;
-        } else if (name.startsWith("{")) {
-            return VariableType.GLOBAL;
+    public long precompile(Iterable<String> names) {
+        long bytes = 0;
+        for (String name : names) {
+            bytes += getTemplate(name).estimateSize();
+        }
+        return bytes;
+    }
+    
+    /**
+     * Handle list variable operations
+     */
+    private void handleListVariable(String baseName, Object value, ExecutionContext context) {
+        // List variables are stored as immutable maps where key is index
+        if (value instanceof Map) {
+            // Setting entire list
+            PersistentMap<String, Object> list = PersistentMap.copyOf((Map<String, Object>) value);
+            account(VariableKey.global(baseName), list, context);
+            writeGlobal(baseName, list, context);
         } else {
-            return VariableType.LOCAL;
+            // Adding single value
+            addToListVariable(baseName, value, context);
         }
     }
     
     /**
-     * Process variable name by replacing placeholders
+     * Add to list variable
      */
-    private String processVariableName(String name, ExecutionContext context) {
-        // Remove braces
-        if (name.startsWith("{") && name.endsWith("}")) {
-            name = name.substring(1, name.length() - 1);
+    private void addToListVariable(String baseName, Object value, ExecutionContext context) {
+        if (value == null) {
+            skipUnsetListValue(baseName);
+            return;
         }
         
-        // Replace player placeholder
-        if (name.contains("%player%") && context.getPlayer() != null) {
-            name = name.replace("%player%", context.getPlayer().getName());
+        String index = String.valueOf(getOrCreateList(baseName, context).size() + 1);
+        accountGrowth(VariableKey.global(baseName), SizeEstimator.estimateEntry(index, value), context);
+        // Appended to the list current when it is published, so concurrent appends all land
+        updateGlobal(baseName, current -> {
+            PersistentMap<String, Object> list = asList(current);
+            return list.plus(String.valueOf(list.size() + 1), value);
+        }, context);
+    }
+    
+    /**
+     * Lists cannot hold null, so adding an unset value leaves the list as it was
+     */
+    private void skipUnsetListValue(String baseName) {
+        Logger.warning("Skipped adding an unset value to list variable " + baseName + "::*");
+    }
+    
+    /**
+     * Remove list variable
+     */
+    private void removeListVariable(String baseName, ExecutionContext context) {
+        memoryTracker.releaseVariable(VariableKey.global(baseName));
+        writeGlobal(baseName, null, context);
+    }
+    
+    /**
+     * Attribute a variable write to the executing script, rejecting it if the script is throttled
+     */
+    private void account(VariableKey key, Object value, ExecutionContext context) {
+        if (value == null) {
+            memoryTracker.releaseVariable(key);
+            return;
         }
         
-        // Replace other context variables
-        for (Map.Entry<String, Object> entry : context.getLocalVariables().entrySet()) {
-            name = name.replace("%" + entry.getKey() + "%", entry.getValue().toString());
+        long bytes = SizeEstimator.estimate(value);
+        memoryTracker.checkWrite(context.getScript(), key, bytes);
+        memoryTracker.recordVariable(context.getScript(), key, bytes);
+    }
+    
+    /**
+     * Attribute an in-place growth, such as a list append, to the executing script
+     */
+    private void accountGrowth(VariableKey key, long delta, ExecutionContext context) {
+        memoryTracker.checkGrowth(context.getScript());
+        memoryTracker.recordGrowth(context.getScript(), key, delta);
+    }
+    
+    private static VariableKey temporaryKey(String name) {
+        return new VariableKey(VariableType.TEMPORARY, "", name);
+    }
+    
+    /**
+     * Get or create a list for list variables
+     */
+    private PersistentMap<String, Object> getOrCreateList(String baseName, ExecutionContext context) {
+        return asList(readGlobal(baseName, context));
+    }
+    
+    private static PersistentMap<String, Object> asList(Object existing) {
+        if (existing instanceof Map) {
+            return PersistentMap.copyOf((Map<String, Object>) existing);
+        } else {
+            return PersistentMap.empty();
         }
-        
-        return name;
     }
     
     /**
-     * Extract player name from player variable
+     * Read a global variable, through the execution's snapshot if it has one
      */
-    private String extractPlayerName(String name, ExecutionContext context) {
-        if (name.contains("::%") && name.contains("%::")) {
-            // Extract player name from pattern like {var::%player%::data}
-            int start = name.indexOf("::%") + 3;
-            int end = name.indexOf("%::", start);
-            return name.substring(start, end);
-        } else if (context.getPlayer() != null) {
-            return context.getPlayer().getName();
+    private Object readGlobal(String name, ExecutionContext context) {
+        VariableTransaction transaction = context.getVariableTransaction();
+        if (transaction != null) {
+            return transaction.get(name);
         }
-        return "unknown";
+        return globals.get().get(name);
     }
     
     /**
-     * Handle list variable operations
+     * Write a global variable; async executions buffer it until commit
      */
-    private void handleListVariable(String name, Object value, ExecutionContext context) {
-        // List variables are stored as Map<String, Object> where key is index
-        String baseName = name.replace("::*", "");
-        Map<String, Object> list = getOrCreateList(baseName);
-        
-        if (value instanceof Map) {
-            // Setting entire list
-            list.clear();
-            list.putAll((Map<String, Object>) value);
+    private void writeGlobal(String name, Object value, ExecutionContext context) {
+        VariableTransaction transaction = context.getVariableTransaction();
+        if (transaction != null) {
+            transaction.put(name, value);
         } else {
-            // Adding single value
-            int nextIndex = list.size() + 1;
-            list.put(String.valueOf(nextIndex), value);
+            publishGlobals(Collections.singletonMap(name, value), true);
         }
-        
-        globalVariables.put(baseName, list);
     }
     
     /**
-     * Get list variable
+     * Change a global variable based on its current value; async executions buffer the change until commit
      */
-    private Object getListVariable(String name, ExecutionContext context) {
-        String baseName = name.replace("::*", "");
-        return globalVariables.get(baseName);
+    private void updateGlobal(String name, UnaryOperator<Object> change, ExecutionContext context) {
+        VariableTransaction transaction = context.getVariableTransaction();
+        if (transaction != null) {
+            transaction.update(name, change);
+        } else {
+            publishGlobals(Collections.singletonMap(name, new VariableTransaction.Update(change)), true);
+        }
     }
     
     /**
-     * Add to list variable
+     * Atomically publish a set of global writes as a new snapshot
+     * A null value or the transaction removal marker removes the variable, and an
+     * update is applied to the value it replaces
+     * @return The snapshot the writes were applied to
      */
-    private void addToListVariable(String name, Object value, ExecutionContext context) {
-        String baseName = name.replace("::*", "");
-        Map<String, Object> list = getOrCreateList(baseName);
+    private VariableSnapshot publishGlobals(Map<String, Object> writes, boolean persist) {
+        VariableSnapshot current;
+        VariableSnapshot next;
+        Map<String, Object> published = new LinkedHashMap<>();
         
-        int nextIndex = list.size() + 1;
-        list.put(String.valueOf(nextIndex), value);
+        do {
+            current = globals.get();
+            PersistentMap<String, Object> variables = current.getVariables();
+            for (Map.Entry<String, Object> write : writes.entrySet()) {
+                Object value = write.getValue();
+                if (value instanceof VariableTransaction.Update) {
+                    value = ((VariableTransaction.Update) value).change.apply(variables.get(write.getKey()));
+                } else if (value == VariableTransaction.REMOVED) {
+                    value = null;
+                }
+                variables = value == null ? variables.minus(write.getKey()) : variables.plus(write.getKey(), value);
+                published.put(write.getKey(), value);
+            }
+            next = new VariableSnapshot(current.getVersion() + 1, variables);
+        } while (!globals.compareAndSet(current, next));
         
-        globalVariables.put(baseName, list);
+        if (persist) {
+            for (Map.Entry<String, Object> write : published.entrySet()) {
+                Object value = write.getValue();
+                if (value == null) {
+                    storage.delete(VariableKey.global(write.getKey()));
+                } else {
+                    storage.write(VariableKey.global(write.getKey()), value);
+                }
+                watchers.changed(VariableKey.global(write.getKey()), value);
+            }
+        }
+        return current;
     }
     
     /**
-     * Remove list variable
+     * Start a snapshot-isolated transaction for an async execution
      */
-    private void removeListVariable(String name, ExecutionContext context) {
-        String baseName = name.replace("::*", "");
-        globalVariables.remove(baseName);
+    public VariableTransaction beginTransaction() {
+        return new VariableTransaction(globals::get);
     }
     
     /**
-     * Get or create a list for list variables
+     * Publish the buffered global writes of an execution in one atomic step
+     * Updates such as additions apply to the latest value; for plain writes the last
+     * writer wins, and a write based on a value that changed since it was read is
+     * counted as a conflict
      */
-    private Map<String, Object> getOrCreateList(String baseName) {
-        Object existing = globalVariables.get(baseName);
-        if (existing instanceof Map) {
-            return (Map<String, Object>) existing;
-        } else {
-            return new HashMap<>();
+    public void commit(ExecutionContext context) {
+        VariableTransaction transaction = context.getVariableTransaction();
+        if (transaction == null || !transaction.hasWrites()) {
+            return;
+        }
+        
+        VariableSnapshot base = publishGlobals(transaction.getWrites(), true);
+        int conflicts = transaction.countConflicts(base);
+        if (conflicts > 0) {
+            commitConflicts.addAndGet(conflicts);
+            Logger.debug("Script '" + (context.getScript() != null ? context.getScript().getName() : "?") + "' overwrote "
+                + conflicts + " global variables that changed after it read them");
         }
+        transaction.clearWrites();
+    }
+    
+    /**
+     * Drop the buffered global writes of an execution without publishing them, e.g. after it failed
+     */
+    public void discard(ExecutionContext context) {
+        VariableTransaction transaction = context.getVariableTransaction();
+        if (transaction != null) {
+            transaction.clearWrites();
+        }
+    }
+    
+    /**
+     * Watch a variable reference such as {score} or {kills::%player%} for changes
+     * The watcher runs on the main thread at most once per tick per variable
+     */
+    public VariableSubscription watch(String variable, VariableWatcher watcher) {
+        return watchers.add(VariableTemplate.compile(variable), watcher);
+    }
+    
+    /**
+     * Hand watchers the changes made since the last tick
+     * Called once per tick on the main thread by the scheduler
+     */
+    public void deliverChanges() {
+        watchers.drain();
+    }
+    
+    /**
+     * Get the latest published snapshot of global variables
+     */
+    public VariableSnapshot getGlobalSnapshot() {
+        return globals.get();
     }
     
     /**
@@ -380,11 +646,17 @@ public class VariableManager {
      */
     public Map<String, Object> getStatistics() {
         Map<String, Object> stats = new HashMap<>();
-        stats.put("global_variables", globalVariables.size());
+        VariableSnapshot snapshot = globals.get();
+        stats.put("global_variables", snapshot.getVariables().size());
+        stats.put("global_version", snapshot.getVersion());
         stats.put("player_variables", playerVariables.size());
         stats.put("temporary_variables", temporaryVariables.size());
-        stats.put("total_variables", globalVariables.size() + temporaryVariables.size() + 
+        stats.put("total_variables", snapshot.getVariables().size() + temporaryVariables.size() + 
                   playerVariables.values().stream().mapToInt(Map::size).sum());
+        stats.put("compiled_templates", templates.size());
+        stats.put("commit_conflicts", commitConflicts.get());
+        stats.put("variable_watchers", watchers.getSubscriptionCount());
+        storage.getStatistics().forEach((key, value) -> stats.put("storage_" + key, value));
         return stats;
     }
     
@@ -400,6 +672,7 @@ public class VariableManager {
                 VariableType type = variableTypes.get(entry.getKey());
                 if (type == VariableType.TEMPORARY) {
                     temporaryVariables.remove(entry.getKey());
+                    memoryTracker.releaseVariable(temporaryKey(entry.getKey()));
                 }
                 variableTypes.remove(entry.getKey());
                 return true;
@@ -409,4 +682,15 @@ public class VariableManager {
         
         Logger.debug("Cleaned up unused variables");
     }
-}
\ No newline at end of file
+    
+    /**
+     * Stop change notifications, flush pending variable writes and close the storage backend
+     */
+    public void shutdown() {
+        watchers.clear();
+        storage.close();
+    }
+    
+    // Getters
+    public VariableStorage getStorage() { return storage; }
+}
@@ -0,0 +1,31 @@
+package dev.hexlord.hexicript.core.variables;
+
+/**
+ * An immutable, versioned view of all global variables
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public final class VariableSnapshot {
+    
+    static final VariableSnapshot EMPTY = new VariableSnapshot(0, PersistentMap.empty());
+    
+    private final long version;
+    private final PersistentMap<String, Object> variables;
+    
+    VariableSnapshot(long version, PersistentMap<String, Object> variables) {
+        this.version = version;
+        this.variables = variables;
+    }
+    
+    /**
+     * Get a variable from this snapshot
+     */
+    public Object get(String name) {
+        return variables.get(name);
+    }
+    
+    // Getters
+    public long getVersion() { return version; }
+    public PersistentMap<String, Object> getVariables() { return variables; }
+}
@@ -0,0 +1,65 @@
+package dev.hexlord.hexicript.core.variables;
+
+/**
+ * A registered variable watcher
+ * Cancel it to stop receiving notifications
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public final class VariableSubscription {
+    
+    private final VariableWatchers registry;
+    private final VariableTemplate template;
+    private final VariableManager.VariableType scope;
+    private final VariableWatcher watcher;
+    private volatile boolean cancelled;
+    
+    VariableSubscription(VariableWatchers registry, VariableTemplate template, VariableWatcher watcher) {
+        this.registry = registry;
+        this.template = template;
+        // List variables are stored as globals under their base name
+        this.scope = template.getType() == VariableManager.VariableType.LIST
+            ? VariableManager.VariableType.GLOBAL : template.getType();
+        this.watcher = watcher;
+    }
+    
+    /**
+     * Stop receiving notifications
+     */
+    public void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            registry.remove(this);
+        }
+    }
+    
+    /**
+     * Check if a changed variable is covered by this subscription
+     */
+    boolean matches(VariableKey key) {
+        if (key.getType() != scope) {
+            return false;
+        }
+        return template.getType() == VariableManager.VariableType.LIST
+            ? template.matches(key.getName() + "::*")
+            : template.matches(key.getName());
+    }
+    
+    /**
+     * Get the storage name watched by a constant subscription, or null for a pattern
+     */
+    String getExactName() {
+        if (!template.isConstant()) {
+            return null;
+        }
+        return template.getType() == VariableManager.VariableType.LIST
+            ? template.resolveListName(null) : template.resolveName(null);
+    }
+    
+    // Getters
+    public String getVariable() { return template.getSource(); }
+    public VariableManager.VariableType getScope() { return scope; }
+    public VariableWatcher getWatcher() { return watcher; }
+    public boolean isCancelled() { return cancelled; }
+}
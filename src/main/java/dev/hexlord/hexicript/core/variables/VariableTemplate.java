@@ -0,0 +1,198 @@
+package dev.hexlord.hexicript.core.variables;
+
+import dev.hexlord.hexicript.core.execution.ExecutionContext;
+import dev.hexlord.hexicript.core.memory.SizeEstimator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A variable reference compiled once into its scope and name parts
+ *
+ * The raw reference, e.g. {kills::%player%}, is classified and split into
+ * literal and placeholder parts when it is first seen. Resolving it for an
+ * execution is then a single concatenation instead of repeated string scans.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public final class VariableTemplate {
+    
+    private static final String PLAYER_PLACEHOLDER = "player";
+    
+    private final String source;
+    private final VariableManager.VariableType type;
+    
+    // Alternating parts: literals[0] placeholders[0] literals[1] ... literals[n]
+    private final String[] literals;
+    private final String[] placeholders;
+    
+    // Placeholder naming the owning player of a player variable, or null to use the context player
+    private final String ownerPlaceholder;
+    
+    // Name with the list suffix removed, for list variables
+    private final String listBaseName;
+    
+    private VariableTemplate(String source, VariableManager.VariableType type, String[] literals,
+                             String[] placeholders, String ownerPlaceholder) {
+        this.source = source;
+        this.type = type;
+        this.literals = literals;
+        this.placeholders = placeholders;
+        this.ownerPlaceholder = ownerPlaceholder;
+        this.listBaseName = type == VariableManager.VariableType.LIST && placeholders.length == 0
+            ? literals[0].replace("::*", "") : null;
+    }
+    
+    /**
+     * Compile a raw variable reference
+     */
+    public static VariableTemplate compile(String source) {
+        VariableManager.VariableType type = classify(source);
+        
+        String name = source;
+        if (name.startsWith("{") && name.endsWith("}")) {
+            name = name.substring(1, name.length() - 1);
+        }
+        
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        
+        int i = 0;
+        while (i < name.length()) {
+            int open = name.indexOf('%', i);
+            int close = open >= 0 ? name.indexOf('%', open + 1) : -1;
+            if (close < 0) {
+                literal.append(name, i, name.length());
+                break;
+            }
+            
+            literal.append(name, i, open);
+            literals.add(literal.toString());
+            literal.setLength(0);
+            placeholders.add(name.substring(open + 1, close));
+            i = close + 1;
+        }
+        literals.add(literal.toString());
+        
+        String ownerPlaceholder = null;
+        if (type == VariableManager.VariableType.PLAYER && source.contains("::%") && source.contains("%::")) {
+            // {var::%player%::data} names its owner explicitly
+            int start = source.indexOf("::%") + 3;
+            int end = source.indexOf("%::", start);
+            if (end > start) {
+                ownerPlaceholder = source.substring(start, end);
+            }
+        }
+        
+        return new VariableTemplate(source, type, literals.toArray(new String[0]),
+                                    placeholders.toArray(new String[0]), ownerPlaceholder);
+    }
+    
+    /**
+     * Classify a raw variable reference
+     */
+    private static VariableManager.VariableType classify(String name) {
+        if (name.startsWith("{_")) {
+            return VariableManager.VariableType.TEMPORARY;
+        } else if (name.contains("::%") || name.contains("%::")) {
+            return VariableManager.VariableType.PLAYER;
+        } else if (name.endsWith("::*")) {
+            return VariableManager.VariableType.LIST;
+        } else if (name.startsWith("{")) {
+            return VariableManager.VariableType.GLOBAL;
+        } else {
+            return VariableManager.VariableType.LOCAL;
+        }
+    }
+    
+    /**
+     * Resolve the storage name for an execution
+     */
+    public String resolveName(ExecutionContext context) {
+        if (placeholders.length == 0) {
+            return literals[0];
+        }
+        
+        StringBuilder builder = new StringBuilder(source.length() + 16);
+        for (int i = 0; i < placeholders.length; i++) {
+            builder.append(literals[i]).append(resolvePlaceholder(placeholders[i], context));
+        }
+        return builder.append(literals[placeholders.length]).toString();
+    }
+    
+    /**
+     * Resolve the owning player of a player variable
+     */
+    public String resolveOwner(ExecutionContext context) {
+        if (ownerPlaceholder != null) {
+            return resolvePlaceholder(ownerPlaceholder, context);
+        } else if (context.getPlayer() != null) {
+            return context.getPlayer().getName();
+        }
+        return "unknown";
+    }
+    
+    /**
+     * Resolve the base name of a list variable
+     */
+    public String resolveListName(ExecutionContext context) {
+        return listBaseName != null ? listBaseName : resolveName(context).replace("::*", "");
+    }
+    
+    /**
+     * Check if a resolved storage name could have been produced by this template
+     */
+    public boolean matches(String name) {
+        if (placeholders.length == 0) {
+            return literals[0].equals(name);
+        }
+        
+        String last = literals[placeholders.length];
+        if (!name.startsWith(literals[0]) || !name.endsWith(last)
+            || name.length() < literals[0].length() + last.length()) {
+            return false;
+        }
+        
+        // Every placeholder must expand to something, middle literals appear in order
+        int position = literals[0].length() + 1;
+        int limit = name.length() - last.length();
+        for (int i = 1; i < placeholders.length; i++) {
+            int found = name.indexOf(literals[i], position);
+            if (found < 0 || found + literals[i].length() >= limit + 1) {
+                return false;
+            }
+            position = found + literals[i].length() + 1;
+        }
+        return position <= limit;
+    }
+    
+    private static String resolvePlaceholder(String placeholder, ExecutionContext context) {
+        if (PLAYER_PLACEHOLDER.equals(placeholder) && context.getPlayer() != null) {
+            return context.getPlayer().getName();
+        }
+        
+        Object value = context.getVariable(placeholder);
+        return value != null ? value.toString() : "%" + placeholder + "%";
+    }
+    
+    /**
+     * Estimate the retained size of this template in bytes
+     */
+    public long estimateSize() {
+        long size = 48 + SizeEstimator.estimateString(source);
+        for (String literal : literals) {
+            size += 8 + SizeEstimator.estimateString(literal);
+        }
+        for (String placeholder : placeholders) {
+            size += 8 + SizeEstimator.estimateString(placeholder);
+        }
+        return size;
+    }
+    
+    // Getters
+    public String getSource() { return source; }
+    public VariableManager.VariableType getType() { return type; }
+    public boolean isConstant() { return placeholders.length == 0; }
+}
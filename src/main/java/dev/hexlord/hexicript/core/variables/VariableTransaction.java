@@ -0,0 +1,168 @@
+package dev.hexlord.hexicript.core.variables;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Snapshot-isolated access to global variables for one async execution
+ *
+ * The first read pins the latest published snapshot, so every later read in
+ * the same execution sees the same version. Writes are buffered here and
+ * published together by {@link VariableManager#commit}. Updates such as
+ * {@code add 1 to {x}} are buffered as changes and applied to the value that
+ * is current at commit, so concurrent updates of one variable all count.
+ * A transaction belongs to a single execution and is not shared between
+ * threads concurrently.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public class VariableTransaction {
+    
+    // Marks a buffered removal
+    static final Object REMOVED = new Object();
+    
+    private final Supplier<VariableSnapshot> source;
+    private final Map<String, Object> writes;
+    // Values read from the snapshot, to detect writes based on values that changed since
+    private final Map<String, Object> reads;
+    private VariableSnapshot snapshot;
+    
+    /**
+     * A buffered change, applied to the value that is current when it is published
+     */
+    static final class Update {
+        final UnaryOperator<Object> change;
+        
+        Update(UnaryOperator<Object> change) {
+            this.change = change;
+        }
+    }
+    
+    VariableTransaction(Supplier<VariableSnapshot> source) {
+        this.source = source;
+        this.writes = new LinkedHashMap<>();
+        this.reads = new HashMap<>();
+    }
+    
+    /**
+     * Read a global variable, seeing this execution's own writes first
+     */
+    public Object get(String name) {
+        Object written = writes.get(name);
+        if (written instanceof Update) {
+            return ((Update) written).change.apply(view().get(name));
+        }
+        if (written != null) {
+            return written == REMOVED ? null : written;
+        }
+        
+        Object value = view().get(name);
+        reads.putIfAbsent(name, value != null ? value : REMOVED);
+        return value;
+    }
+    
+    /**
+     * Buffer a write
+     */
+    public void put(String name, Object value) {
+        writes.put(name, value != null ? value : REMOVED);
+    }
+    
+    /**
+     * Buffer a change to apply to the value current at commit
+     * The change gets null for an unset variable and must not return null
+     */
+    public void update(String name, UnaryOperator<Object> change) {
+        Object written = writes.get(name);
+        if (written instanceof Update) {
+            UnaryOperator<Object> previous = ((Update) written).change;
+            writes.put(name, new Update(value -> change.apply(previous.apply(value))));
+        } else if (written != null) {
+            // Overwritten by this execution already, so the current value does not matter
+            writes.put(name, change.apply(written == REMOVED ? null : written));
+        } else {
+            writes.put(name, new Update(change));
+        }
+    }
+    
+    /**
+     * Buffer a removal
+     */
+    public void remove(String name) {
+        writes.put(name, REMOVED);
+    }
+    
+    /**
+     * Get the pinned snapshot, pinning the latest one on first use
+     */
+    public VariableSnapshot view() {
+        if (snapshot == null) {
+            snapshot = source.get();
+        }
+        return snapshot;
+    }
+    
+    /**
+     * Get the names visible to this execution
+     */
+    public Set<String> getNames() {
+        Set<String> names = new HashSet<>(view().getVariables().keySet());
+        for (Map.Entry<String, Object> entry : writes.entrySet()) {
+            if (entry.getValue() == REMOVED) {
+                names.remove(entry.getKey());
+            } else {
+                names.add(entry.getKey());
+            }
+        }
+        return names;
+    }
+    
+    /**
+     * Check if this execution has buffered writes
+     */
+    public boolean hasWrites() {
+        return !writes.isEmpty();
+    }
+    
+    /**
+     * Get the version this execution reads from, or -1 if nothing was read yet
+     */
+    public long getVersion() {
+        return snapshot != null ? snapshot.getVersion() : -1;
+    }
+    
+    /**
+     * Count the writes that replace a value this execution read and that has changed since
+     * Such a write was computed from a stale value, and publishing it discards the newer one
+     */
+    int countConflicts(VariableSnapshot current) {
+        int conflicts = 0;
+        for (Map.Entry<String, Object> write : writes.entrySet()) {
+            Object read = reads.get(write.getKey());
+            if (read == null || write.getValue() instanceof Update) {
+                continue;
+            }
+            Object latest = current.get(write.getKey());
+            if ((latest != null ? latest : REMOVED) != read) {
+                conflicts++;
+            }
+        }
+        return conflicts;
+    }
+    
+    Map<String, Object> getWrites() {
+        return Collections.unmodifiableMap(writes);
+    }
+    
+    void clearWrites() {
+        writes.clear();
+        reads.clear();
+    }
+}
@@ -0,0 +1,15 @@
+package dev.hexlord.hexicript.core.variables;
+
+/**
+ * Receives variable change notifications
+ * Called on the main thread at most once per tick per variable, with the
+ * latest value of that tick; a removed variable is reported as null
+ */
+@FunctionalInterface
+public interface VariableWatcher {
+    
+    /**
+     * Handle a variable change
+     */
+    void onChange(VariableKey key, Object value);
+}
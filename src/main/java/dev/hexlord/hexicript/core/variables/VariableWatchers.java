@@ -0,0 +1,179 @@
+package dev.hexlord.hexicript.core.variables;
+
+import dev.hexlord.hexicript.utils.Logger;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of variable watchers and the queue of changes waiting for them
+ *
+ * Writers on any thread record a change with one map put and, for the first
+ * change of a key in a tick, one queue offer. The main thread drains the queue
+ * once per tick and hands each watcher the latest value, so a key that changes
+ * many times within a tick is reported once. Writes to unwatched variables
+ * return after a single lookup.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public class VariableWatchers {
+    
+    // Marks a coalesced removal
+    private static final Object REMOVED = new Object();
+    
+    // Subscriptions on constant names, keyed by scope and storage name
+    private final Map<VariableKey, List<VariableSubscription>> exact;
+    // Subscriptions with placeholders, matched against every change in their scope
+    private final List<VariableSubscription> patterns;
+    
+    // Latest value per changed key and the order the keys first changed in
+    private final Map<VariableKey, Object> pending;
+    private final ConcurrentLinkedQueue<VariableKey> queue;
+    
+    private volatile int subscriptionCount;
+    
+    VariableWatchers() {
+        this.exact = new ConcurrentHashMap<>();
+        this.patterns = new CopyOnWriteArrayList<>();
+        this.pending = new ConcurrentHashMap<>();
+        this.queue = new ConcurrentLinkedQueue<>();
+    }
+    
+    /**
+     * Register a watcher for a variable reference
+     */
+    VariableSubscription add(VariableTemplate template, VariableWatcher watcher) {
+        if (template.getType() == VariableManager.VariableType.LOCAL) {
+            throw new IllegalArgumentException("Local variables cannot be watched: " + template.getSource());
+        }
+        
+        VariableSubscription subscription = new VariableSubscription(this, template, watcher);
+        String exactName = subscription.getExactName();
+        
+        synchronized (this) {
+            if (exactName != null) {
+                exact.computeIfAbsent(new VariableKey(subscription.getScope(), "", exactName),
+                                      k -> new CopyOnWriteArrayList<>()).add(subscription);
+            } else {
+                patterns.add(subscription);
+            }
+            subscriptionCount++;
+        }
+        return subscription;
+    }
+    
+    /**
+     * Unregister a watcher
+     */
+    synchronized void remove(VariableSubscription subscription) {
+        String exactName = subscription.getExactName();
+        boolean removed;
+        
+        if (exactName != null) {
+            VariableKey key = new VariableKey(subscription.getScope(), "", exactName);
+            List<VariableSubscription> subscriptions = exact.get(key);
+            removed = subscriptions != null && subscriptions.remove(subscription);
+            if (subscriptions != null && subscriptions.isEmpty()) {
+                exact.remove(key);
+            }
+        } else {
+            removed = patterns.remove(subscription);
+        }
+        
+        if (removed) {
+            subscriptionCount--;
+        }
+    }
+    
+    /**
+     * Record a change; a null value records a removal
+     */
+    void changed(VariableKey key, Object value) {
+        if (subscriptionCount == 0 || !isWatched(key)) {
+            return;
+        }
+        
+        // Only the first change of a key since the last drain enqueues it
+        if (pending.put(key, value != null ? value : REMOVED) == null) {
+            queue.offer(key);
+        }
+    }
+    
+    /**
+     * Deliver the changes recorded since the last drain
+     * Changes made by the watchers themselves are delivered on the next drain
+     */
+    void drain() {
+        int count = queue.size();
+        for (int i = 0; i < count; i++) {
+            VariableKey key = queue.poll();
+            if (key == null) {
+                break;
+            }
+            
+            Object value = pending.remove(key);
+            if (value == null) {
+                continue;
+            }
+            deliver(key, value == REMOVED ? null : value);
+        }
+    }
+    
+    private void deliver(VariableKey key, Object value) {
+        List<VariableSubscription> subscriptions = exact.get(new VariableKey(key.getType(), "", key.getName()));
+        if (subscriptions != null) {
+            for (VariableSubscription subscription : subscriptions) {
+                notifyWatcher(subscription, key, value);
+            }
+        }
+        
+        for (VariableSubscription subscription : patterns) {
+            if (subscription.matches(key)) {
+                notifyWatcher(subscription, key, value);
+            }
+        }
+    }
+    
+    private void notifyWatcher(VariableSubscription subscription, VariableKey key, Object value) {
+        if (subscription.isCancelled()) {
+            return;
+        }
+        
+        try {
+            subscription.getWatcher().onChange(key, value);
+        } catch (Exception e) {
+            Logger.error("Error in watcher for variable " + subscription.getVariable() + ": " + e.getMessage());
+        }
+    }
+    
+    private boolean isWatched(VariableKey key) {
+        if (!exact.isEmpty() && exact.containsKey(new VariableKey(key.getType(), "", key.getName()))) {
+            return true;
+        }
+        for (VariableSubscription subscription : patterns) {
+            if (subscription.matches(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Drop all subscriptions and pending changes
+     */
+    synchronized void clear() {
+        exact.clear();
+        patterns.clear();
+        pending.clear();
+        queue.clear();
+        subscriptionCount = 0;
+    }
+    
+    // Getters
+    public int getSubscriptionCount() { return subscriptionCount; }
+    public int getPendingCount() { return pending.size(); }
+}
@@ -0,0 +1,205 @@
+package dev.hexlord.hexicript.events;
+
+import dev.hexlord.hexicript.core.execution.ExecutionContext;
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Ties a script event type, as normalized by the parser, to the Bukkit event behind it
+ * Knows which player an event belongs to and which event-* locals a handler sees.
+ * Locals whose values are plain names, such as a block type or world, are marked
+ * as keys so handler guards on them can be checked straight against the event.
+ * Named predicates back handler options such as "block change".
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public final class EventBinding {
+    
+    private static final Map<String, EventBinding> BINDINGS = new HashMap<>();
+    
+    // Lower-case names of enum constants, so reading a key does not allocate on every event
+    private static final Map<Enum<?>, String> NAMES = new ConcurrentHashMap<>();
+    
+    static {
+        bind("player_join", PlayerJoinEvent.class, false, PlayerJoinEvent::getPlayer);
+        bind("player_leave", PlayerQuitEvent.class, false, PlayerQuitEvent::getPlayer);
+        bind("player_move", PlayerMoveEvent.class, false, PlayerMoveEvent::getPlayer)
+            .key("event-world", event -> event.getTo().getWorld().getName())
+            .predicate("block change", event -> !sameBlock(event.getFrom(), event.getTo()));
+        bind("player_death", PlayerDeathEvent.class, false, PlayerDeathEvent::getEntity)
+            .variable("event-message", PlayerDeathEvent::getDeathMessage);
+        bindBlock(bind("block_break", BlockBreakEvent.class, false, BlockBreakEvent::getPlayer), BlockBreakEvent::getBlock);
+        bindBlock(bind("block_place", BlockPlaceEvent.class, false, BlockPlaceEvent::getPlayer), BlockPlaceEvent::getBlock);
+        bind("entity_damage", EntityDamageEvent.class, false,
+                event -> event.getEntity() instanceof Player ? (Player) event.getEntity() : null)
+            .variable("event-damage", EntityDamageEvent::getDamage)
+            .key("event-cause", event -> nameOf(event.getCause()));
+        // Fired off the main thread
+        bind("player_chat", AsyncPlayerChatEvent.class, true, AsyncPlayerChatEvent::getPlayer)
+            .variable("event-message", AsyncPlayerChatEvent::getMessage);
+    }
+    
+    private final String eventType;
+    private final Class<? extends Event> eventClass;
+    private final boolean async;
+    private final Function<Event, Player> playerGetter;
+    private final Map<String, Function<Event, Object>> variables;
+    private final Set<String> keys;
+    private final Map<String, Predicate<Event>> predicates;
+    
+    private EventBinding(String eventType, Class<? extends Event> eventClass, boolean async,
+                         Function<Event, Player> playerGetter) {
+        this.eventType = eventType;
+        this.eventClass = eventClass;
+        this.async = async;
+        this.playerGetter = playerGetter;
+        this.variables = new LinkedHashMap<>();
+        this.keys = new HashSet<>();
+        this.predicates = new HashMap<>();
+    }
+    
+    /**
+     * Typed builder for one binding, used while filling the table
+     */
+    private static final class Builder<E extends Event> {
+        private final EventBinding binding;
+        
+        private Builder(EventBinding binding) {
+            this.binding = binding;
+        }
+        
+        @SuppressWarnings("unchecked")
+        Builder<E> variable(String name, Function<E, Object> getter) {
+            binding.variables.put(name, event -> getter.apply((E) event));
+            return this;
+        }
+        
+        Builder<E> key(String name, Function<E, Object> getter) {
+            binding.keys.add(name);
+            return variable(name, getter);
+        }
+        
+        @SuppressWarnings("unchecked")
+        Builder<E> predicate(String name, Predicate<E> test) {
+            binding.predicates.put(name, event -> test.test((E) event));
+            return this;
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <E extends Event> Builder<E> bind(String eventType, Class<E> eventClass, boolean async,
+                                                     Function<E, Player> playerGetter) {
+        EventBinding binding = new EventBinding(eventType, eventClass, async, event -> playerGetter.apply((E) event));
+        BINDINGS.put(eventType, binding);
+        return new Builder<>(binding);
+    }
+    
+    private static <E extends Event> void bindBlock(Builder<E> builder, Function<E, Block> blockGetter) {
+        builder.key("event-block", event -> nameOf(blockGetter.apply(event).getType()))
+               .key("event-world", event -> blockGetter.apply(event).getWorld().getName());
+    }
+    
+    private static boolean sameBlock(Location from, Location to) {
+        return to == null || (from.getBlockX() == to.getBlockX() && from.getBlockY() == to.getBlockY()
+            && from.getBlockZ() == to.getBlockZ() && from.getWorld() == to.getWorld());
+    }
+    
+    private static String nameOf(Enum<?> constant) {
+        return NAMES.computeIfAbsent(constant, c -> c.name().toLowerCase());
+    }
+    
+    /**
+     * Get the binding for an event type, or null if no Bukkit event backs it
+     */
+    public static EventBinding forType(String eventType) {
+        return BINDINGS.get(eventType);
+    }
+    
+    /**
+     * Get the player an event belongs to, or null if it has none
+     */
+    public Player getPlayer(Event event) {
+        return playerGetter.apply(event);
+    }
+    
+    /**
+     * Set the event-* locals a handler of this event sees
+     */
+    public void setVariables(Event event, ExecutionContext context) {
+        for (Map.Entry<String, Function<Event, Object>> variable : variables.entrySet()) {
+            context.setVariable(variable.getKey(), variable.getValue().apply(event));
+        }
+    }
+    
+    /**
+     * Append the values of the event-* locals of an event, in the order of getVariableNames
+     */
+    public void addVariables(Event event, List<Object> values) {
+        for (Function<Event, Object> getter : variables.values()) {
+            values.add(getter.apply(event));
+        }
+    }
+    
+    /**
+     * Get the names of the event-* locals a handler of this event sees
+     */
+    public String[] getVariableNames() {
+        return variables.keySet().toArray(new String[0]);
+    }
+    
+    /**
+     * Get the value of one event-* local, or null if this event has no such local
+     */
+    public Object getVariable(Event event, String name) {
+        Function<Event, Object> getter = variables.get(name);
+        return getter != null ? getter.apply(event) : null;
+    }
+    
+    /**
+     * Check if this event has a named predicate, such as "block change"
+     */
+    public boolean hasPredicate(String name) {
+        return predicates.containsKey(name);
+    }
+    
+    /**
+     * Test an event against one of its named predicates
+     */
+    public boolean test(String name, Event event) {
+        Predicate<Event> predicate = predicates.get(name);
+        return predicate != null && predicate.test(event);
+    }
+    
+    /**
+     * Check if a local holds a plain name that handler guards may be checked against
+     */
+    public boolean isKey(String name) {
+        return keys.contains(name);
+    }
+    
+    // Getters
+    public String getEventType() { return eventType; }
+    public Class<? extends Event> getEventClass() { return eventClass; }
+    public boolean isAsync() { return async; }
+}
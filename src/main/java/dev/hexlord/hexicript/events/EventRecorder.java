@@ -0,0 +1,183 @@
+package dev.hexlord.hexicript.events;
+
+import dev.hexlord.hexicript.utils.Logger;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the events scripts listen for into a trace file
+ *
+ * The router hands every event it dispatches to the active recorder, from
+ * whichever thread fired it, before any handler runs. The event is encoded
+ * in memory on that thread, since its attributes may change once handlers
+ * run, and the record is queued for a writer thread that owns the file, so
+ * recording never waits on the disk. A failed write, or a writer that falls
+ * too far behind, stops the recording instead of the event.
+ * Traces are replayed offline by the ReplayDriver of the test sources.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public class EventRecorder {
+    
+    // Records waiting for the writer. A record cannot be dropped, since later records may refer
+    // to strings it introduced, so a full queue ends the recording instead
+    private static final int MAX_PENDING = 1 << 16;
+    private static final byte[] END = new byte[0];
+    
+    private final File file;
+    private final DataOutputStream stream;
+    private final ByteArrayOutputStream buffer;
+    private final EventTrace.Output out;
+    private final BlockingQueue<byte[]> pending;
+    private final Thread writer;
+    private final long startTime;
+    private long lastEvent;
+    private long eventCount;
+    private volatile boolean closed;
+    
+    public EventRecorder(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        
+        this.file = file;
+        this.stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        this.buffer = new ByteArrayOutputStream(256);
+        this.out = new EventTrace.Output(new DataOutputStream(buffer));
+        this.pending = new ArrayBlockingQueue<>(MAX_PENDING);
+        this.startTime = System.nanoTime();
+        this.lastEvent = startTime;
+        
+        stream.writeInt(EventTrace.MAGIC);
+        stream.writeByte(EventTrace.VERSION);
+        
+        this.writer = new Thread(this::writeRecords, "hexicript-event-recorder");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    /**
+     * Append an event to the trace
+     * Events of types without a codec are skipped
+     */
+    public void record(EventBinding binding, Event event, Player player) {
+        EventTrace.Codec codec = EventTrace.forType(binding.getEventType());
+        if (closed || codec == null) {
+            return;
+        }
+        
+        String failure = null;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            
+            // Records share one string table, so they are encoded and queued in the same order
+            long now = System.nanoTime();
+            try {
+                buffer.reset();
+                out.writeString(binding.getEventType());
+                out.writeVarLong(TimeUnit.NANOSECONDS.toMicros(now - lastEvent));
+                out.writeString(player != null ? player.getName() : null);
+                codec.writer.write(event, out);
+                
+                if (pending.offer(buffer.toByteArray())) {
+                    lastEvent = now;
+                    eventCount++;
+                } else {
+                    failure = "the trace writer fell behind";
+                }
+            } catch (IOException | RuntimeException e) {
+                // The string table may already hold strings of the lost record
+                failure = e.getMessage();
+            }
+        }
+        
+        if (failure != null && stop()) {
+            Logger.error("Stopped recording events to " + file.getName() + ": " + failure);
+            // Only signal the writer, the event thread never waits on it. A full queue means it is
+            // behind, so it is interrupted and the trace ends at the last record it wrote
+            if (!pending.offer(END)) {
+                writer.interrupt();
+            }
+        }
+    }
+    
+    /**
+     * Write queued records to the file until the recording is closed
+     */
+    private void writeRecords() {
+        try {
+            byte[] record;
+            while ((record = pending.take()) != END) {
+                stream.write(record);
+            }
+        } catch (IOException e) {
+            // A half-written record ends the trace; replay stops at it
+            closed = true;
+            pending.clear();
+            Logger.error("Stopped recording events to " + file.getName() + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                Logger.error("Failed to close event trace " + file.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Stop taking events
+     * @return Whether this call stopped the recording, false if it had already stopped
+     */
+    private synchronized boolean stop() {
+        if (closed) {
+            return false;
+        }
+        closed = true;
+        return true;
+    }
+    
+    /**
+     * Stop recording, then wait for the writer to flush and close the trace
+     * Also waits for a writer a failed recording already signalled
+     */
+    public void close() {
+        // Nothing is queued once closed is set, so the end marker is the last record
+        try {
+            if (stop() && !pending.offer(END, 5, TimeUnit.SECONDS)) {
+                writer.interrupt();
+            }
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            writer.interrupt();
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Get how long this recording has run, in milliseconds
+     */
+    public long getDuration() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+    
+    // Getters
+    public File getFile() { return file; }
+    public synchronized long getEventCount() { return eventCount; }
+    public boolean isClosed() { return closed; }
+}
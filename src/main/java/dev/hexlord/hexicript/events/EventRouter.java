@@ -0,0 +1,585 @@
+package dev.hexlord.hexicript.events;
+
+import dev.hexlord.hexicript.core.ScriptEngine;
+import dev.hexlord.hexicript.core.execution.EventBatch;
+import dev.hexlord.hexicript.core.execution.ExecutionContext;
+import dev.hexlord.hexicript.core.script.Script;
+import dev.hexlord.hexicript.core.script.ScriptStatement;
+import dev.hexlord.hexicript.utils.Logger;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Dispatches Bukkit events to the script handlers that listen for them
+ *
+ * Handlers are compiled per event type into arrays when a script is
+ * activated, and the whole table is replaced in one volatile write whenever a
+ * script comes or goes. Firing an event is then one map lookup and a loop over
+ * an array that never changes under the caller. A Bukkit listener is only
+ * registered for event types some active script handles, and removed again
+ * once the last of them is unloaded.
+ *
+ * Guards at the top of a handler are hoisted into filters that are checked
+ * against the event before any execution context exists. Handlers guarded by
+ * an equality on an event key, e.g. "if {event-block} == stone:", are indexed
+ * by that value, so a block break only visits the handlers for its block type.
+ *
+ * Handlers declared with "debounce N ticks" coalesce bursts of events: the
+ * first event opens a window of N ticks and the handler runs once when it
+ * closes, with the latest event of the window. With "per player" each player
+ * has their own window, so a handler on player move runs at most once per
+ * player every N ticks however often the player moves. Windows are only
+ * touched on the main thread.
+ *
+ * Handlers declared "batched" run once per tick for all the events their
+ * guards accepted during it, or every N events with "batched N". Each event
+ * only appends its player and event-* values to the handler's buffer, and the
+ * handler walks them with "loop all events:". Buffers are only touched on the
+ * main thread.
+ *
+ * Handlers of events fired off the main thread, such as chat, run on the
+ * event's thread for as long as their statements are async-safe: formatting,
+ * variables, conditions and messages to the player. The handlers that reach a
+ * statement needing the main thread stop there, and what is left of all of
+ * them is handed to the main thread in one hop per event.
+ *
+ * While a recording is running, every dispatched event is also appended to
+ * an event trace that ReplayDriver, in the test sources, feeds back in
+ * without a server.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public class EventRouter {
+    
+    private static final Handler[] NO_HANDLERS = new Handler[0];
+    private static final HandlerFilter[] NO_FILTERS = new HandlerFilter[0];
+    private static final Index[] NO_INDEXES = new Index[0];
+    
+    private final ScriptEngine engine;
+    
+    // Routes per event type; never modified, only replaced
+    private volatile Map<String, Route> routes;
+    
+    // Bukkit listeners per event type, only touched on the main thread
+    private final Map<String, Listener> listeners;
+    
+    // Events folded into an already open debounce window, and into a batch
+    private long coalescedCount;
+    private long batchedCount;
+    
+    // Trace dispatched events are recorded to, or null when not recording
+    private volatile EventRecorder recorder;
+    
+    /**
+     * An event handler statement of a script with the guards hoisted out of it
+     */
+    public static final class Handler {
+        private final Script script;
+        private final ScriptStatement statement;
+        private final HandlerFilter[] filters;
+        
+        // The equality filter this handler is indexed by, or null; the rest are checked one by one
+        private final HandlerFilter indexedBy;
+        private final HandlerFilter[] checks;
+        
+        // Debounce window in ticks, or 0 to run on every event; open windows by player or shared key
+        private final long debounceTicks;
+        private final boolean perPlayer;
+        private final Map<Object, Pending> windows;
+        
+        // Events buffered for the next run of a batched handler, or null if it runs per event
+        private final Batch batch;
+        
+        // Set once a newer version of the script replaced this handler, so open windows are dropped
+        private volatile boolean removed;
+        
+        private Handler(Script script, ScriptStatement statement, List<HandlerFilter> filters, EventBinding binding) {
+            this.script = script;
+            this.statement = statement;
+            this.filters = filters.toArray(NO_FILTERS);
+            
+            Object debounce = statement.getProperty("debounce_ticks");
+            this.debounceTicks = debounce instanceof Number ? ((Number) debounce).longValue() : 0;
+            this.perPlayer = Boolean.TRUE.equals(statement.getProperty("per_player"));
+            this.windows = debounceTicks > 0 ? new HashMap<>() : null;
+            
+            Object batchSize = statement.getProperty("batch_size");
+            this.batch = batchSize instanceof Number && binding != null
+                ? new Batch(binding.getVariableNames(), ((Number) batchSize).intValue()) : null;
+            
+            HandlerFilter index = null;
+            List<HandlerFilter> remaining = new ArrayList<>();
+            for (HandlerFilter filter : filters) {
+                if (index == null && filter.getKind() == HandlerFilter.Kind.EQUALS) {
+                    index = filter;
+                } else {
+                    remaining.add(filter);
+                }
+            }
+            this.indexedBy = index;
+            this.checks = remaining.toArray(NO_FILTERS);
+        }
+        
+        private boolean accepts(EventBinding binding, Event event, Player player) {
+            if (!script.isEnabled()) {
+                return false;
+            }
+            for (HandlerFilter check : checks) {
+                if (!check.test(binding, event, player)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        // Getters
+        public Script getScript() { return script; }
+        public ScriptStatement getStatement() { return statement; }
+        public int getFilterCount() { return filters.length; }
+        public long getDebounceTicks() { return debounceTicks; }
+        public boolean isBatched() { return batch != null; }
+    }
+    
+    /**
+     * An open debounce window: the latest event it has seen
+     */
+    private static final class Pending {
+        private Event event;
+        private Player player;
+    }
+    
+    /**
+     * Buffered events of a batched handler: one player per event, and its event-* values in a flat list
+     */
+    private static final class Batch {
+        private final String[] names;
+        private final int size;
+        private final List<Player> players = new ArrayList<>();
+        private final List<Object> values = new ArrayList<>();
+        private boolean flushScheduled;
+        
+        private Batch(String[] names, int size) {
+            this.names = names;
+            this.size = size;
+        }
+    }
+    
+    /**
+     * Handlers sharing an equality guard on one event key, by guarded value
+     */
+    private static final class Index {
+        private final String variable;
+        private final Map<String, Handler[]> byValue;
+        
+        private Index(String variable, Map<String, Handler[]> byValue) {
+            this.variable = variable;
+            this.byValue = byValue;
+        }
+    }
+    
+    /**
+     * Every handler of one event type, split into the ones checked on each event and the indexed ones
+     */
+    private static final class Route {
+        private final Handler[] all;
+        private final Handler[] unindexed;
+        private final Index[] indexes;
+        
+        private Route(Handler[] all) {
+            this.all = all;
+            
+            List<Handler> plain = new ArrayList<>();
+            Map<String, Map<String, List<Handler>>> grouped = new LinkedHashMap<>();
+            for (Handler handler : all) {
+                if (handler.indexedBy == null) {
+                    plain.add(handler);
+                } else {
+                    grouped.computeIfAbsent(handler.indexedBy.getVariable(), k -> new HashMap<>())
+                           .computeIfAbsent(handler.indexedBy.getValue(), k -> new ArrayList<>())
+                           .add(handler);
+                }
+            }
+            
+            List<Index> built = new ArrayList<>();
+            for (Map.Entry<String, Map<String, List<Handler>>> entry : grouped.entrySet()) {
+                Map<String, Handler[]> byValue = new HashMap<>();
+                entry.getValue().forEach((value, handlers) -> byValue.put(value, handlers.toArray(NO_HANDLERS)));
+                built.add(new Index(entry.getKey(), byValue));
+            }
+            
+            this.unindexed = plain.toArray(NO_HANDLERS);
+            this.indexes = built.toArray(NO_INDEXES);
+        }
+    }
+    
+    public EventRouter(ScriptEngine engine) {
+        this.engine = engine;
+        this.routes = Collections.emptyMap();
+        this.listeners = new HashMap<>();
+    }
+    
+    /**
+     * Add the event handlers of a script, replacing those of an earlier version
+     */
+    public void register(Script script) {
+        Map<String, List<Handler>> added = new HashMap<>();
+        for (ScriptStatement statement : script.getStatements()) {
+            String eventType = statement.getEventType();
+            if (statement.getType() == ScriptStatement.Type.EVENT && eventType != null
+                && !eventType.startsWith(ScriptEngine.VARIABLE_CHANGE_EVENT)) {
+                EventBinding binding = EventBinding.forType(eventType);
+                List<HandlerFilter> filters = binding != null
+                    ? HandlerFilter.compile(statement, binding) : Collections.emptyList();
+                added.computeIfAbsent(eventType, k -> new ArrayList<>()).add(new Handler(script, statement, filters, binding));
+            }
+        }
+        
+        rebuild(script.getName(), added);
+    }
+    
+    /**
+     * Remove the event handlers of a script
+     */
+    public void unregister(String scriptName) {
+        rebuild(scriptName, Collections.emptyMap());
+    }
+    
+    /**
+     * Swap in a table with the handlers of one script replaced
+     */
+    private synchronized void rebuild(String scriptName, Map<String, List<Handler>> added) {
+        Map<String, Route> current = routes;
+        Map<String, Route> next = new HashMap<>();
+        
+        for (Map.Entry<String, Route> entry : current.entrySet()) {
+            Handler[] existing = entry.getValue().all;
+            List<Handler> kept = new ArrayList<>(existing.length);
+            for (Handler handler : existing) {
+                if (!handler.script.getName().equals(scriptName)) {
+                    kept.add(handler);
+                } else {
+                    handler.removed = true;
+                }
+            }
+            kept.addAll(added.getOrDefault(entry.getKey(), Collections.emptyList()));
+            if (!kept.isEmpty()) {
+                next.put(entry.getKey(), new Route(kept.toArray(NO_HANDLERS)));
+            }
+        }
+        for (Map.Entry<String, List<Handler>> entry : added.entrySet()) {
+            if (!next.containsKey(entry.getKey())) {
+                next.put(entry.getKey(), new Route(entry.getValue().toArray(NO_HANDLERS)));
+            }
+        }
+        
+        routes = Collections.unmodifiableMap(next);
+        updateListeners();
+    }
+    
+    /**
+     * Register Bukkit listeners for newly handled event types and drop unused ones
+     */
+    private void updateListeners() {
+        if (!Bukkit.isPrimaryThread()) {
+            // Bukkit only accepts listener changes on the main thread
+            engine.getPlugin().getScheduler().getMainThreadQueue().execute(this::updateListeners);
+            return;
+        }
+        
+        Map<String, Route> current = routes;
+        listeners.entrySet().removeIf(entry -> {
+            if (current.containsKey(entry.getKey())) {
+                return false;
+            }
+            HandlerList.unregisterAll(entry.getValue());
+            return true;
+        });
+        
+        for (String eventType : current.keySet()) {
+            if (listeners.containsKey(eventType)) {
+                continue;
+            }
+            
+            EventBinding binding = EventBinding.forType(eventType);
+            if (binding == null) {
+                Logger.debug("No Bukkit event for script event type '" + eventType + "'");
+                continue;
+            }
+            
+            Listener listener = new Listener() { };
+            Class<? extends Event> eventClass = binding.getEventClass();
+            Bukkit.getPluginManager().registerEvent(eventClass, listener, EventPriority.NORMAL, (l, event) -> {
+                // Bukkit also hands over subclasses of other events sharing the handler list
+                if (eventClass.isInstance(event)) {
+                    dispatch(binding, event);
+                }
+            }, engine.getPlugin(), false);
+            listeners.put(eventType, listener);
+        }
+    }
+    
+    /**
+     * Run every handler of an event whose guards accept it
+     */
+    public void dispatch(EventBinding binding, Event event) {
+        Route route = routes.get(binding.getEventType());
+        if (route == null) {
+            return;
+        }
+        
+        Player player = binding.getPlayer(event);
+        EventRecorder activeRecorder = recorder;
+        if (activeRecorder != null) {
+            activeRecorder.record(binding, event, player);
+        }
+        
+        List<Handler> matched = match(route, binding, event, player);
+        if (matched.isEmpty()) {
+            return;
+        }
+        
+        if (binding.isAsync()) {
+            runOffMainThread(matched, binding, event, player);
+        } else {
+            run(matched, binding, event, player);
+        }
+    }
+    
+    /**
+     * Run handlers on the thread of an event fired off the main thread
+     * Each runs until it needs the main thread; the remainders and any debounced
+     * or batched handlers are then handed over together
+     */
+    private void runOffMainThread(List<Handler> targets, EventBinding binding, Event event, Player player) {
+        List<Runnable> tails = new ArrayList<>(targets.size());
+        
+        for (Handler handler : targets) {
+            if (handler.batch != null) {
+                tails.add(() -> append(handler, binding, event, player));
+            } else if (handler.debounceTicks > 0) {
+                tails.add(() -> coalesce(handler, binding, event, player));
+            } else {
+                start(handler, binding, event, player, tails::add);
+            }
+        }
+        
+        if (!tails.isEmpty()) {
+            engine.getPlugin().getScheduler().getMainThreadQueue().execute(() -> tails.forEach(Runnable::run));
+        }
+    }
+    
+    /**
+     * Find the handlers of a route that accept an event
+     * Allocates nothing when none do
+     */
+    private List<Handler> match(Route route, EventBinding binding, Event event, Player player) {
+        List<Handler> matched = Collections.emptyList();
+        
+        for (Handler handler : route.unindexed) {
+            if (handler.accepts(binding, event, player)) {
+                matched = add(matched, handler, route);
+            }
+        }
+        
+        for (Index index : route.indexes) {
+            Handler[] candidates = index.byValue.get(HandlerFilter.keyText(binding, event, index.variable));
+            if (candidates == null) {
+                continue;
+            }
+            for (Handler handler : candidates) {
+                if (handler.accepts(binding, event, player)) {
+                    matched = add(matched, handler, route);
+                }
+            }
+        }
+        return matched;
+    }
+    
+    private static List<Handler> add(List<Handler> matched, Handler handler, Route route) {
+        if (matched.isEmpty()) {
+            matched = new ArrayList<>(Math.min(route.all.length, 8));
+        }
+        matched.add(handler);
+        return matched;
+    }
+    
+    private void run(List<Handler> targets, EventBinding binding, Event event, Player player) {
+        for (Handler handler : targets) {
+            if (handler.batch != null) {
+                append(handler, binding, event, player);
+            } else if (handler.debounceTicks > 0) {
+                coalesce(handler, binding, event, player);
+            } else {
+                start(handler, binding, event, player, null);
+            }
+        }
+    }
+    
+    /**
+     * Fold an event into the handler's debounce window, opening one if needed
+     * Called on the main thread
+     */
+    private void coalesce(Handler handler, EventBinding binding, Event event, Player player) {
+        Object key = handler.perPlayer && player != null ? player.getUniqueId() : handler;
+        Pending pending = handler.windows.get(key);
+        
+        if (pending == null) {
+            Pending window = new Pending();
+            handler.windows.put(key, window);
+            engine.getPlugin().getScheduler().resume(() -> {
+                handler.windows.remove(key);
+                // A player who left in the meantime has nothing left to react to
+                if (!handler.removed && (window.player == null || window.player.isOnline())) {
+                    start(handler, binding, window.event, window.player, null);
+                }
+            }, handler.debounceTicks);
+            pending = window;
+        } else {
+            coalescedCount++;
+        }
+        
+        pending.event = event;
+        pending.player = player;
+    }
+    
+    /**
+     * Add an event to the buffer of a batched handler, running it if the buffer is full
+     * The first event after a run schedules the next one for the following tick
+     * Called on the main thread
+     */
+    private void append(Handler handler, EventBinding binding, Event event, Player player) {
+        Batch batch = handler.batch;
+        if (!batch.flushScheduled) {
+            batch.flushScheduled = true;
+            engine.getPlugin().getScheduler().resume(() -> {
+                batch.flushScheduled = false;
+                flush(handler, binding);
+            }, 1);
+        }
+        
+        batch.players.add(player);
+        binding.addVariables(event, batch.values);
+        batchedCount++;
+        
+        if (batch.size > 0 && batch.players.size() >= batch.size) {
+            flush(handler, binding);
+        }
+    }
+    
+    /**
+     * Run a batched handler once for every event in its buffer
+     */
+    private void flush(Handler handler, EventBinding binding) {
+        Batch batch = handler.batch;
+        if (batch.players.isEmpty()) {
+            return;
+        }
+        
+        EventBatch events = new EventBatch(batch.names, batch.players.toArray(new Player[0]), batch.values.toArray());
+        batch.players.clear();
+        batch.values.clear();
+        // A replaced handler drops what it buffered, as debounce windows do
+        if (handler.removed) {
+            return;
+        }
+        
+        ExecutionContext context = new ExecutionContext(null, engine.getVariableManager());
+        context.setEventType(binding.getEventType());
+        context.setEventBatch(events);
+        context.setVariable("batch-size", events.size());
+        
+        Script script = handler.script;
+        engine.executeHandler(script, handler.statement, context).thenAccept(result -> {
+            if (result.isError()) {
+                Logger.error("Error in batched " + binding.getEventType() + " handler of script '" + script.getName() + "': " + result.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Run one handler for an event
+     * @param handoff Where the handler continues once it needs the main thread, or null if already on it
+     */
+    private void start(Handler handler, EventBinding binding, Event event, Player player, Executor handoff) {
+        Script script = handler.script;
+        
+        ExecutionContext context = new ExecutionContext(player, engine.getVariableManager());
+        context.setTriggerEvent(event);
+        context.setEventType(binding.getEventType());
+        context.setMainThreadHandoff(handoff);
+        binding.setVariables(event, context);
+        
+        engine.executeHandler(script, handler.statement, context).thenAccept(result -> {
+            if (result.isError()) {
+                Logger.error("Error in " + binding.getEventType() + " handler of script '" + script.getName() + "': " + result.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Get the handlers of an event type
+     */
+    public List<Handler> getHandlers(String eventType) {
+        Route route = routes.get(eventType);
+        return route != null ? Arrays.asList(route.all.clone()) : Collections.emptyList();
+    }
+    
+    /**
+     * Start recording dispatched events to a trace file, ending any recording already running
+     */
+    public synchronized void startRecording(File file) throws IOException {
+        stopRecording();
+        recorder = new EventRecorder(file);
+        Logger.info("Recording events to " + file.getName());
+    }
+    
+    /**
+     * Stop the running recording
+     * @return The finished recording, or null if none was running
+     */
+    public synchronized EventRecorder stopRecording() {
+        EventRecorder finished = recorder;
+        if (finished != null) {
+            recorder = null;
+            finished.close();
+            Logger.info("Recorded " + finished.getEventCount() + " events to " + finished.getFile().getName());
+        }
+        return finished;
+    }
+    
+    /**
+     * Unregister every Bukkit listener and drop all handlers
+     * Must be called from the main thread
+     */
+    public synchronized void shutdown() {
+        stopRecording();
+        // Open debounce windows and batches close without running
+        routes.values().forEach(route -> Arrays.stream(route.all).forEach(handler -> handler.removed = true));
+        routes = Collections.emptyMap();
+        listeners.values().forEach(HandlerList::unregisterAll);
+        listeners.clear();
+    }
+    
+    // Getters
+    public int getEventTypeCount() { return routes.size(); }
+    public int getListenerCount() { return listeners.size(); }
+    public long getCoalescedCount() { return coalescedCount; }
+    public long getBatchedCount() { return batchedCount; }
+    public EventRecorder getRecorder() { return recorder; }
+}
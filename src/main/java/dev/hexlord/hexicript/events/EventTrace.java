@@ -0,0 +1,294 @@
+package dev.hexlord.hexicript.events;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary format of recorded event traces
+ *
+ * A trace is a header followed by one record per event: the event type, the
+ * time since the previous event in microseconds, the player name and the
+ * attributes handlers can see, such as the block type or chat message.
+ * Numbers are variable-length. Names that repeat, such as event types,
+ * players, worlds and materials, are written once and referred to by index
+ * afterwards, so a busy server's player move stream takes a few bytes per
+ * event. Free text such as chat and death messages is written inline, so the
+ * string table stays as small as the set of names. Each event type has a codec that writes its attributes and
+ * rebuilds an equivalent Bukkit event from them against stub objects.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+final class EventTrace {
+    
+    static final int MAGIC = 0x48585452;  // "HXTR"
+    static final byte VERSION = 2;
+    
+    // Longest free text a reader accepts, well above any chat or death message
+    private static final int MAX_TEXT_BYTES = 1 << 20;
+    
+    private static final Map<String, Codec> CODECS = new HashMap<>();
+    
+    static {
+        codec("player_join", (event, out) -> {}, (in, player, stubs) -> new PlayerJoinEvent(player, ""));
+        codec("player_leave", (event, out) -> {}, (in, player, stubs) -> new PlayerQuitEvent(player, ""));
+        codec("player_move", (event, out) -> {
+            Location from = ((PlayerMoveEvent) event).getFrom();
+            Location to = ((PlayerMoveEvent) event).getTo();
+            out.writeString(to.getWorld().getName());
+            out.writeBlock(from.getBlockX(), from.getBlockY(), from.getBlockZ());
+            // Most moves stay within a block or two, so the destination is written relative to the start
+            out.writeBlock(to.getBlockX() - from.getBlockX(), to.getBlockY() - from.getBlockY(), to.getBlockZ() - from.getBlockZ());
+        }, (in, player, stubs) -> {
+            World world = stubs.world(in.readString());
+            int x = in.readSigned();
+            int y = in.readSigned();
+            int z = in.readSigned();
+            Location from = new Location(world, x + 0.5, y, z + 0.5);
+            Location to = new Location(world, x + in.readSigned() + 0.5, y + in.readSigned(), z + in.readSigned() + 0.5);
+            return new PlayerMoveEvent(player, from, to);
+        });
+        codec("player_death", (event, out) -> out.writeText(((PlayerDeathEvent) event).getDeathMessage()),
+            (in, player, stubs) -> deathEvent(player, in.readText()));
+        codec("block_break", (event, out) -> out.writeBlock(((BlockBreakEvent) event).getBlock()),
+            (in, player, stubs) -> new BlockBreakEvent(in.readBlock(stubs), player));
+        codec("block_place", (event, out) -> out.writeBlock(((BlockPlaceEvent) event).getBlock()), (in, player, stubs) -> {
+            Block block = in.readBlock(stubs);
+            return new BlockPlaceEvent(block, null, block, null, player, true, null);
+        });
+        codec("entity_damage", (event, out) -> {
+            out.writeString(((EntityDamageEvent) event).getCause().name());
+            out.stream.writeDouble(((EntityDamageEvent) event).getDamage());
+        }, (in, player, stubs) -> damageEvent(player != null ? player : stubs.entity(),
+            EntityDamageEvent.DamageCause.valueOf(in.readString()), in.stream.readDouble()));
+        codec("player_chat", (event, out) -> out.writeText(((AsyncPlayerChatEvent) event).getMessage()),
+            (in, player, stubs) -> new AsyncPlayerChatEvent(true, player, in.readText(), new HashSet<>(Collections.singleton(player))));
+    }
+    
+    private EventTrace() {
+    }
+    
+    private static void codec(String eventType, Writer writer, Reader reader) {
+        CODECS.put(eventType, new Codec(writer, reader));
+    }
+    
+    @SuppressWarnings("deprecation")
+    private static Event deathEvent(Player player, String message) {
+        return new PlayerDeathEvent(player, new ArrayList<>(), 0, message);
+    }
+    
+    @SuppressWarnings("deprecation")
+    private static Event damageEvent(Entity entity, EntityDamageEvent.DamageCause cause, double damage) {
+        return new EntityDamageEvent(entity, cause, damage);
+    }
+    
+    /**
+     * Writes the attributes handlers can see of one event
+     */
+    interface Writer {
+        void write(Event event, Output out) throws IOException;
+    }
+    
+    /**
+     * Rebuilds an event from its recorded attributes
+     */
+    interface Reader {
+        Event read(Input in, Player player, Stubs stubs) throws IOException;
+    }
+    
+    /**
+     * Supplies the players, worlds and blocks that events read from a trace are rebuilt on
+     * The replay harness provides stand-ins, since a trace is read without a server
+     */
+    interface Stubs {
+        Player player(String name);
+        
+        /**
+         * Get the world of a name, or the default world for null
+         */
+        World world(String name);
+        
+        Block block(Material type, World world, int x, int y, int z);
+        
+        /**
+         * Get the entity that stands in for entities that are not players
+         */
+        Entity entity();
+    }
+    
+    /**
+     * How one event type is written to and read from a trace
+     */
+    static final class Codec {
+        final Writer writer;
+        final Reader reader;
+        
+        private Codec(Writer writer, Reader reader) {
+            this.writer = writer;
+            this.reader = reader;
+        }
+    }
+    
+    /**
+     * Get the codec of an event type, or null if it cannot be recorded
+     */
+    static Codec forType(String eventType) {
+        return CODECS.get(eventType);
+    }
+    
+    /**
+     * Writing side of a trace: variable-length numbers and a table of strings already written
+     */
+    static final class Output {
+        final DataOutputStream stream;
+        private final Map<String, Integer> strings = new HashMap<>();
+        
+        Output(DataOutputStream stream) {
+            this.stream = stream;
+        }
+        
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                stream.writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            stream.writeByte((int) value);
+        }
+        
+        void writeSigned(int value) throws IOException {
+            writeVarLong(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+        }
+        
+        /**
+         * Write a string as 0 for null, a table index plus 2, or 1 and the string the first time
+         */
+        void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeVarLong(index + 2L);
+                return;
+            }
+            strings.put(value, strings.size());
+            writeVarLong(1);
+            stream.writeUTF(value);
+        }
+        
+        /**
+         * Write free text inline as 0 for null, or its UTF-8 length plus 1 and its bytes
+         */
+        void writeText(String value) throws IOException {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            stream.write(bytes);
+        }
+        
+        void writeBlock(int x, int y, int z) throws IOException {
+            writeSigned(x);
+            writeSigned(y);
+            writeSigned(z);
+        }
+        
+        void writeBlock(Block block) throws IOException {
+            writeString(block.getType().name());
+            writeString(block.getWorld().getName());
+            writeBlock(block.getX(), block.getY(), block.getZ());
+        }
+    }
+    
+    /**
+     * Reading side of a trace
+     */
+    static final class Input {
+        final DataInputStream stream;
+        private final List<String> strings = new ArrayList<>();
+        
+        Input(DataInputStream stream) {
+            this.stream = stream;
+        }
+        
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = stream.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupt event trace, number too long");
+        }
+        
+        int readSigned() throws IOException {
+            int value = (int) readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+        
+        String readString() throws IOException {
+            long reference = readVarLong();
+            if (reference == 0) {
+                return null;
+            }
+            if (reference == 1) {
+                String value = stream.readUTF();
+                strings.add(value);
+                return value;
+            }
+            if (reference - 2 >= strings.size()) {
+                throw new IOException("Corrupt event trace, unknown string " + (reference - 2));
+            }
+            return strings.get((int) (reference - 2));
+        }
+        
+        String readText() throws IOException {
+            long length = readVarLong();
+            if (length == 0) {
+                return null;
+            }
+            if (length - 1 > MAX_TEXT_BYTES) {
+                throw new IOException("Corrupt event trace, text of " + (length - 1) + " bytes");
+            }
+            byte[] bytes = new byte[(int) (length - 1)];
+            stream.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        
+        Block readBlock(Stubs stubs) throws IOException {
+            String name = readString();
+            Material type = name != null ? Material.matchMaterial(name) : null;
+            World world = stubs.world(readString());
+            return stubs.block(type != null ? type : Material.AIR, world, readSigned(), readSigned(), readSigned());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package dev.hexlord.hexicript.events;
+
+import dev.hexlord.hexicript.core.script.ScriptStatement;
+import dev.hexlord.hexicript.utils.Logger;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A guard hoisted out of an event handler and checked before the handler runs
+ *
+ * A handler whose whole body is a single "if" cannot do anything when the
+ * condition is false, so the condition can be tested against the event before
+ * an execution context is created. Only conditions whose outcome is known from
+ * the event alone are hoisted: a comparison of an event key such as
+ * {event-block} with a literal, or a hasPermission(...) check. They are
+ * evaluated exactly as the executor would, and the handler still runs its own
+ * "if" afterwards, so hoisting never changes what a script does.
+ *
+ * Handler options that restrict which events reach a handler, such as
+ * "block change", are compiled into filters the same way.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+final class HandlerFilter {
+    
+    /**
+     * Kinds of hoisted guards
+     */
+    enum Kind {
+        EQUALS,
+        NOT_EQUALS,
+        PERMISSION,
+        PREDICATE
+    }
+    
+    private final Kind kind;
+    private final String variable;
+    private final String value;
+    
+    private HandlerFilter(Kind kind, String variable, String value) {
+        this.kind = kind;
+        this.variable = variable;
+        this.value = value;
+    }
+    
+    /**
+     * Compile the options of a handler and hoist its leading guards, outermost first
+     */
+    static List<HandlerFilter> compile(ScriptStatement handler, EventBinding binding) {
+        List<HandlerFilter> filters = new ArrayList<>();
+        
+        if (Boolean.TRUE.equals(handler.getProperty("block_change"))) {
+            if (binding.hasPredicate("block change")) {
+                filters.add(new HandlerFilter(Kind.PREDICATE, null, "block change"));
+            } else {
+                Logger.warning("Option 'block change' does not apply to " + binding.getEventType() +
+                               " (line " + handler.getLineNumber() + ")");
+            }
+        }
+        
+        List<ScriptStatement> body = handler.getChildren();
+        
+        // Nested single "if" bodies all guard the handler
+        while (body.size() == 1 && body.get(0).getType() == ScriptStatement.Type.CONDITION) {
+            HandlerFilter filter = compileCondition(body.get(0).getCondition(), binding);
+            if (filter == null) {
+                break;
+            }
+            filters.add(filter);
+            body = body.get(0).getChildren();
+        }
+        return filters;
+    }
+    
+    /**
+     * Compile a parsed condition, or return null if it needs a running execution
+     * Mirrors ScriptExecutor.evaluateCondition: "==" is checked first, then "!=", then hasPermission
+     */
+    private static HandlerFilter compileCondition(String condition, EventBinding binding) {
+        if (condition == null) {
+            return null;
+        }
+        
+        if (condition.contains("==") || condition.contains("!=")) {
+            boolean equals = condition.contains("==");
+            String[] parts = condition.split(equals ? "==" : "!=", 2);
+            String left = parts[0].trim();
+            String right = parts[1].trim();
+            
+            // Only event keys are known up front, and only a literal right side reads the same after substitution
+            if (!left.startsWith("{") || !left.endsWith("}") || right.contains("{")) {
+                return null;
+            }
+            String name = left.substring(1, left.length() - 1);
+            if (!binding.isKey(name)) {
+                return null;
+            }
+            return new HandlerFilter(equals ? Kind.EQUALS : Kind.NOT_EQUALS, name, right);
+        }
+        
+        if (condition.contains("hasPermission(") && !condition.contains("{")) {
+            int start = condition.indexOf("hasPermission(") + 14;
+            int end = condition.indexOf(")", start);
+            if (end < 0) {
+                return null;
+            }
+            return new HandlerFilter(Kind.PERMISSION, null, condition.substring(start, end).replace("\"", ""));
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Get the text an event key stands for in a condition
+     * A missing value leaves the reference unreplaced, as the executor does
+     */
+    static String keyText(EventBinding binding, Event event, String name) {
+        Object actual = binding.getVariable(event, name);
+        return actual != null ? actual.toString() : "{" + name + "}";
+    }
+    
+    /**
+     * Check this guard against an event
+     */
+    boolean test(EventBinding binding, Event event, Player player) {
+        switch (kind) {
+            case EQUALS:
+                return keyText(binding, event, variable).equals(value);
+            case NOT_EQUALS:
+                return !keyText(binding, event, variable).equals(value);
+            case PREDICATE:
+                return binding.test(value, event);
+            case PERMISSION:
+            default:
+                return player != null && player.hasPermission(value);
+        }
+    }
+    
+    // Getters
+    Kind getKind() { return kind; }
+    String getVariable() { return variable; }
+    String getValue() { return value; }
+}
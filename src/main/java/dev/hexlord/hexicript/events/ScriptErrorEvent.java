@@ -0,0 +1,42 @@
+package dev.hexlord.hexicript.events;
+
+import dev.hexlord.hexicript.core.script.Script;
+import org.bukkit.event.HandlerList;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Called when a script throws an error
+ */
+public class ScriptErrorEvent extends ScriptEvent {
+    
+    private static final HandlerList handlers = new HandlerList();
+    private final Throwable error;
+    
+    public ScriptErrorEvent(Script script, Throwable error) {
+        super(script);
+        this.error = error;
+    }
+    
+    /**
+     * Get the error that was thrown
+     */
+    public Throwable getError() {
+        return error;
+    }
+    
+    @Override
+    public @NotNull HandlerList getHandlers() {
+        return handlers;
+    }
+    
+    public static HandlerList getHandlerList() {
+        return handlers;
+    }
+    
+    /**
+     * Check if any plugin listens for this event
+     */
+    public static boolean hasListeners() {
+        return handlers.getRegisteredListeners().length > 0;
+    }
+}
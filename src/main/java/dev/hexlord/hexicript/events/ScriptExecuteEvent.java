@@ -0,0 +1,43 @@
+package dev.hexlord.hexicript.events;
+
+import dev.hexlord.hexicript.core.script.Script;
+import org.bukkit.event.HandlerList;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Called when a script is executed
+ * Fired for every execution, so callers check hasListeners before creating one
+ */
+public class ScriptExecuteEvent extends ScriptEvent {
+    
+    private static final HandlerList handlers = new HandlerList();
+    private final String[] args;
+    
+    public ScriptExecuteEvent(Script script, String[] args) {
+        super(script);
+        this.args = args;
+    }
+    
+    /**
+     * Get the arguments passed to the script
+     */
+    public String[] getArgs() {
+        return args;
+    }
+    
+    @Override
+    public @NotNull HandlerList getHandlers() {
+        return handlers;
+    }
+    
+    public static HandlerList getHandlerList() {
+        return handlers;
+    }
+    
+    /**
+     * Check if any plugin listens for this event
+     */
+    public static boolean hasListeners() {
+        return handlers.getRegisteredListeners().length > 0;
+    }
+}
@@ -0,0 +1,26 @@
+package dev.hexlord.hexicript.events;
+
+import dev.hexlord.hexicript.core.script.Script;
+import org.bukkit.event.HandlerList;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Called when a script is unloaded
+ */
+public class ScriptUnloadEvent extends ScriptEvent {
+    
+    private static final HandlerList handlers = new HandlerList();
+    
+    public ScriptUnloadEvent(Script script) {
+        super(script);
+    }
+    
+    @Override
+    public @NotNull HandlerList getHandlers() {
+        return handlers;
+    }
+    
+    public static HandlerList getHandlerList() {
+        return handlers;
+    }
+}
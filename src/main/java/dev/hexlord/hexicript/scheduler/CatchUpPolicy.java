@@ -0,0 +1,10 @@
+package dev.hexlord.hexicript.scheduler;
+
+/**
+ * What a persistent task does with runs it missed while the server was offline
+ */
+public enum CatchUpPolicy {
+    FIRE_ONCE,     // Run once on startup however many runs were missed
+    FIRE_ALL,      // Run every missed occurrence on startup, up to a configured cap
+    SKIP           // Drop missed runs; repeating tasks carry on from their next occurrence
+}
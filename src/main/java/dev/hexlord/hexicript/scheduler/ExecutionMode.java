@@ -0,0 +1,9 @@
+package dev.hexlord.hexicript.scheduler;
+
+/**
+ * Kind of thread async script executions run on
+ */
+public enum ExecutionMode {
+    PLATFORM,   // Fixed pool of performance.thread_pool_size OS threads
+    VIRTUAL     // One virtual thread per execution (Java 21+), blocking waits park without holding an OS thread
+}
@@ -0,0 +1,193 @@
+package dev.hexlord.hexicript.scheduler;
+
+import dev.hexlord.hexicript.core.script.Script;
+import dev.hexlord.hexicript.utils.Logger;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throttles script work while the server is falling behind
+ *
+ * The scheduler reports the start of every tick; the gap between two ticks
+ * is the tick time, which exceeds 50ms only when the server is behind. A
+ * smoothed average of it selects a load level. Under load, repeating tasks of
+ * lower-priority scripts skip runs, their async work is held back until the
+ * server recovers, and per-tick budgets shrink. Everything is restored once
+ * the average drops back below the recovery threshold.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public class LoadGovernor {
+    
+    /**
+     * Load levels, from no throttling to the heaviest
+     */
+    public enum Level {
+        NORMAL,
+        PRESSURE,
+        CRITICAL
+    }
+    
+    private static final double SMOOTHING = 0.05;
+    private static final double TICK_MILLIS = 50.0;
+    // Single stalls such as a GC pause count as this much at most
+    private static final double MAX_SAMPLE_MILLIS = 200.0;
+    
+    private final boolean enabled;
+    private final double pressureMspt;
+    private final double criticalMspt;
+    private final double recoverMspt;
+    private final int releasePerTick;
+    
+    // Async work held back under load, released on the main thread after recovery
+    private final ConcurrentLinkedQueue<Runnable> deferred;
+    private final AtomicInteger deferredCount;
+    
+    // Tick measurements, only touched by the main thread
+    private long lastTick;
+    private double averageMspt = TICK_MILLIS;
+    
+    private volatile Level level = Level.NORMAL;
+    
+    public LoadGovernor(FileConfiguration config) {
+        this.enabled = config.getBoolean("performance.load_governor.enabled", true);
+        this.pressureMspt = config.getDouble("performance.load_governor.pressure_mspt", 55);
+        this.criticalMspt = config.getDouble("performance.load_governor.critical_mspt", 70);
+        this.recoverMspt = config.getDouble("performance.load_governor.recover_mspt", 51);
+        this.releasePerTick = config.getInt("performance.load_governor.release_per_tick", 10);
+        this.deferred = new ConcurrentLinkedQueue<>();
+        this.deferredCount = new AtomicInteger();
+    }
+    
+    /**
+     * Record the start of a tick and update the load level
+     * Must be called once per tick from the main thread
+     */
+    public void recordTick(long now) {
+        if (lastTick != 0) {
+            double sample = Math.min(MAX_SAMPLE_MILLIS, (now - lastTick) / 1_000_000.0);
+            averageMspt += (sample - averageMspt) * SMOOTHING;
+        }
+        lastTick = now;
+        
+        if (!enabled) {
+            return;
+        }
+        
+        Level next = evaluate();
+        if (next != level) {
+            if (next.ordinal() > level.ordinal()) {
+                Logger.warning("Server is behind (" + String.format("%.1f", averageMspt) + "ms per tick), throttling " +
+                               (next == Level.CRITICAL ? "normal and low" : "low") + " priority scripts");
+            } else {
+                Logger.info("Tick time recovered to " + String.format("%.1f", averageMspt) + "ms, script throttling " +
+                            (next == Level.NORMAL ? "lifted" : "reduced"));
+            }
+            level = next;
+        }
+        
+        if (level == Level.NORMAL) {
+            releaseDeferred();
+        }
+    }
+    
+    private Level evaluate() {
+        if (averageMspt >= criticalMspt) {
+            return Level.CRITICAL;
+        } else if (averageMspt >= pressureMspt) {
+            return Level.PRESSURE;
+        } else if (averageMspt <= recoverMspt) {
+            return Level.NORMAL;
+        }
+        // Between the thresholds: ease off critical, otherwise hold the current level
+        return level == Level.CRITICAL ? Level.PRESSURE : level;
+    }
+    
+    /**
+     * Check if scripts of a priority are throttled at the current level
+     */
+    public boolean isThrottled(Script.Priority priority) {
+        switch (level) {
+            case CRITICAL:
+                return priority != Script.Priority.HIGH;
+            case PRESSURE:
+                return priority == Script.Priority.LOW;
+            case NORMAL:
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Get how many periods a repeating task of a priority waits between runs
+     * 1 runs it at its normal rate
+     */
+    public int getPeriodStretch(Script.Priority priority) {
+        if (!isThrottled(priority)) {
+            return 1;
+        }
+        return level == Level.CRITICAL && priority == Script.Priority.LOW ? 4 : 2;
+    }
+    
+    /**
+     * Hold back async work of a throttled priority until the server recovers
+     * Returns false if the work is not throttled and should run now
+     */
+    public boolean defer(Script.Priority priority, Runnable work) {
+        if (!isThrottled(priority)) {
+            return false;
+        }
+        
+        deferred.offer(work);
+        deferredCount.incrementAndGet();
+        return true;
+    }
+    
+    private void releaseDeferred() {
+        for (int i = 0; i < releasePerTick; i++) {
+            Runnable work = deferred.poll();
+            if (work == null) {
+                return;
+            }
+            deferredCount.decrementAndGet();
+            
+            try {
+                work.run();
+            } catch (Exception e) {
+                Logger.error("Error releasing deferred script work: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Get the fraction of the configured per-tick budgets to use at the current level
+     */
+    public double getBudgetScale() {
+        switch (level) {
+            case CRITICAL:
+                return 0.25;
+            case PRESSURE:
+                return 0.5;
+            case NORMAL:
+            default:
+                return 1.0;
+        }
+    }
+    
+    /**
+     * Drop all deferred work
+     */
+    public void clear() {
+        deferred.clear();
+        deferredCount.set(0);
+    }
+    
+    // Getters
+    public boolean isEnabled() { return enabled; }
+    public Level getLevel() { return level; }
+    public double getAverageMspt() { return averageMspt; }
+    public int getDeferredCount() { return deferredCount.get(); }
+}
@@ -0,0 +1,74 @@
+package dev.hexlord.hexicript.scheduler;
+
+import dev.hexlord.hexicript.utils.Logger;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands work from any thread to the main thread
+ *
+ * Producers add to a lock-free queue; the scheduler's tick task drains it
+ * once per tick within a time budget. Whatever does not fit is carried over
+ * to the next tick in order, so a burst of async completions costs one
+ * scheduler entry per tick instead of one Bukkit task each.
+ */
+public class MainThreadQueue implements Executor {
+    
+    private final ConcurrentLinkedQueue<Runnable> queue;
+    private final AtomicInteger size;
+    
+    // Statistics, only written by the main thread
+    private long executed;
+    private long carriedOver;
+    
+    public MainThreadQueue() {
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.size = new AtomicInteger();
+    }
+    
+    /**
+     * Queue work for the main thread
+     */
+    @Override
+    public void execute(Runnable task) {
+        queue.offer(task);
+        size.incrementAndGet();
+    }
+    
+    /**
+     * Run queued work until the queue is empty or the budget is spent
+     * At least one task runs per call so the queue always makes progress
+     */
+    public void drain(long budgetNanos) {
+        long deadline = System.nanoTime() + budgetNanos;
+        Runnable task;
+        
+        while ((task = queue.poll()) != null) {
+            size.decrementAndGet();
+            executed++;
+            
+            try {
+                task.run();
+            } catch (Exception e) {
+                Logger.error("Error in main thread callback: " + e.getMessage());
+            }
+            
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+        
+        int remaining = size.get();
+        if (remaining > 0) {
+            carriedOver += remaining;
+            Logger.debug("Main thread budget spent, carrying " + remaining + " callbacks to the next tick");
+        }
+    }
+    
+    // Getters
+    public int getPendingCount() { return size.get(); }
+    public long getExecutedCount() { return executed; }
+    public long getCarriedOverCount() { return carriedOver; }
+}
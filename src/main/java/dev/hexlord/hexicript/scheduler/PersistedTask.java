@@ -0,0 +1,48 @@
+package dev.hexlord.hexicript.scheduler;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The stored form of a persistent scheduled task
+ * Times are wall-clock milliseconds so they stay meaningful across restarts;
+ * a repeating task is due at dueTime plus any whole number of periods
+ */
+public final class PersistedTask {
+    
+    private final UUID id;
+    private final String scriptName;
+    private final String[] args;
+    private final UUID playerId;
+    private final Map<String, Object> variables;
+    private final long dueTime;
+    private final long period;
+    
+    public PersistedTask(UUID id, String scriptName, String[] args, UUID playerId,
+                         Map<String, Object> variables, long dueTime, long period) {
+        this.id = id;
+        this.scriptName = scriptName;
+        this.args = args;
+        this.playerId = playerId;
+        this.variables = Collections.unmodifiableMap(variables);
+        this.dueTime = dueTime;
+        this.period = period;
+    }
+    
+    /**
+     * Check if this task repeats
+     */
+    public boolean isRepeating() {
+        return period > 0;
+    }
+    
+    // Getters
+    public UUID getId() { return id; }
+    public String getScriptName() { return scriptName; }
+    public String[] getArgs() { return args; }
+    public UUID getPlayerId() { return playerId; }
+    public Map<String, Object> getVariables() { return variables; }
+    public long getDueTime() { return dueTime; }
+    public long getPeriod() { return period; }
+}
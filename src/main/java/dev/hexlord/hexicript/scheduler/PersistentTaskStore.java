@@ -0,0 +1,422 @@
+package dev.hexlord.hexicript.scheduler;
+
+import dev.hexlord.hexicript.storage.VariableSerializer;
+import dev.hexlord.hexicript.utils.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only log of persistent scheduled tasks
+ *
+ * Scheduling appends an add record, cancelling or finishing a one-shot task
+ * appends a remove record, and a checkpoint record notes when the server was
+ * last known to be running so missed runs can be counted after a restart.
+ * Records are small fixed-layout binary entries, so a log of a hundred
+ * thousand tasks reads back in well under a second. The log is rewritten
+ * with only the live tasks once removed records outnumber live ones, both
+ * when it is loaded and at runtime; otherwise loading leaves it as it is and
+ * new records are appended. At runtime the rewrite happens on a background
+ * thread, and records appended meanwhile are carried over to the new log.
+ * A torn record at the end of the file, left by a crash mid-write, is ignored
+ * and compacted away on load.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public class PersistentTaskStore {
+    
+    private static final int MAGIC = 0x4858544C;  // "HXTL"
+    private static final byte VERSION = 1;
+    
+    private static final byte RECORD_ADD = 1;
+    private static final byte RECORD_REMOVE = 2;
+    private static final byte RECORD_CHECKPOINT = 3;
+    
+    // Removed records tolerated before a runtime compaction is considered
+    private static final int MIN_COMPACT_GARBAGE = 1024;
+    
+    private final File file;
+    private final Map<UUID, PersistedTask> live;
+    private final ExecutorService compactor;
+    private DataOutputStream out;
+    private int garbage;
+    private boolean dirty;
+    private long lastCheckpoint;
+    // Latest checkpoint recorded, carried over when the log is rewritten
+    private long checkpointTime;
+    // Records appended while a runtime compaction writes the new log, or null when none runs
+    private List<Object> pendingRecords;
+    
+    public PersistentTaskStore(File file) {
+        this.file = file;
+        this.live = new LinkedHashMap<>();
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "hexicript-task-log-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Read the log, compacting it if it holds mostly removed tasks or ends in a torn record
+     * @return The live tasks
+     */
+    public synchronized Collection<PersistedTask> load() throws IOException {
+        live.clear();
+        garbage = 0;
+        lastCheckpoint = file.exists() ? file.lastModified() : 0;
+        
+        boolean torn = false;
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+                if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                    throw new IOException("Unrecognized scheduled task log: " + file.getName());
+                }
+                readRecords(in);
+            } catch (EOFException e) {
+                // Empty file or a record torn by a crash; keep what was read
+                torn = true;
+            }
+        }
+        checkpointTime = lastCheckpoint;
+        
+        // Appending after a torn record would make everything after it unreadable
+        if (!file.exists() || torn || needsCompaction()) {
+            rewrite();
+        }
+        return new ArrayList<>(live.values());
+    }
+    
+    private void readRecords(DataInputStream in) throws IOException {
+        int type;
+        while ((type = in.read()) != -1) {
+            switch (type) {
+                case RECORD_ADD:
+                    PersistedTask task = readTask(in);
+                    if (live.put(task.getId(), task) != null) {
+                        garbage++;
+                    }
+                    break;
+                case RECORD_REMOVE:
+                    // The remove record and the add record it cancels
+                    garbage += live.remove(new UUID(in.readLong(), in.readLong())) != null ? 2 : 1;
+                    break;
+                case RECORD_CHECKPOINT:
+                    lastCheckpoint = in.readLong();
+                    garbage++;
+                    break;
+                default:
+                    throw new IOException("Corrupt scheduled task log, unknown record type " + type);
+            }
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static PersistedTask readTask(DataInputStream in) throws IOException {
+        UUID id = new UUID(in.readLong(), in.readLong());
+        long dueTime = in.readLong();
+        long period = in.readLong();
+        String scriptName = in.readUTF();
+        
+        String[] args = new String[in.readUnsignedShort()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = in.readUTF();
+        }
+        
+        UUID playerId = in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+        
+        Map<String, Object> variables = new LinkedHashMap<>();
+        int length = in.readInt();
+        if (length > 0) {
+            byte[] data = new byte[length];
+            in.readFully(data);
+            variables = (Map<String, Object>) VariableSerializer.deserialize(new String(data, StandardCharsets.UTF_8));
+        }
+        
+        return new PersistedTask(id, scriptName, args, playerId, variables, dueTime, period);
+    }
+    
+    /**
+     * Write an add, remove or checkpoint record
+     */
+    private static void writeRecord(DataOutputStream out, Object record) throws IOException {
+        if (record instanceof PersistedTask) {
+            writeTask(out, (PersistedTask) record);
+        } else if (record instanceof UUID) {
+            UUID id = (UUID) record;
+            out.writeByte(RECORD_REMOVE);
+            out.writeLong(id.getMostSignificantBits());
+            out.writeLong(id.getLeastSignificantBits());
+        } else {
+            out.writeByte(RECORD_CHECKPOINT);
+            out.writeLong((Long) record);
+        }
+    }
+    
+    private static void writeTask(DataOutputStream out, PersistedTask task) throws IOException {
+        out.writeByte(RECORD_ADD);
+        out.writeLong(task.getId().getMostSignificantBits());
+        out.writeLong(task.getId().getLeastSignificantBits());
+        out.writeLong(task.getDueTime());
+        out.writeLong(task.getPeriod());
+        out.writeUTF(task.getScriptName());
+        
+        out.writeShort(task.getArgs().length);
+        for (String arg : task.getArgs()) {
+            out.writeUTF(arg);
+        }
+        
+        out.writeBoolean(task.getPlayerId() != null);
+        if (task.getPlayerId() != null) {
+            out.writeLong(task.getPlayerId().getMostSignificantBits());
+            out.writeLong(task.getPlayerId().getLeastSignificantBits());
+        }
+        
+        if (task.getVariables().isEmpty()) {
+            out.writeInt(0);
+        } else {
+            byte[] data = VariableSerializer.serialize(task.getVariables()).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(data.length);
+            out.write(data);
+        }
+    }
+    
+    /**
+     * Record a new task
+     */
+    public synchronized void add(PersistedTask task) {
+        if (live.put(task.getId(), task) != null) {
+            garbage++;
+        }
+        
+        try {
+            append(task);
+        } catch (IOException e) {
+            Logger.error("Failed to persist scheduled task " + task.getId() + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Record that a task was cancelled or has finished
+     */
+    public synchronized void remove(UUID id) {
+        if (live.remove(id) == null) {
+            return;
+        }
+        garbage += 2;
+        
+        try {
+            append(id);
+        } catch (IOException e) {
+            Logger.error("Failed to remove persisted task " + id + ": " + e.getMessage());
+        }
+        
+        startCompaction();
+    }
+    
+    /**
+     * Record that the server is running at the given time
+     */
+    public synchronized void checkpoint(long time) {
+        try {
+            append(time);
+            checkpointTime = time;
+            garbage++;
+        } catch (IOException e) {
+            Logger.error("Failed to checkpoint scheduled task log: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Push appended records to the file
+     */
+    public synchronized void flush() {
+        if (!dirty || out == null) {
+            return;
+        }
+        
+        try {
+            out.flush();
+            dirty = false;
+        } catch (IOException e) {
+            Logger.error("Failed to write scheduled task log: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Wait for running compactions, then flush and close the log
+     */
+    public synchronized void close() {
+        // Finishing a compaction can start the next, when removals during it call for one
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        try {
+            while (pendingRecords != null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    Logger.warning("Compaction of the scheduled task log did not finish, it is retried on the next load");
+                    break;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compactor.shutdown();
+        
+        flush();
+        try {
+            closeOut();
+        } catch (IOException e) {
+            Logger.error("Failed to close scheduled task log: " + e.getMessage());
+        }
+    }
+    
+    private boolean needsCompaction() {
+        return garbage > MIN_COMPACT_GARBAGE && garbage > live.size();
+    }
+    
+    /**
+     * Compact the log on the compactor thread if removed records outnumber live ones
+     * and no compaction is running
+     */
+    private void startCompaction() {
+        if (pendingRecords != null || !needsCompaction()) {
+            return;
+        }
+        
+        pendingRecords = new ArrayList<>();
+        List<PersistedTask> tasks = new ArrayList<>(live.values());
+        long checkpoint = checkpointTime;
+        int compacted = garbage;
+        try {
+            compactor.execute(() -> compact(tasks, checkpoint, compacted));
+        } catch (RejectedExecutionException e) {
+            // Closed; the log is compacted on the next load instead
+            pendingRecords = null;
+        }
+    }
+    
+    /**
+     * Replace the log with the tasks that were live when the compaction started,
+     * followed by the records appended since; runs on the compactor thread
+     */
+    private void compact(List<PersistedTask> tasks, long checkpoint, int compacted) {
+        File temp = tempFile();
+        try {
+            // The bulk of the work, while other calls keep appending to the old log
+            writeLog(temp, tasks, checkpoint);
+            
+            synchronized (this) {
+                try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp, true), 1 << 16))) {
+                    for (Object record : pendingRecords) {
+                        writeRecord(stream, record);
+                    }
+                }
+                closeOut();
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                garbage -= compacted;
+                dirty = false;
+                
+                // Removals during this compaction may call for another
+                finishCompaction();
+                startCompaction();
+            }
+        } catch (IOException e) {
+            Logger.error("Failed to compact scheduled task log: " + e.getMessage());
+            temp.delete();
+            synchronized (this) {
+                finishCompaction();
+            }
+        }
+    }
+    
+    private void finishCompaction() {
+        pendingRecords = null;
+        notifyAll();
+    }
+    
+    /**
+     * Replace the log with one add record per live task, on the calling thread
+     */
+    private void rewrite() throws IOException {
+        closeOut();
+        File temp = tempFile();
+        writeLog(temp, live.values(), checkpointTime);
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        garbage = 0;
+        dirty = false;
+    }
+    
+    /**
+     * Write a complete log of the given tasks, to be moved over the log once complete
+     */
+    private static void writeLog(File target, Collection<PersistedTask> tasks, long checkpoint) throws IOException {
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target), 1 << 16))) {
+            stream.writeInt(MAGIC);
+            stream.writeByte(VERSION);
+            for (PersistedTask task : tasks) {
+                writeTask(stream, task);
+            }
+            stream.writeByte(RECORD_CHECKPOINT);
+            stream.writeLong(checkpoint);
+        }
+    }
+    
+    private File tempFile() {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        return new File(file.getPath() + ".tmp");
+    }
+    
+    /**
+     * Append a record to the log, and to the pending records of a running compaction
+     */
+    private void append(Object record) throws IOException {
+        writeRecord(out(), record);
+        dirty = true;
+        if (pendingRecords != null) {
+            pendingRecords.add(record);
+        }
+    }
+    
+    private void closeOut() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+    
+    private DataOutputStream out() throws IOException {
+        if (out == null) {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16));
+        }
+        return out;
+    }
+    
+    // Getters
+    public synchronized int getLiveCount() { return live.size(); }
+    public synchronized long getLastCheckpoint() { return lastCheckpoint; }
+}
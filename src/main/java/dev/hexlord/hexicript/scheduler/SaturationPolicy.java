@@ -0,0 +1,10 @@
+package dev.hexlord.hexicript.scheduler;
+
+/**
+ * What a script executor does with new work once every thread is busy and its queue is full
+ */
+public enum SaturationPolicy {
+    QUEUE,         // Make the submitter wait for room in the queue, then reject
+    REJECT,        // Reject the work right away
+    CALLER_RUNS    // Run the work on the submitting thread
+}
@@ -0,0 +1,222 @@
+package dev.hexlord.hexicript.scheduler;
+
+import dev.hexlord.hexicript.utils.Logger;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the bounded thread pools that run scripts off the main thread
+ *
+ * performance.thread_pool_size fixes the number of threads and
+ * performance.max_concurrent_scripts caps running plus queued work, so a
+ * burst of submissions can never grow the pool. What happens beyond that cap
+ * is chosen by performance.saturation_policy. QUEUE waits for room only off
+ * the main thread; a full pool rejects the main thread at once rather than
+ * stall the tick. With performance.execution_mode
+ * set to VIRTUAL each execution gets its own virtual thread instead, still
+ * capped by max_concurrent_scripts.
+ */
+public final class ScriptExecutors {
+    
+    private ScriptExecutors() {
+    }
+    
+    /**
+     * Create a script pool from the performance section of config.yml
+     */
+    public static ExecutorService create(FileConfiguration config, String threadName) {
+        int threads = Math.max(1, config.getInt("performance.thread_pool_size", 10));
+        int maxConcurrent = Math.max(threads, config.getInt("performance.max_concurrent_scripts", 50));
+        long waitMillis = Math.max(0, config.getLong("performance.saturation_wait_ms", 1000));
+        
+        SaturationPolicy policy;
+        String value = config.getString("performance.saturation_policy", "QUEUE");
+        try {
+            policy = SaturationPolicy.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            Logger.warning("Unknown performance.saturation_policy '" + value + "', using QUEUE");
+            policy = SaturationPolicy.QUEUE;
+        }
+        
+        ExecutionMode mode;
+        String modeValue = config.getString("performance.execution_mode", "PLATFORM");
+        try {
+            mode = ExecutionMode.valueOf(modeValue.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            Logger.warning("Unknown performance.execution_mode '" + modeValue + "', using PLATFORM");
+            mode = ExecutionMode.PLATFORM;
+        }
+        
+        if (mode == ExecutionMode.VIRTUAL) {
+            ExecutorService virtual = createVirtual(threadName, maxConcurrent, policy, waitMillis);
+            if (virtual != null) {
+                Logger.info("Running async scripts on virtual threads (up to " + maxConcurrent + " at once)");
+                return virtual;
+            }
+            Logger.warning("performance.execution_mode is VIRTUAL but this Java version has no virtual threads, using PLATFORM");
+        }
+        
+        return create(threadName, threads, maxConcurrent, policy, waitMillis);
+    }
+    
+    /**
+     * Create an executor that runs each task on its own virtual thread, at most maxConcurrent at once
+     * @return The executor, or null if this Java version has no virtual threads
+     */
+    public static ExecutorService createVirtual(String threadName, int maxConcurrent,
+                                                SaturationPolicy policy, long waitMillis) {
+        ExecutorService virtual = VirtualThreads.newExecutor(threadName);
+        return virtual != null ? new PermitExecutor(virtual, maxConcurrent, policy, waitMillis) : null;
+    }
+    
+    /**
+     * Create a fixed-size pool whose running plus queued work never exceeds maxConcurrent
+     */
+    public static ThreadPoolExecutor create(String threadName, int threads, int maxConcurrent,
+                                            SaturationPolicy policy, long waitMillis) {
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(Math.max(1, maxConcurrent - threads));
+        
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            threads, threads, 60L, TimeUnit.SECONDS, queue,
+            threadFactory(threadName), handler(policy, waitMillis));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
+    private static ThreadFactory threadFactory(String threadName) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, threadName + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    private static RejectedExecutionHandler handler(SaturationPolicy policy, long waitMillis) {
+        switch (policy) {
+            case CALLER_RUNS:
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+                
+            case REJECT:
+                return (r, executor) -> {
+                    throw new RejectedExecutionException("Script executor is saturated (" +
+                        executor.getActiveCount() + " running, " + executor.getQueue().size() + " queued)");
+                };
+                
+            case QUEUE:
+            default:
+                return (r, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Script executor is shut down");
+                    }
+                    long wait = maxWait(waitMillis);
+                    try {
+                        if (executor.getQueue().offer(r, wait, TimeUnit.MILLISECONDS)) {
+                            return;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new RejectedExecutionException("Script executor stayed saturated for " + wait + "ms");
+                };
+        }
+    }
+    
+    /**
+     * Get how long a submission may wait for room; the main thread never waits
+     */
+    private static long maxWait(long waitMillis) {
+        return Bukkit.isPrimaryThread() ? 0 : waitMillis;
+    }
+    
+    /**
+     * Caps the number of in-flight tasks of an unbounded executor with permits
+     */
+    private static final class PermitExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+        private final SaturationPolicy policy;
+        private final long waitMillis;
+        
+        PermitExecutor(ExecutorService delegate, int maxConcurrent, SaturationPolicy policy, long waitMillis) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxConcurrent);
+            this.policy = policy;
+            this.waitMillis = waitMillis;
+        }
+        
+        @Override
+        public void execute(Runnable command) {
+            if (!acquire()) {
+                if (policy == SaturationPolicy.CALLER_RUNS && !delegate.isShutdown()) {
+                    command.run();
+                    return;
+                }
+                throw new RejectedExecutionException("Script executor is saturated (" + permits.availablePermits() + " permits left)");
+            }
+            
+            try {
+                delegate.execute(() -> {
+                    try {
+                        command.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+        
+        private boolean acquire() {
+            if (policy != SaturationPolicy.QUEUE) {
+                return permits.tryAcquire();
+            }
+            try {
+                return permits.tryAcquire(maxWait(waitMillis), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+        
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+        
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+        
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+        
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package dev.hexlord.hexicript.scheduler;
+
+import dev.hexlord.hexicript.utils.Logger;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serial execution lanes that give each script single-threaded semantics
+ *
+ * Every script name maps to one lane: a queue drained by at most one pool
+ * thread at a time, in submission order. Work of one script therefore never
+ * runs concurrently with itself and needs no locking on that script's state,
+ * while different lanes run in parallel on the shared pool. Lanes are striped
+ * by name hash, so a fixed set serves any number of scripts without per-script
+ * bookkeeping; two scripts sharing a lane only lose parallelism with each other.
+ * A lane the saturated pool refused to reschedule is retried from the scheduler
+ * tick, so its queued work is never left waiting for another submission.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public class ScriptLanes {
+    
+    // Tasks a lane runs before handing its thread back to the pool, so busy lanes cannot starve others
+    private static final int BATCH_SIZE = 32;
+    
+    private final Lane[] lanes;
+    private final Executor pool;
+    private final int maxPending;
+    private final AtomicInteger pending;
+    
+    /**
+     * A single serial queue on top of the pool
+     */
+    private final class Lane implements Executor {
+        private final ConcurrentLinkedQueue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // Set when the pool refused a reschedule while work was still queued
+        private volatile boolean stalled;
+        
+        @Override
+        public void execute(Runnable task) {
+            if (pending.incrementAndGet() > maxPending) {
+                pending.decrementAndGet();
+                throw new RejectedExecutionException("Too many queued script executions (" + maxPending + ")");
+            }
+            
+            mailbox.offer(task);
+            try {
+                schedule();
+            } catch (RejectedExecutionException e) {
+                // The pool is saturated and nothing is draining this lane; take the task back
+                if (mailbox.remove(task)) {
+                    pending.decrementAndGet();
+                }
+                // Work other threads queued meanwhile relied on this schedule, so retry it next tick
+                if (!mailbox.isEmpty()) {
+                    stalled = true;
+                }
+                throw e;
+            }
+        }
+        
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    pool.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    throw e;
+                }
+            }
+        }
+        
+        private void drain() {
+            try {
+                Runnable task;
+                for (int i = 0; i < BATCH_SIZE && (task = mailbox.poll()) != null; i++) {
+                    pending.decrementAndGet();
+                    try {
+                        task.run();
+                    } catch (Exception e) {
+                        Logger.error("Error in script lane: " + e.getMessage());
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            
+            // Work queued during or after the batch; only one thread wins the reschedule
+            if (!mailbox.isEmpty()) {
+                try {
+                    schedule();
+                } catch (RejectedExecutionException e) {
+                    stalled = true;
+                    Logger.warning("Script lane could not be rescheduled, retrying " + mailbox.size() + " queued executions next tick");
+                }
+            }
+        }
+        
+        private void resume() {
+            if (!stalled) {
+                return;
+            }
+            stalled = false;
+            
+            if (!mailbox.isEmpty()) {
+                try {
+                    schedule();
+                } catch (RejectedExecutionException e) {
+                    stalled = true;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Create lanes on top of a pool
+     * @param pool The pool lanes are drained on
+     * @param laneCount Number of lanes, rounded up to a power of two
+     * @param maxPending Maximum number of tasks queued across all lanes
+     */
+    public ScriptLanes(Executor pool, int laneCount, int maxPending) {
+        int size = laneCount <= 1 ? 1 : Integer.highestOneBit(laneCount - 1) << 1;
+        this.lanes = new Lane[size];
+        for (int i = 0; i < size; i++) {
+            lanes[i] = new Lane();
+        }
+        this.pool = pool;
+        this.maxPending = maxPending;
+        this.pending = new AtomicInteger();
+    }
+    
+    /**
+     * Get the lane the work of a script runs on
+     */
+    public Executor laneFor(String scriptName) {
+        int hash = scriptName.hashCode();
+        return lanes[(hash ^ (hash >>> 16)) & (lanes.length - 1)];
+    }
+    
+    /**
+     * Reschedule lanes whose queued work was left behind by a saturated pool
+     * Called once per tick by the scheduler
+     */
+    public void resumeStalled() {
+        for (Lane lane : lanes) {
+            lane.resume();
+        }
+    }
+    
+    // Getters
+    public int getLaneCount() { return lanes.length; }
+    public int getPendingCount() { return pending.get(); }
+}
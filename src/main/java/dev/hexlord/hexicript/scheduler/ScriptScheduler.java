@@ -1,32 +1,157 @@
 package dev.hexlord.hexicript.scheduler;
 
 import dev.hexlord.hexicript.HexicriptPlugin;
+import dev.hexlord.hexicript.core.ScriptEngine;
+import dev.hexlord.hexicript.core.execution.CancellationToken;
+import dev.hexlord.hexicript.core.execution.ExecutionContext;
+import dev.hexlord.hexicript.core.execution.ExecutionResult;
 import dev.hexlord.hexicript.core.script.Script;
 import dev.hexlord.hexicript.utils.Logger;
 import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitTask;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 /**
  * Handles scheduling and execution of scripts
+ * Delayed and repeating scripts share one Bukkit task that advances a timing wheel;
+ * the same task feeds the load governor that throttles low-priority scripts
  */
 public class ScriptScheduler {
     
+    private static final long MILLIS_PER_TICK = 50;
+    // How often the persistent task log notes that the server is still running
+    private static final long CHECKPOINT_TICKS = 1200;
+    
     private final HexicriptPlugin plugin;
+    // Registry of scheduled and running tasks, touched from the main thread and async completions
     private final Map<UUID, ScriptTask> activeTasks;
-    private final Executor asyncExecutor;
+    private final Map<String, AtomicInteger> scriptTaskCounts;
+    
+    // Timers for delayed and repeating scripts, advanced once per tick
+    private final TimingWheel wheel;
+    private BukkitTask tickTask;
+    
+    // Callbacks handed to the main thread, drained once per tick
+    private final MainThreadQueue mainThreadQueue;
+    private final long mainThreadBudgetNanos;
     
+    // Throttles script work while the server is behind
+    private final LoadGovernor governor;
+    
+    // Tasks that survive restarts, or null when persistence is off or the log could not be read
+    private final PersistentTaskStore taskStore;
+    private final CatchUpPolicy catchUpPolicy;
+    private final int maxCatchUpRuns;
+    private Collection<PersistedTask> restoredTasks;
+    
+    /**
+     * Create the scheduler; must be called from the main thread, which owns the timing wheel
+     */
     public ScriptScheduler(HexicriptPlugin plugin) {
         this.plugin = plugin;
-        this.activeTasks = new HashMap<>();
-        this.asyncExecutor = Executors.newCachedThreadPool();
+        this.activeTasks = new ConcurrentHashMap<>();
+        this.scriptTaskCounts = new ConcurrentHashMap<>();
+        this.wheel = new TimingWheel(Thread.currentThread());
+        this.mainThreadQueue = new MainThreadQueue();
+        this.mainThreadBudgetNanos = TimeUnit.MILLISECONDS.toNanos(
+            plugin.getConfigManager().getConfig().getLong("performance.main_thread_budget_ms", 5));
+        this.governor = new LoadGovernor(plugin.getConfigManager().getConfig());
+        
+        FileConfiguration config = plugin.getConfigManager().getConfig();
+        String policy = config.getString("scheduler.persistent.catch_up_policy", "FIRE_ONCE");
+        CatchUpPolicy catchUp;
+        try {
+            catchUp = CatchUpPolicy.valueOf(policy.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            Logger.warning("Unknown scheduler.persistent.catch_up_policy '" + policy + "', using FIRE_ONCE");
+            catchUp = CatchUpPolicy.FIRE_ONCE;
+        }
+        this.catchUpPolicy = catchUp;
+        this.maxCatchUpRuns = Math.max(1, config.getInt("scheduler.persistent.max_catch_up_runs", 100));
+        this.taskStore = openTaskStore(config);
+    }
+    
+    /**
+     * Open the persistent task log and read the tasks it holds
+     * They are scheduled by restorePersistentTasks once scripts are loaded
+     */
+    private PersistentTaskStore openTaskStore(FileConfiguration config) {
+        if (!config.getBoolean("scheduler.persistent.enabled", true)) {
+            return null;
+        }
+        
+        File file = new File(plugin.getDataFolder(), config.getString("scheduler.persistent.file", "data/scheduled-tasks.log"));
+        PersistentTaskStore store = new PersistentTaskStore(file);
+        try {
+            restoredTasks = store.load();
+            return store;
+        } catch (Exception e) {
+            Logger.error("Failed to read persistent scheduled tasks, they will not be saved this session: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Start the tick task
+     */
+    public void start() {
+        if (tickTask != null) {
+            return;
+        }
+        
+        tickTask = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        
+        if (taskStore != null) {
+            wheel.schedule(() -> taskStore.checkpoint(System.currentTimeMillis()), CHECKPOINT_TICKS, CHECKPOINT_TICKS);
+        }
+    }
+    
+    /**
+     * Stop the tick task and cancel everything still scheduled
+     */
+    public void shutdown() {
+        // Persistent tasks stay in the log; only their in-memory timers go
+        cancelAllTasks();
+        governor.clear();
+        if (tickTask != null) {
+            tickTask.cancel();
+            tickTask = null;
+        }
+        
+        if (taskStore != null) {
+            taskStore.checkpoint(System.currentTimeMillis());
+            taskStore.close();
+        }
+    }
+    
+    /**
+     * Measure the tick, run the handed-over callbacks, advance the timing wheel by one tick,
+     * then let the engine do its per-tick upkeep
+     */
+    private void tick() {
+        governor.recordTick(System.nanoTime());
+        mainThreadQueue.drain((long) (mainThreadBudgetNanos * governor.getBudgetScale()));
+        wheel.tick();
+        
+        plugin.getScriptEngine().tick();
+        
+        if (taskStore != null) {
+            taskStore.flush();
+        }
     }
     
     /**
@@ -44,31 +169,43 @@ public class ScriptScheduler {
      */
     public ScriptTask runAsync(Script script, String[] args, Consumer<Object> callback) {
         ScriptTask task = new ScriptTask(script, args, false);
-        CompletableFuture.runAsync(() -> {
-            try {
-                Object result = script.execute(args);
-                if (callback != null) {
-                    Bukkit.getScheduler().runTask(plugin, () -> callback.accept(result));
-                }
-            } catch (Exception e) {
-                Logger.severe("Error executing script asynchronously: " + e.getMessage());
-                if (callback != null) {
-                    Bukkit.getScheduler().runTask(plugin, () -> callback.accept(null));
-                }
-            } finally {
-                activeTasks.remove(task.getTaskId());
-            }
-        }, asyncExecutor);
+        register(task);
         
-        activeTasks.put(task.getTaskId(), task);
+        // Low-priority work waits for the server to catch up
+        if (!governor.defer(script.getPriority(), () -> submitAsync(task, callback))) {
+            submitAsync(task, callback);
+        }
         return task;
     }
     
+    /**
+     * Submit a registered async task to the pool
+     */
+    private void submitAsync(ScriptTask task, Consumer<Object> callback) {
+        if (task.isCancelled()) {
+            unregister(task);
+            return;
+        }
+        
+        // The engine's bounded pool, or the script's lane on it, so config limits apply to all async script work
+        start(task, task.getScript(), argumentsContext(task.getArgs())).thenAccept(result -> {
+            unregister(task);
+            if (result.isError()) {
+                Logger.error("Error executing script asynchronously: " + result.getMessage());
+            }
+            if (callback != null) {
+                // Callbacks always run on the main thread, even when the caller is async
+                Object value = result.isError() ? null : result.getValue();
+                mainThreadQueue.execute(() -> callback.accept(value));
+            }
+        });
+    }
+    
     /**
      * Schedule a script to run after a delay
      * @param script The script to run
      * @param delayTicks The delay in ticks (20 ticks = 1 second)
-     * @return The BukkitTask for this scheduled execution
+     * @return The ScriptTask for this scheduled execution
      */
     public ScriptTask runLater(Script script, long delayTicks) {
         return runLater(script, new String[0], delayTicks);
@@ -79,18 +216,17 @@ public class ScriptScheduler {
      */
     public ScriptTask runLater(Script script, String[] args, long delayTicks) {
         ScriptTask task = new ScriptTask(script, args, true);
-        BukkitTask bukkitTask = Bukkit.getScheduler().runTaskLater(plugin, () -> {
-            try {
-                script.execute(args);
-            } catch (Exception e) {
-                Logger.severe("Error in scheduled script: " + e.getMessage());
-            } finally {
-                activeTasks.remove(task.getTaskId());
-            }
-        }, delayTicks);
+        TimingWheel.Timer timer = wheel.schedule(() -> {
+            start(task, script, argumentsContext(args)).thenAccept(result -> {
+                unregister(task);
+                if (result.isError()) {
+                    Logger.error("Error in scheduled script: " + result.getMessage());
+                }
+            });
+        }, delayTicks, 0);
         
-        task.setBukkitTask(bukkitTask);
-        activeTasks.put(task.getTaskId(), task);
+        task.setTimer(timer);
+        register(task);
         return task;
     }
     
@@ -110,34 +246,266 @@ public class ScriptScheduler {
      */
     public ScriptTask runRepeating(Script script, String[] args, long delayTicks, long periodTicks) {
         ScriptTask task = new ScriptTask(script, args, true);
-        BukkitTask bukkitTask = new ScriptRunnable(plugin, script, args, task).runTaskTimer(plugin, delayTicks, periodTicks);
-        task.setBukkitTask(bukkitTask);
-        activeTasks.put(task.getTaskId(), task);
+        TimingWheel.Timer timer = wheel.schedule(() -> {
+            // Under load, throttled scripts only run every few periods
+            int stretch = governor.getPeriodStretch(script.getPriority());
+            if (task.countFiring() % stretch != 0) {
+                return;
+            }
+            
+            start(task, script, argumentsContext(args)).thenAccept(result -> {
+                if (result.isError()) {
+                    Logger.error("Error in repeating script: " + result.getMessage());
+                    // Cancel the task if there's an error
+                    cancelTask(task.getTaskId());
+                }
+            });
+        }, delayTicks, Math.max(1, periodTicks));
+        task.setTimer(timer);
+        register(task);
         return task;
     }
     
+    /**
+     * Schedule a script to run after a delay, surviving restarts
+     * The player and local variables of the context are stored with the task and
+     * restored when it runs; the arguments are available as the local "args"
+     * @param context The context to store, or null for none
+     */
+    public ScriptTask runLaterPersistent(Script script, String[] args, ExecutionContext context, long delayTicks) {
+        return schedulePersistent(script, args, context, delayTicks, 0);
+    }
+    
+    /**
+     * Schedule a repeating script that survives restarts
+     * @see #runLaterPersistent(Script, String[], ExecutionContext, long)
+     */
+    public ScriptTask runRepeatingPersistent(Script script, String[] args, ExecutionContext context,
+                                             long delayTicks, long periodTicks) {
+        return schedulePersistent(script, args, context, delayTicks, Math.max(1, periodTicks));
+    }
+    
+    private ScriptTask schedulePersistent(Script script, String[] args, ExecutionContext context,
+                                          long delayTicks, long periodTicks) {
+        long delay = Math.max(1, delayTicks);
+        Player player = context != null ? context.getPlayer() : null;
+        Map<String, Object> variables = context != null ? context.getLocalVariables() : Collections.emptyMap();
+        
+        PersistedTask persisted = new PersistedTask(UUID.randomUUID(), script.getName(), args,
+            player != null ? player.getUniqueId() : null, variables,
+            System.currentTimeMillis() + delay * MILLIS_PER_TICK, periodTicks * MILLIS_PER_TICK);
+        
+        if (taskStore != null) {
+            taskStore.add(persisted);
+        } else {
+            Logger.debug("Persistent tasks are disabled, task for script '" + script.getName() + "' will not survive a restart");
+        }
+        return schedulePersisted(persisted, delay);
+    }
+    
+    /**
+     * Put a persisted task on the timing wheel
+     * The script is looked up by name on every firing, so the task outlives a reload
+     * of its script; firings while the script is not loaded are skipped
+     */
+    private ScriptTask schedulePersisted(PersistedTask persisted, long delayTicks) {
+        ScriptTask task = new ScriptTask(persisted.getId(), persisted.getScriptName(), persisted.getArgs());
+        TimingWheel.Timer timer = wheel.schedule(() -> {
+            Script script = plugin.getScriptManager().getScript(persisted.getScriptName());
+            if (persisted.isRepeating()) {
+                // Under load, throttled scripts only run every few periods
+                if (script != null && task.countFiring() % governor.getPeriodStretch(script.getPriority()) == 0) {
+                    firePersisted(task, persisted, script);
+                }
+                return;
+            }
+            
+            if (script == null) {
+                // Stays in the log, like a restored task whose script is missing
+                Logger.warning("Script '" + persisted.getScriptName() + "' is not loaded, persistent task " +
+                               persisted.getId() + " will run on a later start");
+                unregister(task);
+                return;
+            }
+            
+            try {
+                firePersisted(task, persisted, script);
+            } finally {
+                unregister(task);
+                if (taskStore != null) {
+                    taskStore.remove(persisted.getId());
+                }
+            }
+        }, delayTicks, persisted.getPeriod() / MILLIS_PER_TICK);
+        
+        task.setTimer(timer);
+        register(task);
+        return task;
+    }
+    
+    /**
+     * Run a persisted task with its stored context against the currently loaded script
+     */
+    private void firePersisted(ScriptTask task, PersistedTask persisted, Script script) {
+        ScriptEngine engine = plugin.getScriptEngine();
+        Player player = persisted.getPlayerId() != null ? engine.getPlayerIndex().getPlayer(persisted.getPlayerId()) : null;
+        
+        ExecutionContext context = new ExecutionContext(player, engine.getVariableManager());
+        persisted.getVariables().forEach(context::setVariable);
+        context.setVariable("args", Arrays.asList(persisted.getArgs()));
+        
+        start(task, script, context).thenAccept(result -> {
+            if (result.isError()) {
+                Logger.error("Error in persistent task of script '" + script.getName() + "': " + result.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Start a run of a task's script
+     * Each run gets a fresh token under the loaded script, so an earlier unload does not
+     * stop it; cancelling the task also stops its latest run if that is still going
+     */
+    private CompletableFuture<ExecutionResult> start(ScriptTask task, Script script, ExecutionContext context) {
+        ScriptEngine engine = plugin.getScriptEngine();
+        CancellationToken token = engine.createCancellationToken(script);
+        task.setCancellationToken(token);
+        context.setCancellationToken(token);
+        if (task.isCancelled()) {
+            // Cancelled before the token was set, so the cancel did not reach it
+            token.cancel("task " + task.getTaskId() + " was cancelled");
+        }
+        return engine.executeScript(script, context);
+    }
+    
+    /**
+     * Create the context of a task run with no player; the arguments are available as the local "args"
+     */
+    private ExecutionContext argumentsContext(String[] args) {
+        ExecutionContext context = new ExecutionContext(null, plugin.getScriptEngine().getVariableManager());
+        context.setVariable("args", Arrays.asList(args));
+        return context;
+    }
+    
+    /**
+     * Schedule the tasks read from the persistent task log
+     * Call once scripts are loaded. Runs missed while the server was offline are
+     * handled by scheduler.persistent.catch_up_policy; tasks whose script is not
+     * loaded stay in the log for a later start.
+     */
+    public void restorePersistentTasks() {
+        if (taskStore == null || restoredTasks == null) {
+            return;
+        }
+        
+        long startTime = System.nanoTime();
+        long now = System.currentTimeMillis();
+        long lastSeen = taskStore.getLastCheckpoint();
+        int restored = 0;
+        int caughtUp = 0;
+        int orphaned = 0;
+        // Tasks share a few scripts, so each is looked up once
+        Map<String, Boolean> loaded = new HashMap<>();
+        
+        for (PersistedTask persisted : restoredTasks) {
+            if (!loaded.computeIfAbsent(persisted.getScriptName(), name -> plugin.getScriptManager().getScript(name) != null)) {
+                orphaned++;
+                continue;
+            }
+            
+            long due = persisted.getDueTime();
+            if (!persisted.isRepeating()) {
+                if (due > now) {
+                    schedulePersisted(persisted, ticksUntil(due, now));
+                    restored++;
+                } else if (catchUpPolicy == CatchUpPolicy.SKIP) {
+                    taskStore.remove(persisted.getId());
+                } else {
+                    schedulePersisted(persisted, 1);
+                    caughtUp++;
+                }
+                continue;
+            }
+            
+            // Occurrences due + k * period between the last checkpoint and now were missed
+            long period = persisted.getPeriod();
+            long firstMissed = lastSeen < due ? 0 : (lastSeen - due) / period + 1;
+            long lastDue = now < due ? -1 : (now - due) / period;
+            long missed = Math.max(0, lastDue - firstMissed + 1);
+            
+            long runs = catchUpPolicy == CatchUpPolicy.FIRE_ALL ? Math.min(missed, maxCatchUpRuns)
+                : catchUpPolicy == CatchUpPolicy.FIRE_ONCE ? Math.min(missed, 1) : 0;
+            ScriptTask task = schedulePersisted(persisted, ticksUntil(due + (lastDue + 1) * period, now));
+            for (long i = 0; i < runs; i++) {
+                wheel.schedule(() -> {
+                    Script script = plugin.getScriptManager().getScript(persisted.getScriptName());
+                    if (!task.isCancelled() && script != null) {
+                        firePersisted(task, persisted, script);
+                    }
+                }, 1, 0);
+            }
+            caughtUp += runs;
+            restored++;
+        }
+        
+        restoredTasks = null;
+        taskStore.checkpoint(now);
+        
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        Logger.info("Restored " + restored + " persistent tasks in " + elapsed + "ms (" + caughtUp + " missed runs caught up" +
+                    (orphaned > 0 ? ", " + orphaned + " waiting for their script" : "") + ")");
+    }
+    
+    private static long ticksUntil(long time, long now) {
+        return Math.max(1, (time - now + MILLIS_PER_TICK - 1) / MILLIS_PER_TICK);
+    }
+    
     /**
      * Cancel a scheduled task
+     * A persistent task is also removed from the persistent task log
      * @param taskId The ID of the task to cancel
      * @return true if the task was found and cancelled
      */
     public boolean cancelTask(UUID taskId) {
-        ScriptTask task = activeTasks.remove(taskId);
-        if (task != null) {
+        ScriptTask task = activeTasks.get(taskId);
+        if (task != null && unregister(task)) {
             task.cancel();
+            if (task.isPersistent() && taskStore != null) {
+                taskStore.remove(taskId);
+            }
+            if (task.getCancellationToken() != null) {
+                plugin.getScriptEngine().wakeStoppedExecutions();
+            }
             return true;
         }
         return false;
     }
     
+    /**
+     * Cancel every task of a script, e.g. when it is unloaded
+     * Persistent tasks are bound to the script by name and are kept
+     * @return The number of tasks cancelled
+     */
+    public int cancelTasks(Script script) {
+        int cancelled = 0;
+        for (ScriptTask task : activeTasks.values()) {
+            if (task.getScript() == script && unregister(task)) {
+                task.cancel();
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+    
     /**
      * Cancel all active tasks
      */
     public void cancelAllTasks() {
         for (ScriptTask task : activeTasks.values()) {
-            task.cancel();
+            if (unregister(task)) {
+                task.cancel();
+            }
         }
-        activeTasks.clear();
     }
     
     /**
@@ -148,31 +516,76 @@ public class ScriptScheduler {
     }
     
     /**
-     * Internal runnable for repeating scripts
+     * Get the number of active tasks of a script
      */
-    private static class ScriptRunnable extends org.bukkit.scheduler.BukkitRunnable {
-        private final HexicriptPlugin plugin;
-        private final Script script;
-        private final String[] args;
-        private final ScriptTask task;
-        
-        public ScriptRunnable(HexicriptPlugin plugin, Script script, String[] args, ScriptTask task) {
-            this.plugin = plugin;
-            this.script = script;
-            this.args = args;
-            this.task = task;
+    public int getActiveTaskCount(Script script) {
+        AtomicInteger count = scriptTaskCounts.get(script.getName());
+        return count != null ? count.get() : 0;
+    }
+    
+    /**
+     * Get the number of active tasks per script name
+     */
+    public Map<String, Integer> getActiveTaskCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        scriptTaskCounts.forEach((name, count) -> {
+            if (count.get() > 0) {
+                counts.put(name, count.get());
+            }
+        });
+        return counts;
+    }
+    
+    private void register(ScriptTask task) {
+        activeTasks.put(task.getTaskId(), task);
+        scriptTaskCounts.computeIfAbsent(scriptName(task), k -> new AtomicInteger()).incrementAndGet();
+    }
+    
+    /**
+     * Remove a task from the registry; only the first call for a task succeeds
+     */
+    private boolean unregister(ScriptTask task) {
+        if (activeTasks.remove(task.getTaskId()) == null) {
+            return false;
         }
         
-        @Override
-        public void run() {
-            try {
-                script.execute(args);
-            } catch (Exception e) {
-                Logger.severe("Error in repeating script: " + e.getMessage());
-                // Cancel the task if there's an error
-                this.cancel();
-                task.getPlugin().getScheduler().cancelTask(task.getTaskId());
-            }
+        AtomicInteger count = scriptTaskCounts.get(scriptName(task));
+        if (count != null) {
+            count.decrementAndGet();
         }
+        return true;
+    }
+    
+    private static String scriptName(ScriptTask task) {
+        return task.getScriptName() != null ? task.getScriptName() : "";
+    }
+    
+    /**
+     * Run an action on the main thread after a number of ticks, outside any script's task list
+     * Used to continue executions that yielded at their tick budget and to close event debounce windows
+     */
+    public TimingWheel.Timer resume(Runnable action, long delayTicks) {
+        return wheel.schedule(action, delayTicks, 0);
+    }
+    
+    /**
+     * Get the queue that hands work to the main thread
+     */
+    public MainThreadQueue getMainThreadQueue() {
+        return mainThreadQueue;
+    }
+    
+    /**
+     * Get the load governor
+     */
+    public LoadGovernor getLoadGovernor() {
+        return governor;
+    }
+    
+    /**
+     * Get the number of timers waiting in the timing wheel
+     */
+    public int getPendingTimerCount() {
+        return wheel.getSize() + wheel.getIncomingCount();
     }
 }
@@ -1,8 +1,8 @@
 package dev.hexlord.hexicript.scheduler;
 
 import dev.hexlord.hexicript.HexicriptPlugin;
+import dev.hexlord.hexicript.core.execution.CancellationToken;
 import dev.hexlord.hexicript.core.script.Script;
-import org.bukkit.scheduler.BukkitTask;
 
 import java.util.UUID;
 
@@ -12,17 +12,37 @@ import java.util.UUID;
 public class ScriptTask {
     private final UUID taskId;
     private final Script script;
+    private final String scriptName;
     private final String[] args;
     private final boolean isSynchronous;
-    private BukkitTask bukkitTask;
-    private boolean cancelled = false;
+    private final boolean persistent;
+    private TimingWheel.Timer timer;
+    // Set and cancelled from the threads that start and cancel runs
+    private volatile CancellationToken cancellationToken;
+    private volatile boolean cancelled = false;
     private long startTime;
+    private long firings;
     
     public ScriptTask(Script script, String[] args, boolean isSynchronous) {
-        this.taskId = UUID.randomUUID();
+        this(UUID.randomUUID(), script, script != null ? script.getName() : null, args, isSynchronous, false);
+    }
+    
+    /**
+     * Create a persistent task with a known ID, e.g. one restored from the persistent task log
+     * It refers to its script by name only, so it keeps running the current version across reloads
+     */
+    public ScriptTask(UUID taskId, String scriptName, String[] args) {
+        this(taskId, null, scriptName, args, true, true);
+    }
+    
+    private ScriptTask(UUID taskId, Script script, String scriptName, String[] args,
+                       boolean isSynchronous, boolean persistent) {
+        this.taskId = taskId;
         this.script = script;
+        this.scriptName = scriptName;
         this.args = args;
         this.isSynchronous = isSynchronous;
+        this.persistent = persistent;
         this.startTime = System.currentTimeMillis();
     }
     
@@ -34,12 +54,19 @@ public class ScriptTask {
     }
     
     /**
-     * Get the script being executed
+     * Get the script being executed, or null for a persistent task
      */
     public Script getScript() {
         return script;
     }
     
+    /**
+     * Get the name of the script being executed
+     */
+    public String getScriptName() {
+        return scriptName;
+    }
+    
     /**
      * Get the arguments passed to the script
      */
@@ -54,6 +81,13 @@ public class ScriptTask {
         return isSynchronous;
     }
     
+    /**
+     * Check if this task is kept in the persistent task log across restarts
+     */
+    public boolean isPersistent() {
+        return persistent;
+    }
+    
     /**
      * Check if this task has been cancelled
      */
@@ -76,10 +110,32 @@ public class ScriptTask {
     }
     
     /**
-     * Set the BukkitTask associated with this task
+     * Count a firing of this task's timer and return the new count
      */
-    protected void setBukkitTask(BukkitTask bukkitTask) {
-        this.bukkitTask = bukkitTask;
+    long countFiring() {
+        return ++firings;
+    }
+    
+    /**
+     * Set the timer driving this task
+     */
+    protected void setTimer(TimingWheel.Timer timer) {
+        this.timer = timer;
+    }
+    
+    /**
+     * Set the token handed to the executions this task starts
+     * Every run takes a new one, which cancelling the task cancels
+     */
+    protected void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+    
+    /**
+     * Get the token handed to the executions this task starts, or null if it has none
+     */
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
     }
     
     /**
@@ -91,18 +147,18 @@ public class ScriptTask {
     
     /**
      * Cancel this task
+     * Executions it already started stop at their next loop iteration or wait
      */
     public void cancel() {
         if (cancelled) return;
         
         cancelled = true;
         
-        if (bukkitTask != null) {
-            try {
-                bukkitTask.cancel();
-            } catch (Exception e) {
-                // Ignore
-            }
+        if (timer != null) {
+            timer.cancel();
+        }
+        if (cancellationToken != null) {
+            cancellationToken.cancel("task " + taskId + " was cancelled");
         }
     }
 }
@@ -0,0 +1,243 @@
+package dev.hexlord.hexicript.scheduler;
+
+import dev.hexlord.hexicript.utils.Logger;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hierarchical timing wheel driven by one call to {@link #tick()} per server tick
+ *
+ * Four levels of 64 slots cover 2^24 ticks (about 9.7 days at 20 TPS); longer
+ * delays park in the top level and are re-filed when it comes round. Each slot
+ * is an intrusive doubly-linked list, so scheduling and cancelling a timer are
+ * O(1) regardless of how many timers are pending. Entries are cascaded one
+ * level down when the lower level wraps, so every timer is touched at most
+ * once per level.
+ *
+ * The wheel itself is owned by the ticking thread. Timers scheduled from other
+ * threads are handed over through a lock-free queue and filed on the next tick;
+ * timers cancelled from other threads are dropped when their slot comes round.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public final class TimingWheel {
+    
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_SPAN = 1L << (SLOT_BITS * LEVELS);
+    
+    private final Timer[][] wheels;
+    private final ConcurrentLinkedQueue<Timer> incoming;
+    private final Thread owner;
+    
+    private long currentTick;
+    private int size;
+    
+    /**
+     * A scheduled callback; cancel it to stop it from running
+     */
+    public static final class Timer {
+        private final TimingWheel wheel;
+        private final Runnable action;
+        private final long period;
+        
+        private long deadline;
+        private volatile boolean cancelled;
+        
+        // Slot membership, only touched by the ticking thread
+        private Timer prev;
+        private Timer next;
+        private int level = -1;
+        private int slot;
+        
+        private Timer(TimingWheel wheel, Runnable action, long deadline, long period) {
+            this.wheel = wheel;
+            this.action = action;
+            this.deadline = deadline;
+            this.period = period;
+        }
+        
+        /**
+         * Stop this timer; a repeating timer does not run again
+         */
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            
+            // Unlink right away when we own the wheel, otherwise its slot drops it later
+            if (Thread.currentThread() == wheel.owner && level >= 0) {
+                wheel.unlink(this);
+            }
+        }
+        
+        // Getters
+        public boolean isCancelled() { return cancelled; }
+        public boolean isRepeating() { return period > 0; }
+        public long getDeadline() { return deadline; }
+    }
+    
+    /**
+     * Create a wheel owned by the given thread
+     */
+    public TimingWheel(Thread owner) {
+        this.wheels = new Timer[LEVELS][SLOTS];
+        this.incoming = new ConcurrentLinkedQueue<>();
+        this.owner = owner;
+    }
+    
+    /**
+     * Schedule an action after a delay, repeating every period ticks if period is positive
+     * A delay below one tick runs on the next tick
+     */
+    public Timer schedule(Runnable action, long delayTicks, long periodTicks) {
+        long delay = Math.max(1, delayTicks);
+        Timer timer;
+        
+        if (Thread.currentThread() == owner) {
+            timer = new Timer(this, action, currentTick + delay, periodTicks);
+            file(timer);
+        } else {
+            // Deadline is fixed relative to the tick that files it
+            timer = new Timer(this, action, delay, periodTicks);
+            incoming.offer(timer);
+        }
+        return timer;
+    }
+    
+    /**
+     * Advance the wheel by one tick and run every timer that is due
+     * Must be called from the owning thread
+     */
+    public void tick() {
+        acceptIncoming();
+        
+        long tick = ++currentTick;
+        
+        // Cascade higher levels whose lower level just wrapped, top-down
+        for (int level = LEVELS - 1; level >= 1; level--) {
+            long lowerMask = (1L << (SLOT_BITS * level)) - 1;
+            if ((tick & lowerMask) == 0) {
+                cascade(level, (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK));
+            }
+        }
+        
+        // Detach the due slot so timers scheduled while running land in fresh slots
+        int slot = (int) (tick & SLOT_MASK);
+        Timer due = wheels[0][slot];
+        wheels[0][slot] = null;
+        for (Timer timer = due; timer != null; timer = timer.next) {
+            // Detached timers are no longer in a slot, so cancelling one only flags it
+            timer.level = -1;
+        }
+        
+        while (due != null) {
+            Timer timer = due;
+            due = timer.next;
+            timer.prev = null;
+            timer.next = null;
+            size--;
+            
+            if (timer.cancelled) {
+                continue;
+            }
+            
+            try {
+                timer.action.run();
+            } catch (Exception e) {
+                // One failing task must not drop the rest of the slot
+                Logger.error("Scheduled task failed: " + e.getMessage());
+            }
+            
+            if (timer.period > 0 && !timer.cancelled) {
+                timer.deadline = tick + timer.period;
+                file(timer);
+            }
+        }
+    }
+    
+    private void acceptIncoming() {
+        Timer timer;
+        while ((timer = incoming.poll()) != null) {
+            if (!timer.cancelled) {
+                // Incoming deadlines hold the delay until they are filed
+                timer.deadline = currentTick + timer.deadline;
+                file(timer);
+            }
+        }
+    }
+    
+    private void cascade(int level, int slot) {
+        Timer timer = wheels[level][slot];
+        wheels[level][slot] = null;
+        
+        while (timer != null) {
+            Timer next = timer.next;
+            timer.prev = null;
+            timer.next = null;
+            timer.level = -1;
+            size--;
+            
+            if (!timer.cancelled) {
+                file(timer);
+            }
+            timer = next;
+        }
+    }
+    
+    /**
+     * Put a timer in the slot matching its distance from the current tick
+     */
+    private void file(Timer timer) {
+        long deadline = timer.deadline;
+        long delta = deadline - currentTick;
+        
+        if (delta >= MAX_SPAN) {
+            // Park in the top level; it is re-filed when that slot cascades
+            deadline = currentTick + MAX_SPAN - 1;
+            delta = MAX_SPAN - 1;
+        }
+        
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        
+        int slot = (int) ((deadline >>> (SLOT_BITS * level)) & SLOT_MASK);
+        Timer head = wheels[level][slot];
+        timer.next = head;
+        timer.prev = null;
+        if (head != null) {
+            head.prev = timer;
+        }
+        wheels[level][slot] = timer;
+        timer.level = level;
+        timer.slot = slot;
+        size++;
+    }
+    
+    private void unlink(Timer timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            wheels[timer.level][timer.slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        
+        timer.prev = null;
+        timer.next = null;
+        timer.level = -1;
+        size--;
+    }
+    
+    // Getters
+    public long getCurrentTick() { return currentTick; }
+    public int getSize() { return size; }
+    public int getIncomingCount() { return incoming.size(); }
+}
@@ -0,0 +1,22 @@
+package dev.hexlord.hexicript.scheduler;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Access to virtual threads
+ * This is the Java 17 version; the jar carries a Java 21 version under
+ * META-INF/versions/21 that the JVM picks when virtual threads exist
+ */
+public final class VirtualThreads {
+    
+    private VirtualThreads() {
+    }
+    
+    /**
+     * Create an executor that starts a virtual thread per task
+     * @return Always null, since virtual threads require Java 21 or newer
+     */
+    public static ExecutorService newExecutor(String threadName) {
+        return null;
+    }
+}
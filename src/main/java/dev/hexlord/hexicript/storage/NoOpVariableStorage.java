@@ -0,0 +1,46 @@
+package dev.hexlord.hexicript.storage;
+
+import dev.hexlord.hexicript.core.variables.VariableKey;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Variable storage that keeps nothing
+ * Used when no variable backend is configured
+ */
+public class NoOpVariableStorage implements VariableStorage {
+    
+    @Override
+    public void load(BiConsumer<VariableKey, Object> consumer) {
+        // Nothing persisted
+    }
+    
+    @Override
+    public void write(VariableKey key, Object value) {
+        // Nothing persisted
+    }
+    
+    @Override
+    public void delete(VariableKey key) {
+        // Nothing persisted
+    }
+    
+    @Override
+    public void flush() {
+        // Nothing pending
+    }
+    
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+    
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("backend", "none");
+        return stats;
+    }
+}
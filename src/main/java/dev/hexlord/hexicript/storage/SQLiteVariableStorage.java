@@ -0,0 +1,364 @@
+package dev.hexlord.hexicript.storage;
+
+import dev.hexlord.hexicript.core.variables.PersistentMap;
+import dev.hexlord.hexicript.core.variables.VariableKey;
+import dev.hexlord.hexicript.core.variables.VariableManager;
+import dev.hexlord.hexicript.utils.Logger;
+import org.bukkit.Bukkit;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Write-behind SQLite backend for script variables
+ *
+ * Changes are collected in a dirty map keyed by variable, so repeated writes
+ * to the same key between flushes collapse into one row update. A single
+ * background thread drains the map in batched transactions. When the dirty
+ * map reaches its bound, writers wait briefly for the flusher and then flush
+ * on their own thread rather than letting the backlog grow without limit.
+ * The main thread never waits or touches the database: it only wakes the
+ * flusher, and the backlog may run past its bound until that catches up.
+ */
+public class SQLiteVariableStorage implements VariableStorage {
+    
+    // Marks a pending delete in the dirty map
+    private static final Object TOMBSTONE = new Object();
+    
+    private static final String CREATE_TABLE =
+        "CREATE TABLE IF NOT EXISTS variables (" +
+        "scope TEXT NOT NULL, owner TEXT NOT NULL, name TEXT NOT NULL, value TEXT NOT NULL, " +
+        "PRIMARY KEY (scope, owner, name)) WITHOUT ROWID";
+    private static final String UPSERT =
+        "INSERT OR REPLACE INTO variables (scope, owner, name, value) VALUES (?, ?, ?, ?)";
+    private static final String DELETE =
+        "DELETE FROM variables WHERE scope = ? AND owner = ? AND name = ?";
+    private static final String SELECT_ALL =
+        "SELECT scope, owner, name, value FROM variables";
+    
+    private final File databaseFile;
+    private final int batchSize;
+    private final int maxDirtyEntries;
+    private final long backpressureTimeoutMs;
+    
+    private final ConcurrentHashMap<VariableKey, Object> dirty;
+    private final ScheduledExecutorService writer;
+    private final Object flushLock = new Object();
+    private final Object drainedSignal = new Object();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Connection connection;
+    private volatile boolean closed = false;
+    
+    // Statistics
+    private final AtomicLong coalescedWrites = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong flushedBatches = new AtomicLong();
+    private final AtomicLong backpressureEvents = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    
+    public SQLiteVariableStorage(File databaseFile, long flushIntervalMs, int batchSize,
+                                 int maxDirtyEntries, long backpressureTimeoutMs) throws SQLException {
+        this.databaseFile = databaseFile;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxDirtyEntries = Math.max(1, maxDirtyEntries);
+        this.backpressureTimeoutMs = Math.max(0, backpressureTimeoutMs);
+        this.dirty = new ConcurrentHashMap<>();
+        
+        File parent = databaseFile.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        
+        this.connection = openConnection();
+        
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "hexicript-variable-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(10, flushIntervalMs);
+        writer.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        
+        Logger.info("SQLite variable storage opened at " + databaseFile.getPath());
+    }
+    
+    /**
+     * Open the database and create the schema
+     */
+    private Connection openConnection() throws SQLException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("SQLite JDBC driver is not available", e);
+        }
+        
+        Connection conn = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+            statement.execute(CREATE_TABLE);
+        }
+        conn.setAutoCommit(false);
+        conn.commit();
+        return conn;
+    }
+    
+    @Override
+    public void load(BiConsumer<VariableKey, Object> consumer) {
+        synchronized (flushLock) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery(SELECT_ALL)) {
+                int loaded = 0;
+                while (rows.next()) {
+                    VariableKey key = new VariableKey(
+                        VariableManager.VariableType.valueOf(rows.getString(1)),
+                        rows.getString(2),
+                        rows.getString(3)
+                    );
+                    try {
+                        consumer.accept(key, VariableSerializer.deserialize(rows.getString(4)));
+                        loaded++;
+                    } catch (Exception e) {
+                        Logger.warning("Skipping unreadable stored variable " + key + ": " + e.getMessage());
+                    }
+                }
+                connection.commit();
+                Logger.info("Loaded " + loaded + " persisted variables from SQLite");
+            } catch (SQLException e) {
+                Logger.error("Failed to load variables from SQLite: " + e.getMessage());
+            }
+        }
+    }
+    
+    @Override
+    public void write(VariableKey key, Object value) {
+        enqueue(key, value != null ? snapshot(value) : TOMBSTONE);
+    }
+    
+    @Override
+    public void delete(VariableKey key) {
+        enqueue(key, TOMBSTONE);
+    }
+    
+    /**
+     * Add a change to the dirty map, coalescing with any pending change to the same key
+     */
+    private void enqueue(VariableKey key, Object value) {
+        if (dirty.put(key, value) != null) {
+            coalescedWrites.incrementAndGet();
+            return;
+        }
+        
+        if (dirty.size() > maxDirtyEntries) {
+            applyBackpressure();
+        }
+    }
+    
+    /**
+     * Wait for the background writer to drain, then fall back to flushing on the caller
+     * On the main thread this only wakes the writer
+     */
+    private void applyBackpressure() {
+        backpressureEvents.incrementAndGet();
+        
+        if (!closed && flushRequested.compareAndSet(false, true)) {
+            try {
+                writer.execute(() -> {
+                    flushRequested.set(false);
+                    flushQuietly();
+                });
+            } catch (RejectedExecutionException e) {
+                // Closing; close() flushes what is left
+                flushRequested.set(false);
+            }
+        }
+        
+        if (Bukkit.isPrimaryThread()) {
+            return;
+        }
+        
+        long deadline = System.currentTimeMillis() + backpressureTimeoutMs;
+        synchronized (drainedSignal) {
+            long remaining;
+            while (dirty.size() > maxDirtyEntries && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    drainedSignal.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        
+        if (dirty.size() > maxDirtyEntries) {
+            Logger.debug("Variable write backlog is full, flushing on " + Thread.currentThread().getName());
+            flushQuietly();
+        }
+    }
+    
+    /**
+     * Copy mutable containers so the writer thread never sees them change mid-serialization
+     */
+    private Object snapshot(Object value) {
+        if (value instanceof Map && !(value instanceof PersistentMap)) {
+            return new LinkedHashMap<>((Map<?, ?>) value);
+        }
+        return value;
+    }
+    
+    @Override
+    public void flush() {
+        synchronized (flushLock) {
+            if (dirty.isEmpty()) {
+                return;
+            }
+            
+            List<Map.Entry<VariableKey, Object>> batch = new ArrayList<>(Math.min(dirty.size(), batchSize));
+            Iterator<VariableKey> keys = dirty.keySet().iterator();
+            
+            while (keys.hasNext()) {
+                VariableKey key = keys.next();
+                Object value = dirty.remove(key);
+                if (value != null) {
+                    batch.add(Map.entry(key, value));
+                }
+                
+                if (batch.size() >= batchSize) {
+                    writeBatch(batch);
+                    batch.clear();
+                }
+            }
+            
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+        }
+        
+        synchronized (drainedSignal) {
+            drainedSignal.notifyAll();
+        }
+    }
+    
+    /**
+     * Write one batch of changes in a single transaction
+     */
+    private void writeBatch(List<Map.Entry<VariableKey, Object>> batch) {
+        try (PreparedStatement upsert = connection.prepareStatement(UPSERT);
+             PreparedStatement delete = connection.prepareStatement(DELETE)) {
+            
+            for (Map.Entry<VariableKey, Object> entry : batch) {
+                VariableKey key = entry.getKey();
+                if (entry.getValue() == TOMBSTONE) {
+                    delete.setString(1, key.getType().name());
+                    delete.setString(2, key.getOwner());
+                    delete.setString(3, key.getName());
+                    delete.addBatch();
+                } else {
+                    upsert.setString(1, key.getType().name());
+                    upsert.setString(2, key.getOwner());
+                    upsert.setString(3, key.getName());
+                    upsert.setString(4, VariableSerializer.serialize(entry.getValue()));
+                    upsert.addBatch();
+                }
+            }
+            
+            upsert.executeBatch();
+            delete.executeBatch();
+            connection.commit();
+            
+            flushedRows.addAndGet(batch.size());
+            flushedBatches.incrementAndGet();
+            
+        } catch (Exception e) {
+            failedFlushes.incrementAndGet();
+            Logger.error("Failed to write " + batch.size() + " variables to SQLite: " + e.getMessage());
+            
+            try {
+                connection.rollback();
+            } catch (SQLException ignored) {
+                // Connection is unusable, the entries are requeued below
+            }
+            
+            // Requeue unless a newer value arrived in the meantime
+            for (Map.Entry<VariableKey, Object> entry : batch) {
+                dirty.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+    
+    /**
+     * Flush without letting exceptions escape to the scheduler
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            Logger.error("Variable flush failed: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        
+        // Final flush on the closing thread
+        flush();
+        
+        if (!dirty.isEmpty()) {
+            Logger.error(dirty.size() + " variable changes could not be written to SQLite");
+        }
+        
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            Logger.error("Failed to close SQLite variable storage: " + e.getMessage());
+        }
+        
+        Logger.info("SQLite variable storage closed.");
+    }
+    
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("backend", "sqlite");
+        stats.put("pending_writes", dirty.size());
+        stats.put("coalesced_writes", coalescedWrites.get());
+        stats.put("flushed_rows", flushedRows.get());
+        stats.put("flushed_batches", flushedBatches.get());
+        stats.put("backpressure_events", backpressureEvents.get());
+        stats.put("failed_flushes", failedFlushes.get());
+        return stats;
+    }
+}
@@ -0,0 +1,120 @@
+package dev.hexlord.hexicript.storage;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dev.hexlord.hexicript.utils.Logger;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts variable values to and from a compact tagged JSON form
+ * Each value is wrapped in a single-key object whose key names the type,
+ * so numbers keep their exact Java type across a restart
+ */
+public final class VariableSerializer {
+    
+    private VariableSerializer() {
+    }
+    
+    /**
+     * Serialize a variable value
+     */
+    public static String serialize(Object value) {
+        return toJson(value).toString();
+    }
+    
+    /**
+     * Deserialize a variable value
+     */
+    public static Object deserialize(String data) {
+        return fromJson(JsonParser.parseString(data));
+    }
+    
+    private static JsonElement toJson(Object value) {
+        JsonObject tagged = new JsonObject();
+        
+        if (value instanceof String) {
+            tagged.addProperty("s", (String) value);
+        } else if (value instanceof Integer) {
+            tagged.addProperty("i", (Integer) value);
+        } else if (value instanceof Long) {
+            tagged.addProperty("l", (Long) value);
+        } else if (value instanceof Number) {
+            tagged.addProperty("d", ((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            tagged.addProperty("b", (Boolean) value);
+        } else if (value instanceof Map) {
+            JsonObject entries = new JsonObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                entries.add(String.valueOf(entry.getKey()), toJson(entry.getValue()));
+            }
+            tagged.add("m", entries);
+        } else if (value instanceof Iterable) {
+            JsonArray elements = new JsonArray();
+            for (Object element : (Iterable<?>) value) {
+                elements.add(toJson(element));
+            }
+            tagged.add("a", elements);
+        } else if (value instanceof OfflinePlayer) {
+            // Player handles cannot outlive the session, keep the name
+            tagged.addProperty("s", ((OfflinePlayer) value).getName());
+        } else if (value instanceof ConfigurationSerializable) {
+            Map<String, Object> data = new LinkedHashMap<>(((ConfigurationSerializable) value).serialize());
+            data.put(ConfigurationSerialization.SERIALIZED_TYPE_KEY,
+                     ConfigurationSerialization.getAlias(((ConfigurationSerializable) value).getClass()));
+            tagged.add("o", toJson(data).getAsJsonObject().get("m"));
+        } else {
+            Logger.debug("Persisting unsupported variable type " + value.getClass().getName() + " as text");
+            tagged.addProperty("s", String.valueOf(value));
+        }
+        
+        return tagged;
+    }
+    
+    private static Object fromJson(JsonElement element) {
+        JsonObject tagged = element.getAsJsonObject();
+        Map.Entry<String, JsonElement> entry = tagged.entrySet().iterator().next();
+        JsonElement value = entry.getValue();
+        
+        switch (entry.getKey()) {
+            case "s":
+                return value.getAsString();
+            case "i":
+                return value.getAsInt();
+            case "l":
+                return value.getAsLong();
+            case "d":
+                return value.getAsDouble();
+            case "b":
+                return value.getAsBoolean();
+            case "m":
+                return readMap(value.getAsJsonObject());
+            case "a":
+                List<Object> list = new ArrayList<>();
+                for (JsonElement child : value.getAsJsonArray()) {
+                    list.add(fromJson(child));
+                }
+                return list;
+            case "o":
+                return ConfigurationSerialization.deserializeObject(readMap(value.getAsJsonObject()));
+            default:
+                throw new IllegalArgumentException("Unknown variable type tag: " + entry.getKey());
+        }
+    }
+    
+    private static Map<String, Object> readMap(JsonObject entries) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonElement> child : entries.entrySet()) {
+            map.put(child.getKey(), fromJson(child.getValue()));
+        }
+        return map;
+    }
+}
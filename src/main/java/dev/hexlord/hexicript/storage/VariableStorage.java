@@ -0,0 +1,72 @@
+package dev.hexlord.hexicript.storage;
+
+import dev.hexlord.hexicript.HexicriptPlugin;
+import dev.hexlord.hexicript.core.variables.VariableKey;
+import dev.hexlord.hexicript.utils.Logger;
+
+import java.io.File;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Persistence backend for script variables
+ * The variable manager keeps the hot copy in memory and forwards every
+ * change here; implementations decide when and how it reaches disk
+ */
+public interface VariableStorage {
+    
+    /**
+     * Load every persisted variable into the given consumer
+     */
+    void load(BiConsumer<VariableKey, Object> consumer);
+    
+    /**
+     * Record a new value for a variable
+     */
+    void write(VariableKey key, Object value);
+    
+    /**
+     * Record the removal of a variable
+     */
+    void delete(VariableKey key);
+    
+    /**
+     * Push all pending changes to disk
+     */
+    void flush();
+    
+    /**
+     * Flush pending changes and release the backend
+     */
+    void close();
+    
+    /**
+     * Get backend statistics for diagnostics
+     */
+    Map<String, Object> getStatistics();
+    
+    /**
+     * Create the storage backend selected by storage.type in config.yml
+     */
+    static VariableStorage create(HexicriptPlugin plugin) {
+        var config = plugin.getConfigManager().getConfig();
+        String type = config.getString("storage.type", "YAML").toUpperCase();
+        
+        if (type.equals("SQLITE")) {
+            try {
+                File file = new File(plugin.getDataFolder(), config.getString("storage.sqlite.file", "data/variables.db"));
+                return new SQLiteVariableStorage(
+                    file,
+                    config.getLong("storage.sqlite.flush_interval_ms", 1000),
+                    config.getInt("storage.sqlite.batch_size", 500),
+                    config.getInt("storage.sqlite.max_dirty_entries", 10000),
+                    config.getLong("storage.sqlite.backpressure_timeout_ms", 50)
+                );
+            } catch (Exception e) {
+                Logger.error("Failed to open SQLite variable storage, variables will not be persisted: " + e.getMessage());
+            }
+        }
+        
+        return new NoOpVariableStorage();
+    }
+}
@@ -0,0 +1,21 @@
+package dev.hexlord.hexicript.scheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads
+ * Java 21 version, packaged under META-INF/versions/21
+ */
+public final class VirtualThreads {
+    
+    private VirtualThreads() {
+    }
+    
+    /**
+     * Create an executor that starts a virtual thread per task
+     */
+    public static ExecutorService newExecutor(String threadName) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(threadName + "-", 1).factory());
+    }
+}
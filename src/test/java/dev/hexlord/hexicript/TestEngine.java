@@ -0,0 +1,143 @@
+package dev.hexlord.hexicript;
+
+import dev.hexlord.hexicript.config.ConfigManager;
+import dev.hexlord.hexicript.core.ScriptEngine;
+import dev.hexlord.hexicript.core.script.Script;
+import dev.hexlord.hexicript.scheduler.ScriptScheduler;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Script engine and scheduler on a mocked plugin for unit tests
+ *
+ * The thread that creates it is the main thread, and {@link #tick()} runs one
+ * server tick of the scheduler on it. Persistent tasks are off unless the
+ * configuration turns them on.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public final class TestEngine implements AutoCloseable {
+    
+    private final HexicriptPlugin plugin;
+    private final YamlConfiguration config;
+    private final ScriptScheduler scheduler;
+    private final ScriptEngine engine;
+    private Runnable tickTask;
+    
+    /**
+     * Create an engine with the default configuration
+     */
+    public TestEngine() {
+        this(config -> { });
+    }
+    
+    /**
+     * Create an engine
+     * @param configure Changes to the configuration, applied before anything reads it
+     * @param dataFolder The plugin data folder
+     */
+    public TestEngine(Consumer<YamlConfiguration> configure, File dataFolder) {
+        TestServer.install();
+        
+        this.config = new YamlConfiguration();
+        config.set("scheduler.persistent.enabled", false);
+        configure.accept(config);
+        
+        ConfigManager configManager = mock(ConfigManager.class, withSettings().stubOnly());
+        when(configManager.getConfig()).thenReturn(config);
+        this.plugin = mock(HexicriptPlugin.class, withSettings().stubOnly());
+        when(plugin.getConfigManager()).thenReturn(configManager);
+        when(plugin.getDataFolder()).thenReturn(dataFolder);
+        
+        this.scheduler = new ScriptScheduler(plugin);
+        when(plugin.getScheduler()).thenReturn(scheduler);
+        this.engine = new ScriptEngine(plugin);
+        when(plugin.getScriptEngine()).thenReturn(engine);
+        when(plugin.getVariableManager()).thenReturn(engine.getVariableManager());
+        
+        // The scheduler's tick task is run by hand instead of by the server
+        when(Bukkit.getScheduler().runTaskTimer(any(Plugin.class), any(Runnable.class), anyLong(), anyLong()))
+            .thenAnswer(invocation -> {
+                tickTask = invocation.getArgument(1);
+                return mock(BukkitTask.class, withSettings().stubOnly());
+            });
+        scheduler.start();
+    }
+    
+    /**
+     * Create an engine with a data folder it never writes to
+     */
+    public TestEngine(Consumer<YamlConfiguration> configure) {
+        this(configure, new File("target/test-data"));
+    }
+    
+    /**
+     * Parse a script from source, without activating it
+     */
+    public Script parse(String name, String code) {
+        return new Script(name, code, engine.getParser().parseStatements(code));
+    }
+    
+    /**
+     * Run one server tick
+     */
+    public void tick() {
+        tickTask.run();
+    }
+    
+    /**
+     * Run server ticks, about one per millisecond, until the condition holds
+     * @throws AssertionError If it still does not hold after the timeout
+     */
+    public void tickUntil(BooleanSupplier condition, long timeoutMillis) {
+        waitFor(condition, timeoutMillis, true);
+    }
+    
+    /**
+     * Wait for pool threads until the condition holds, without running ticks
+     * @throws AssertionError If it still does not hold after the timeout
+     */
+    public void awaitWithoutTicks(BooleanSupplier condition, long timeoutMillis) {
+        waitFor(condition, timeoutMillis, false);
+    }
+    
+    private void waitFor(BooleanSupplier condition, long timeoutMillis, boolean ticking) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new AssertionError("Condition not met within " + timeoutMillis + " ms");
+            }
+            if (ticking) {
+                tick();
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+    
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        engine.shutdown();
+    }
+    
+    // Getters
+    public HexicriptPlugin getPlugin() { return plugin; }
+    public YamlConfiguration getConfig() { return config; }
+    public ScriptScheduler getScheduler() { return scheduler; }
+    public ScriptEngine getEngine() { return engine; }
+}
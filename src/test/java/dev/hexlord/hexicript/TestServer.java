@@ -0,0 +1,63 @@
+package dev.hexlord.hexicript;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+
+import java.util.logging.Logger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Mock Bukkit server for unit tests
+ *
+ * Installed once per test run so that code which logs, registers listeners
+ * or asks for the primary thread can run outside a server. There are no
+ * players or worlds, and the thread that last called {@link #install()}
+ * counts as the primary thread.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public final class TestServer {
+    
+    private static Server server;
+    private static volatile Thread primaryThread;
+    
+    private TestServer() {
+    }
+    
+    /**
+     * Install the mock server and make the calling thread the primary thread
+     */
+    public static synchronized Server install() {
+        if (server == null) {
+            // Stub-only mocks keep no invocation history, since the tests call them from many threads
+            server = mock(Server.class, withSettings().stubOnly());
+            ConsoleCommandSender console = mock(ConsoleCommandSender.class, withSettings().stubOnly());
+            when(server.getConsoleSender()).thenReturn(console);
+            when(server.getLogger()).thenReturn(Logger.getLogger("TestServer"));
+            when(server.getPluginManager()).thenReturn(mock(PluginManager.class, withSettings().stubOnly()));
+            when(server.getScheduler()).thenReturn(mock(BukkitScheduler.class, withSettings().stubOnly()));
+            when(server.isPrimaryThread()).thenAnswer(invocation -> Thread.currentThread() == primaryThread);
+            
+            if (Bukkit.getServer() == null) {
+                Bukkit.setServer(server);
+            }
+        }
+        
+        primaryThread = Thread.currentThread();
+        return server;
+    }
+    
+    /**
+     * Make the given thread the primary thread
+     */
+    public static void setPrimaryThread(Thread thread) {
+        primaryThread = thread;
+    }
+}
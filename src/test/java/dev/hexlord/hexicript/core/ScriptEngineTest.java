@@ -0,0 +1,142 @@
+package dev.hexlord.hexicript.core;
+
+import dev.hexlord.hexicript.TestEngine;
+import dev.hexlord.hexicript.core.execution.ExecutionContext;
+import dev.hexlord.hexicript.core.execution.ExecutionResult;
+import dev.hexlord.hexicript.core.script.Script;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class ScriptEngineTest {
+    
+    private static List<CompletableFuture<ExecutionResult>> start(TestEngine test, Script script, int count) {
+        List<CompletableFuture<ExecutionResult>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ExecutionContext context = new ExecutionContext(null, test.getEngine().getVariableManager());
+            futures.add(test.getEngine().executeScript(script, context));
+        }
+        return futures;
+    }
+    
+    private static void assertAllSucceeded(List<CompletableFuture<ExecutionResult>> futures) {
+        for (CompletableFuture<ExecutionResult> future : futures) {
+            assertTrue(future.isDone());
+            ExecutionResult result = future.join();
+            assertFalse(result.isError(), result.getMessage());
+        }
+    }
+    
+    @Test
+    void fiftyThousandExecutionsWaitWithoutHoldingThreads() {
+        int count = 50_000;
+        try (TestEngine test = new TestEngine(config -> {
+            config.set("performance.thread_pool_size", 4);
+            config.set("performance.max_concurrent_scripts", count);
+        })) {
+            Script script = test.parse("waiting", "wait 20 ticks");
+            List<CompletableFuture<ExecutionResult>> futures = start(test, script, count);
+            
+            // Four threads hold 50k executions, so none of them can be blocking one
+            test.awaitWithoutTicks(() -> test.getEngine().getSuspendedExecutionCount() == count, 10_000);
+            assertTrue(futures.stream().noneMatch(CompletableFuture::isDone));
+            
+            test.tickUntil(() -> futures.stream().allMatch(CompletableFuture::isDone), 10_000);
+            assertAllSucceeded(futures);
+            assertEquals(0, test.getEngine().getSuspendedExecutionCount());
+        }
+    }
+    
+    @Test
+    void resumptionsTheSaturatedPoolRefusesAreRetried() throws Exception {
+        int count = 1_000;
+        try (TestEngine test = new TestEngine(config -> {
+            config.set("performance.thread_pool_size", 2);
+            config.set("performance.max_concurrent_scripts", 16);
+            config.set("performance.saturation_wait_ms", 60_000);
+        })) {
+            Script script = test.parse("waiting", "wait 5 ticks");
+            
+            // Off the main thread submissions wait for room, so every execution gets to suspend
+            List<CompletableFuture<ExecutionResult>> futures = new ArrayList<>();
+            Thread submitter = new Thread(() -> futures.addAll(start(test, script, count)));
+            submitter.start();
+            submitter.join();
+            test.awaitWithoutTicks(() -> test.getEngine().getSuspendedExecutionCount() == count, 10_000);
+            
+            // They all wake on the same tick, far more than the pool takes without waiting
+            test.tickUntil(() -> futures.stream().allMatch(CompletableFuture::isDone), 10_000);
+            assertAllSucceeded(futures);
+            assertEquals(0, test.getEngine().getSuspendedExecutionCount());
+        }
+    }
+    
+    @Test
+    void concurrentAdditionsToOneVariableAllCount() {
+        int count = 2_000;
+        try (TestEngine test = new TestEngine(config -> {
+            config.set("performance.thread_pool_size", 4);
+            config.set("performance.max_concurrent_scripts", count);
+        })) {
+            Script script = test.parse("counting", "add 1 to {counter}");
+            List<CompletableFuture<ExecutionResult>> futures = start(test, script, count);
+            
+            test.tickUntil(() -> futures.stream().allMatch(CompletableFuture::isDone), 10_000);
+            assertAllSucceeded(futures);
+            Object counter = test.getEngine().getVariableManager().getVariable("{counter}", context(test));
+            assertEquals(count, ((Number) counter).intValue());
+        }
+    }
+    
+    @Test
+    void failedExecutionPublishesNoWrites() {
+        try (TestEngine test = new TestEngine()) {
+            Script script = test.parse("failing", "set {partial} to 1\nwait \"soon\" ticks");
+            CompletableFuture<ExecutionResult> future = start(test, script, 1).get(0);
+            
+            test.tickUntil(future::isDone, 10_000);
+            assertTrue(future.join().isError());
+            assertNull(test.getEngine().getVariableManager().getVariable("{partial}", context(test)));
+        }
+    }
+    
+    @Test
+    void asyncExecutionsReadTheWorldOnTheMainThread() {
+        World world = mock(World.class, withSettings().stubOnly());
+        AtomicReference<Thread> readBy = new AtomicReference<>();
+        when(world.getLivingEntities()).thenAnswer(invocation -> {
+            readBy.set(Thread.currentThread());
+            return List.of();
+        });
+        
+        try (TestEngine test = new TestEngine()) {
+            when(Bukkit.getWorlds()).thenReturn(List.of(world));
+            Script script = test.parse("looping", "set {before} to 1\nloop all entities:\n    set {inside} to 1");
+            CompletableFuture<ExecutionResult> future = start(test, script, 1).get(0);
+            
+            test.tickUntil(future::isDone, 10_000);
+            assertFalse(future.join().isError(), future.join().getMessage());
+            assertSame(Thread.currentThread(), readBy.get());
+        } finally {
+            when(Bukkit.getWorlds()).thenReturn(List.of());
+        }
+    }
+    
+    private static ExecutionContext context(TestEngine test) {
+        return new ExecutionContext(null, test.getEngine().getVariableManager());
+    }
+}
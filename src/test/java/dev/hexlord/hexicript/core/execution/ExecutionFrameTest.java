@@ -0,0 +1,87 @@
+package dev.hexlord.hexicript.core.execution;
+
+import dev.hexlord.hexicript.core.script.ScriptStatement;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExecutionFrameTest {
+    
+    private static ScriptStatement loop(int children) {
+        ScriptStatement loop = new ScriptStatement(ScriptStatement.Type.LOOP, "loop", 1, 0).setCondition("times:" + children);
+        for (int i = 0; i < children; i++) {
+            loop.addChild(new ScriptStatement(ScriptStatement.Type.ACTION, "action " + i, i + 2, 1));
+        }
+        return loop;
+    }
+    
+    @Test
+    void loopsRunEachPassAndSetTheLoopNumber() {
+        ExecutionContext context = new ExecutionContext(null, null);
+        ExecutionFrame frame = ExecutionFrame.loop(loop(2), null, 3);
+        
+        // A loop starts at the end of its body, so the first back-edge begins iteration one
+        assertFalse(frame.hasNext());
+        int passes = 0;
+        while (frame.nextIteration(context)) {
+            passes++;
+            assertEquals(passes, context.getVariable("loop-number"));
+            frame.next();
+            frame.next();
+            assertFalse(frame.hasNext());
+        }
+        assertEquals(3, passes);
+    }
+    
+    @Test
+    void continueSkipsTheRestOfThePassAndBreakLeavesTheLoop() {
+        ExecutionContext context = new ExecutionContext(null, null);
+        ExecutionFrame frame = ExecutionFrame.loop(loop(3), null, 5);
+        
+        assertTrue(frame.nextIteration(context));
+        frame.next();
+        assertNull(frame.handle(ExecutionResult.continueLoop()));
+        assertFalse(frame.hasNext());
+        
+        assertTrue(frame.nextIteration(context));
+        frame.next();
+        ExecutionResult broken = frame.handle(ExecutionResult.breakLoop());
+        assertTrue(broken.isSuccess());
+        assertEquals("Loop broken", broken.getMessage());
+    }
+    
+    @Test
+    void returnsCancelsAndErrorsLeaveLoopsAndBlocks() {
+        ExecutionResult returned = ExecutionResult.returnValue(7);
+        ExecutionResult cancelled = ExecutionResult.cancel();
+        ExecutionResult failed = ExecutionResult.error("boom");
+        ExecutionFrame loop = ExecutionFrame.loop(loop(1), null, 2);
+        ExecutionFrame block = ExecutionFrame.block(null, loop(1).getChildren(), "Condition executed");
+        
+        for (ExecutionResult result : new ExecutionResult[] { returned, cancelled, failed }) {
+            assertSame(result, loop.handle(result));
+            assertSame(result, block.handle(result));
+        }
+        assertNull(loop.handle(ExecutionResult.success("done")));
+        assertNull(block.handle(ExecutionResult.success("done")));
+    }
+    
+    @Test
+    void scriptsAndFunctionsStopOnlyOnReturnOrError() {
+        ExecutionFrame script = ExecutionFrame.script(loop(1).getChildren());
+        ExecutionFrame function = ExecutionFrame.function(loop(1));
+        
+        for (ExecutionFrame frame : new ExecutionFrame[] { script, function }) {
+            ExecutionResult returned = ExecutionResult.returnValue(1);
+            ExecutionResult failed = ExecutionResult.error("boom");
+            assertSame(returned, frame.handle(returned));
+            assertSame(failed, frame.handle(failed));
+            assertNull(frame.handle(ExecutionResult.cancel()));
+            assertNull(frame.handle(ExecutionResult.success("done")));
+        }
+    }
+}
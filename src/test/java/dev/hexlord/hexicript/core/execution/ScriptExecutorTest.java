@@ -0,0 +1,107 @@
+package dev.hexlord.hexicript.core.execution;
+
+import dev.hexlord.hexicript.TestEngine;
+import dev.hexlord.hexicript.core.script.Script;
+import dev.hexlord.hexicript.core.script.ScriptStatement;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScriptExecutorTest {
+    
+    private static ExecutionContext context(TestEngine test) {
+        return new ExecutionContext(null, test.getEngine().getVariableManager());
+    }
+    
+    private static Object global(TestEngine test, String name) {
+        return test.getEngine().getVariableManager().getVariable(name, context(test));
+    }
+    
+    /**
+     * Run server ticks until an execution finishes
+     * @return How many ticks it took
+     */
+    private static int ticksUntilDone(TestEngine test, CompletableFuture<ExecutionResult> future) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        int ticks = 0;
+        while (!future.isDone()) {
+            assertTrue(System.nanoTime() - deadline < 0, "Execution did not finish within 30 s");
+            test.tick();
+            ticks++;
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return ticks;
+    }
+    
+    /**
+     * Parse "outer" with a loop nested in its first loop
+     * The parser only nests one level deep, so the inner loop is attached by hand
+     */
+    private static Script nestedLoops(TestEngine test) {
+        Script script = test.parse("outer", "loop 3 times:\n    add 10 to {total}");
+        ScriptStatement inner = test.parse("inner", "loop 4 times:\n    add 1 to {total}").getStatements().get(0);
+        script.getStatements().get(0).addChild(inner);
+        return script;
+    }
+    
+    @Test
+    void nestedLoopsRunEveryIteration() {
+        try (TestEngine test = new TestEngine()) {
+            CompletableFuture<ExecutionResult> future = test.getEngine().executeScript(nestedLoops(test), context(test));
+            
+            ticksUntilDone(test, future);
+            assertFalse(future.join().isError(), future.join().getMessage());
+            assertEquals(3 * (10 + 4), ((Number) global(test, "{total}")).intValue());
+        }
+    }
+    
+    @Test
+    void nestedLoopsResumeWhereTheyYielded() {
+        try (TestEngine test = new TestEngine(config -> config.set("performance.max_loops_per_tick", 2))) {
+            CompletableFuture<ExecutionResult> future = test.getEngine().executeScript(nestedLoops(test), context(test));
+            
+            // 15 back-edges at 2 per tick
+            assertTrue(ticksUntilDone(test, future) >= 7);
+            assertFalse(future.join().isError(), future.join().getMessage());
+            assertEquals(3 * (10 + 4), ((Number) global(test, "{total}")).intValue());
+        }
+    }
+    
+    @Test
+    void anErrorInALoopStopsTheExecution() {
+        try (TestEngine test = new TestEngine(config -> config.set("performance.optimization.enable_async_execution", false))) {
+            Script script = test.parse("failing", "loop 5 times:\n    add 1 to {runs}\n    wait \"soon\" ticks\nset {after} to 1");
+            CompletableFuture<ExecutionResult> future = test.getEngine().executeScript(script, context(test));
+            
+            ticksUntilDone(test, future);
+            assertTrue(future.join().isError());
+            assertEquals(1, ((Number) global(test, "{runs}")).intValue());
+            assertNull(global(test, "{after}"));
+        }
+    }
+    
+    @Test
+    void hundredThousandIterationsSpreadAcrossTicks() {
+        int iterations = 100_000;
+        try (TestEngine test = new TestEngine(config -> {
+            config.set("performance.max_loops_per_tick", 1_000);
+            config.set("performance.script_tick_budget_ms", 10_000);
+            config.set("performance.max_execution_time_ms", 60_000);
+        })) {
+            Script script = test.parse("long", "loop " + iterations + " times:\n    add 1 to {count}");
+            CompletableFuture<ExecutionResult> future = test.getEngine().executeScript(script, context(test));
+            
+            // Every 1,000 iterations the loop gives up the tick, and none are lost
+            assertTrue(ticksUntilDone(test, future) >= iterations / 1_000);
+            assertFalse(future.join().isError(), future.join().getMessage());
+            assertEquals(iterations, ((Number) global(test, "{count}")).intValue());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package dev.hexlord.hexicript.core.memory;
+
+import dev.hexlord.hexicript.core.script.Script;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ScriptMemoryTrackerTest {
+    
+    private ScriptMemoryTracker tracker;
+    
+    @BeforeEach
+    void setUp() {
+        tracker = new ScriptMemoryTracker(new YamlConfiguration());
+    }
+    
+    private static Script script(String name) {
+        return new Script(name, "", List.of());
+    }
+    
+    @Test
+    void templateBytesAreReplacedOnEachCompile() {
+        for (int i = 0; i < 5; i++) {
+            Script script = script("example");
+            tracker.recordCompiled(script);
+            tracker.recordTemplates(script, 1_000);
+        }
+        assertEquals(1_000, tracker.getUsage("example").getTemplateBytes());
+        
+        // A version without variables holds no templates
+        Script script = script("example");
+        tracker.recordCompiled(script);
+        tracker.recordTemplates(script, 0);
+        assertEquals(0, tracker.getUsage("example").getTemplateBytes());
+    }
+    
+    @Test
+    void releasedScriptLeavesNoUsageBehind() {
+        Script oneOff = script("inline-1");
+        tracker.recordCompiled(oneOff);
+        tracker.release(oneOff);
+        assertNull(tracker.getUsage("inline-1"));
+        
+        // Releasing an old version keeps the usage of the one that replaced it
+        Script old = script("example");
+        tracker.recordCompiled(old);
+        tracker.recordCompiled(script("example"));
+        tracker.release(old);
+        assertNotNull(tracker.getUsage("example"));
+    }
+}
@@ -0,0 +1,95 @@
+package dev.hexlord.hexicript.core.variables;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PersistentMapTest {
+    
+    @Test
+    void updatesLeaveEarlierVersionsUnchanged() {
+        PersistentMap<String, Object> first = PersistentMap.<String, Object>empty().plus("a", 1).plus("b", 2);
+        PersistentMap<String, Object> second = first.plus("a", 3).minus("b").plus("c", 4);
+        
+        assertEquals(Map.of("a", 1, "b", 2), first);
+        assertEquals(Map.of("a", 3, "c", 4), second);
+        assertSame(second, second.minus("missing"));
+        assertSame(PersistentMap.empty(), second.minus("a").minus("c"));
+    }
+    
+    @Test
+    void keepsKeysWithEqualHashes() {
+        // "Aa" and "BB" share a hash code
+        PersistentMap<String, Object> map = PersistentMap.<String, Object>empty().plus("Aa", 1).plus("BB", 2).plus("C#", 3);
+        
+        assertEquals(3, map.size());
+        assertEquals(1, map.get("Aa"));
+        assertEquals(2, map.get("BB"));
+        assertEquals(Map.of("BB", 2, "C#", 3), map.minus("Aa"));
+    }
+    
+    @Test
+    void copyOfLeavesOutNullValues() {
+        Map<String, Object> source = new HashMap<>();
+        source.put("1", "first");
+        source.put("2", null);
+        source.put(null, "third");
+        
+        PersistentMap<String, Object> copy = PersistentMap.copyOf(source);
+        
+        assertEquals(Map.of("1", "first"), copy);
+        assertThrows(NullPointerException.class, () -> copy.plus("2", null));
+        assertNull(copy.get(null));
+    }
+    
+    @Test
+    void matchesHashMapUnderRandomUpdates() {
+        Random random = new Random(7);
+        Map<String, Object> expected = new HashMap<>();
+        PersistentMap<String, Object> map = PersistentMap.empty();
+        
+        for (int i = 0; i < 20_000; i++) {
+            String key = "key" + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.minus(key);
+            } else {
+                expected.put(key, i);
+                map = map.plus(key, i);
+            }
+        }
+        
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, map);
+        assertTrue(map.entrySet().stream().allMatch(entry -> entry.getValue().equals(expected.get(entry.getKey()))));
+    }
+    
+    @Test
+    void snapshotsFiftyThousandVariables() {
+        int count = 50_000;
+        int snapshots = 10_000;
+        
+        PersistentMap<String, Object> map = PersistentMap.empty();
+        for (int i = 0; i < count; i++) {
+            map = map.plus("var::" + i, i);
+        }
+        
+        // Each write yields a new version while every earlier one stays readable
+        PersistentMap<String, Object> base = map;
+        for (int i = 0; i < snapshots; i++) {
+            map = map.plus("var::" + (i % count), -i);
+        }
+        
+        assertEquals(count, map.size());
+        assertEquals(0, base.get("var::0"));
+        assertEquals(-(snapshots - 1), map.get("var::" + (snapshots - 1)));
+    }
+}
@@ -0,0 +1,154 @@
+package dev.hexlord.hexicript.events;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * Feeds a recorded event trace back into the event router, without a server
+ *
+ * A trace is read once into rebuilt Bukkit events on stub players and
+ * worlds, and can then be replayed any number of times. Replays run at full
+ * speed by default, timing only the dispatch, or paced to the gaps recorded
+ * between events. Events are replayed in the recorded order on the calling
+ * thread and the stubs are the same for every replay, so runs over the same
+ * trace are repeatable. A trace cut short, e.g. by a crash, replays up to its
+ * last complete event.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public class EventReplayer {
+    
+    private final TraceStubs stubs = new TraceStubs();
+    
+    /**
+     * One rebuilt event and how long after the previous one it was fired
+     */
+    public static final class Entry {
+        private final EventBinding binding;
+        private final Event event;
+        private final long delayMicros;
+        
+        private Entry(EventBinding binding, Event event, long delayMicros) {
+            this.binding = binding;
+            this.event = event;
+            this.delayMicros = delayMicros;
+        }
+        
+        // Getters
+        public EventBinding getBinding() { return binding; }
+        public Event getEvent() { return event; }
+        public long getDelayMicros() { return delayMicros; }
+    }
+    
+    /**
+     * Outcome of one replay
+     */
+    public static final class Result {
+        private final int events;
+        private final long nanos;
+        
+        private Result(int events, long nanos) {
+            this.events = events;
+            this.nanos = nanos;
+        }
+        
+        /**
+         * Get the dispatch rate of the replay
+         */
+        public double getEventsPerSecond() {
+            return nanos > 0 ? events * (double) TimeUnit.SECONDS.toNanos(1) / nanos : 0;
+        }
+        
+        // Getters
+        public int getEvents() { return events; }
+        public long getNanos() { return nanos; }
+    }
+    
+    /**
+     * Read a trace file
+     */
+    public List<Entry> read(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return read(in);
+        }
+    }
+    
+    /**
+     * Read a trace into rebuilt events
+     */
+    public List<Entry> read(InputStream source) throws IOException {
+        DataInputStream stream = new DataInputStream(new BufferedInputStream(source, 1 << 16));
+        EventTrace.Input in = new EventTrace.Input(stream);
+        List<Entry> entries = new ArrayList<>();
+        
+        if (stream.readInt() != EventTrace.MAGIC) {
+            throw new IOException("Unrecognized event trace");
+        }
+        byte version = stream.readByte();
+        if (version != EventTrace.VERSION) {
+            throw new IOException("Event trace format " + version + " is not supported, record it again");
+        }
+        
+        try {
+            while (true) {
+                String eventType = in.readString();
+                long delayMicros = in.readVarLong();
+                String playerName = in.readString();
+                
+                EventBinding binding = EventBinding.forType(eventType);
+                EventTrace.Codec codec = EventTrace.forType(eventType);
+                if (binding == null || codec == null) {
+                    throw new IOException("Corrupt event trace, unknown event type " + eventType);
+                }
+                
+                Player player = playerName != null ? stubs.player(playerName) : null;
+                entries.add(new Entry(binding, codec.reader.read(in, player, stubs), delayMicros));
+            }
+        } catch (EOFException e) {
+            // End of the trace, or an event torn by a crash; keep what was read
+        }
+        return entries;
+    }
+    
+    /**
+     * Replay events into a router at full speed
+     */
+    public Result replay(List<Entry> entries, EventRouter router) {
+        return replay(entries, router::dispatch, false);
+    }
+    
+    /**
+     * Replay events into any consumer
+     * @param paced Wait out the recorded gaps between events instead of running at full speed
+     */
+    public Result replay(List<Entry> entries, BiConsumer<EventBinding, Event> sink, boolean paced) {
+        long start = System.nanoTime();
+        long due = start;
+        
+        for (Entry entry : entries) {
+            if (paced) {
+                due += TimeUnit.MICROSECONDS.toNanos(entry.delayMicros);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            sink.accept(entry.binding, entry.event);
+        }
+        return new Result(entries.size(), System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,137 @@
+package dev.hexlord.hexicript.events;
+
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.block.BlockEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventTraceTest {
+    
+    @Test
+    void namesAndTextRoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EventTrace.Output out = new EventTrace.Output(new DataOutputStream(bytes));
+        out.writeString("player_chat");
+        out.writeString("Steve");
+        out.writeText("hello there ✓");
+        out.writeString("player_chat");
+        out.writeString(null);
+        out.writeText(null);
+        out.writeText("");
+        out.writeSigned(-70000);
+        out.writeVarLong(Long.MAX_VALUE);
+        
+        EventTrace.Input in = new EventTrace.Input(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals("player_chat", in.readString());
+        assertEquals("Steve", in.readString());
+        assertEquals("hello there ✓", in.readText());
+        assertEquals("player_chat", in.readString());
+        assertNull(in.readString());
+        assertNull(in.readText());
+        assertEquals("", in.readText());
+        assertEquals(-70000, in.readSigned());
+        assertEquals(Long.MAX_VALUE, in.readVarLong());
+    }
+    
+    @Test
+    void repeatedNamesAreInternedButTextIsNot() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EventTrace.Output out = new EventTrace.Output(new DataOutputStream(bytes));
+        String message = "a chat message that is only ever said once in a while";
+        
+        out.writeString("world_nether");
+        int first = bytes.size();
+        out.writeString("world_nether");
+        assertEquals(1, bytes.size() - first);
+        
+        int before = bytes.size();
+        out.writeText(message);
+        int once = bytes.size() - before;
+        out.writeText(message);
+        assertEquals(once, bytes.size() - before - once);
+        assertTrue(once > message.length());
+    }
+    
+    @Test
+    void recordedTrafficReplaysAsItWasFired(@TempDir File folder) throws IOException {
+        int count = 200_000;
+        List<SampleTraffic.Fired> traffic = SampleTraffic.generate(count, 14);
+        File trace = new File(folder, "sample.hxtrace");
+        
+        EventRecorder recorder = SampleTraffic.record(traffic, trace);
+        assertEquals(count, recorder.getEventCount());
+        // Names are written once, so the 200k events take a little over 12 bytes each
+        assertTrue(trace.length() < count * 16L, trace.length() + " bytes");
+        
+        List<EventReplayer.Entry> entries = new EventReplayer().read(trace);
+        assertEquals(count, entries.size());
+        for (int i = 0; i < count; i++) {
+            SampleTraffic.Fired fired = traffic.get(i);
+            EventReplayer.Entry entry = entries.get(i);
+            assertEquals(attributes(fired.binding, fired.event), attributes(entry.getBinding(), entry.getEvent()), "event " + i);
+            assertFalse(entry.getDelayMicros() < 0);
+        }
+    }
+    
+    @Test
+    void tracesCutShortReplayUpToTheLastWholeEvent(@TempDir File folder) throws IOException {
+        List<SampleTraffic.Fired> traffic = SampleTraffic.generate(1_000, 14);
+        File trace = new File(folder, "sample.hxtrace");
+        SampleTraffic.record(traffic, trace);
+        
+        // As a crash leaves it, in the middle of a record
+        try (RandomAccessFile file = new RandomAccessFile(trace, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        
+        List<EventReplayer.Entry> entries = new EventReplayer().read(trace);
+        assertTrue(entries.size() < traffic.size() && entries.size() >= traffic.size() - 3, entries.size() + " events");
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(attributes(traffic.get(i).binding, traffic.get(i).event),
+                attributes(entries.get(i).getBinding(), entries.get(i).getEvent()), "event " + i);
+        }
+    }
+    
+    /**
+     * What handlers can see of an event: its type, player, event-* locals and the blocks it happened at
+     */
+    private static List<Object> attributes(EventBinding binding, Event event) {
+        List<Object> values = new ArrayList<>();
+        values.add(binding.getEventType());
+        Player player = binding.getPlayer(event);
+        values.add(player != null ? player.getName() : null);
+        binding.addVariables(event, values);
+        
+        if (event instanceof PlayerMoveEvent) {
+            values.add(position(((PlayerMoveEvent) event).getFrom()));
+            values.add(position(((PlayerMoveEvent) event).getTo()));
+        } else if (event instanceof BlockEvent) {
+            Block block = ((BlockEvent) event).getBlock();
+            values.add(position(new Location(block.getWorld(), block.getX(), block.getY(), block.getZ())));
+        }
+        return values;
+    }
+    
+    private static String position(Location location) {
+        return location.getWorld().getName() + " " + location.getBlockX() + " " + location.getBlockY() + " " + location.getBlockZ();
+    }
+}
@@ -0,0 +1,109 @@
+package dev.hexlord.hexicript.events;
+
+import dev.hexlord.hexicript.TestEngine;
+import dev.hexlord.hexicript.core.ScriptEngine;
+import dev.hexlord.hexicript.core.script.Script;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays recorded event traces into scripts on a stub engine, without a server
+ *
+ * Scripts are activated on a {@link TestEngine}, the script engine on a mocked
+ * plugin, so the real router dispatches the replayed events and the real
+ * executor runs the handlers. The replaying thread is the main thread: handlers
+ * run on it as the events are dispatched, and waits, debounce windows and
+ * batches finish on the ticks run after each replay.
+ *
+ * Run with a trace and the scripts to load to print the throughput of a few
+ * replays, e.g. {@code ReplayDriver traces/evening.hxtrace scripts/*.hxs --runs 10}.
+ * The first runs warm up the JIT, so the later ones are the ones to compare.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+public final class ReplayDriver implements AutoCloseable {
+    
+    // Ticks run after a replay, enough for the debounce windows and batches of most scripts to close
+    private static final int DRAIN_TICKS = 20;
+    
+    private final TestEngine test;
+    private final EventReplayer replayer;
+    
+    public ReplayDriver() {
+        this.test = new TestEngine();
+        this.replayer = new EventReplayer();
+    }
+    
+    /**
+     * Parse and activate a script, replacing an earlier one of the same name
+     */
+    public Script load(String name, String code) {
+        Script script = test.parse(name, code);
+        test.getEngine().activateScript(script);
+        return script;
+    }
+    
+    /**
+     * Read a trace file
+     */
+    public List<EventReplayer.Entry> read(File trace) throws IOException {
+        return replayer.read(trace);
+    }
+    
+    /**
+     * Replay events at full speed, then run ticks until what they started has finished
+     * @return The outcome, timed over the dispatch only
+     */
+    public EventReplayer.Result replay(List<EventReplayer.Entry> entries) {
+        ScriptEngine engine = test.getEngine();
+        EventReplayer.Result result = replayer.replay(entries, engine.getEventRouter());
+        
+        test.tickUntil(() -> engine.getSuspendedExecutionCount() == 0, 60_000);
+        for (int i = 0; i < DRAIN_TICKS; i++) {
+            test.tick();
+        }
+        return result;
+    }
+    
+    @Override
+    public void close() {
+        test.close();
+    }
+    
+    // Getters
+    public ScriptEngine getEngine() { return test.getEngine(); }
+    
+    public static void main(String[] args) throws IOException {
+        List<File> scripts = new ArrayList<>();
+        int runs = 5;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--runs") && i + 1 < args.length) {
+                runs = Integer.parseInt(args[++i]);
+            } else {
+                scripts.add(new File(args[i]));
+            }
+        }
+        if (scripts.isEmpty()) {
+            System.err.println("Usage: ReplayDriver <trace> <script>... [--runs N]");
+            System.exit(2);
+        }
+        
+        try (ReplayDriver driver = new ReplayDriver()) {
+            for (File file : scripts) {
+                driver.load(file.getName().replaceFirst("\\.[^.]*$", ""), Files.readString(file.toPath()));
+            }
+            
+            List<EventReplayer.Entry> entries = driver.read(new File(args[0]));
+            for (int run = 1; run <= runs; run++) {
+                EventReplayer.Result result = driver.replay(entries);
+                System.out.printf("Run %d: %d events in %d ms, %.0f events/s%n", run, result.getEvents(),
+                    result.getNanos() / 1_000_000, result.getEventsPerSecond());
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package dev.hexlord.hexicript.events;
+
+import dev.hexlord.hexicript.core.execution.ExecutionContext;
+import dev.hexlord.hexicript.core.variables.VariableManager;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplayDriverTest {
+    
+    private static final String SCRIPT = String.join("\n",
+        "on block break:",
+        "    add 1 to {breaks}",
+        "on chat:",
+        "    add 1 to {chats}",
+        "on player join:",
+        "    add 1 to {joins}",
+        "on player move (debounce 5 ticks, per player):",
+        "    add 1 to {moves}");
+    
+    @Test
+    void replaysRecordedTrafficIntoScripts(@TempDir File folder) throws IOException {
+        List<SampleTraffic.Fired> traffic = SampleTraffic.generate(200_000, 46);
+        File trace = new File(folder, "sample.hxtrace");
+        SampleTraffic.record(traffic, trace);
+        
+        try (ReplayDriver driver = new ReplayDriver()) {
+            driver.load("counters", SCRIPT);
+            List<EventReplayer.Entry> entries = driver.read(trace);
+            
+            // The first replay warms up the JIT, the second is the one timed
+            driver.replay(entries);
+            EventReplayer.Result result = driver.replay(entries);
+            
+            assertEquals(traffic.size(), result.getEvents());
+            assertEquals(2 * count(traffic, fired -> fired.event instanceof BlockBreakEvent), variable(driver, "{breaks}"));
+            assertEquals(2 * count(traffic, fired -> fired.event instanceof AsyncPlayerChatEvent), variable(driver, "{chats}"));
+            assertEquals(2 * count(traffic, fired -> fired.binding.getEventType().equals("player_join")), variable(driver, "{joins}"));
+            
+            // Per-player windows fold the moves of each player into a few runs
+            long moves = variable(driver, "{moves}");
+            assertTrue(moves > 0 && moves <= 2 * SampleTraffic.PLAYERS * 2, "moves ran " + moves + " times");
+            
+            // Far below what a single core replays, so only a regression of several times fails it
+            assertTrue(result.getEventsPerSecond() > 20_000, "replayed " + (long) result.getEventsPerSecond() + " events/s");
+        }
+    }
+    
+    private static long count(List<SampleTraffic.Fired> traffic, Predicate<SampleTraffic.Fired> filter) {
+        return traffic.stream().filter(filter).count();
+    }
+    
+    private static long variable(ReplayDriver driver, String name) {
+        VariableManager variables = driver.getEngine().getVariableManager();
+        Object value = variables.getVariable(name, new ExecutionContext(null, variables));
+        return value != null ? ((Number) value).longValue() : 0;
+    }
+}
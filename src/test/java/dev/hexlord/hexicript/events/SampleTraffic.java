@@ -0,0 +1,149 @@
+package dev.hexlord.hexicript.events;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded server traffic for recording and replay tests
+ *
+ * A mix of every event type a trace holds, weighted the way a busy server
+ * fires them: mostly player moves, then block changes and chat, and the odd
+ * damage, death, join and leave. Events are built on stub players and worlds
+ * as the server would hand them to the router, and the same seed always
+ * gives the same traffic.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+final class SampleTraffic {
+    
+    static final int PLAYERS = 50;
+    
+    private static final String[] WORLDS = { "world", "world_nether" };
+    private static final Material[] BLOCKS = { Material.STONE, Material.DIRT, Material.GRASS_BLOCK, Material.SAND };
+    private static final String[] CHAT = { "hi", "anyone selling diamonds?", "brb", "gg ✓" };
+    
+    /**
+     * One event as the router dispatches it
+     */
+    static final class Fired {
+        final EventBinding binding;
+        final Event event;
+        
+        private Fired(String eventType, Event event) {
+            this.binding = EventBinding.forType(eventType);
+            this.event = event;
+        }
+        
+        Player player() {
+            return binding.getPlayer(event);
+        }
+    }
+    
+    private SampleTraffic() {
+    }
+    
+    /**
+     * Generate events
+     */
+    static List<Fired> generate(int count, long seed) {
+        Random random = new Random(seed);
+        TraceStubs stubs = new TraceStubs();
+        List<Fired> events = new ArrayList<>(count);
+        Location[] positions = new Location[PLAYERS];
+        
+        for (int i = 0; i < count; i++) {
+            int index = random.nextInt(PLAYERS);
+            Player player = stubs.player("player" + index);
+            if (positions[index] == null) {
+                World world = stubs.world(WORLDS[index % WORLDS.length]);
+                positions[index] = new Location(world, random.nextInt(2000) - 1000 + 0.5, 64, random.nextInt(2000) - 1000 + 0.5);
+            }
+            
+            Location from = positions[index];
+            int kind = random.nextInt(100);
+            if (kind < 70) {
+                // Mostly small steps within a block, now and then into the next one
+                Location to = from.clone().add(random.nextDouble() - 0.5, random.nextInt(8) == 0 ? 1 : 0, random.nextDouble() - 0.5);
+                positions[index] = to;
+                events.add(new Fired("player_move", new PlayerMoveEvent(player, from, to)));
+            } else if (kind < 80) {
+                events.add(new Fired("block_break", new BlockBreakEvent(block(stubs, random, from), player)));
+            } else if (kind < 85) {
+                Block block = block(stubs, random, from);
+                events.add(new Fired("block_place", new BlockPlaceEvent(block, null, block, null, player, true, null)));
+            } else if (kind < 93) {
+                // Some messages repeat, the rest are only said once
+                String message = random.nextBoolean() ? CHAT[random.nextInt(CHAT.length)] : "message " + i;
+                events.add(new Fired("player_chat",
+                    new AsyncPlayerChatEvent(true, player, message, new HashSet<>(Collections.singleton(player)))));
+            } else if (kind < 97) {
+                EntityDamageEvent.DamageCause cause = EntityDamageEvent.DamageCause.values()[random.nextInt(4)];
+                events.add(new Fired("entity_damage", damageEvent(player, cause, random.nextInt(40) / 2.0)));
+            } else if (kind < 98) {
+                events.add(new Fired("player_death", deathEvent(player, player.getName() + " fell from a high place")));
+            } else if (kind < 99) {
+                events.add(new Fired("player_join", new PlayerJoinEvent(player, "")));
+            } else {
+                events.add(new Fired("player_leave", new PlayerQuitEvent(player, "")));
+            }
+        }
+        return events;
+    }
+    
+    private static Block block(TraceStubs stubs, Random random, Location near) {
+        return stubs.block(BLOCKS[random.nextInt(BLOCKS.length)], near.getWorld(),
+            near.getBlockX() + random.nextInt(5) - 2, near.getBlockY() - 1, near.getBlockZ() + random.nextInt(5) - 2);
+    }
+    
+    @SuppressWarnings("deprecation")
+    private static Event damageEvent(Player player, EntityDamageEvent.DamageCause cause, double damage) {
+        return new EntityDamageEvent(player, cause, damage);
+    }
+    
+    @SuppressWarnings("deprecation")
+    private static Event deathEvent(Player player, String message) {
+        return new PlayerDeathEvent(player, new ArrayList<>(), 0, message);
+    }
+    
+    /**
+     * Record events to a trace file, as the router does while dispatching them
+     * @return The finished recording
+     */
+    static EventRecorder record(List<Fired> events, File file) throws IOException {
+        EventRecorder recorder = new EventRecorder(file);
+        try {
+            for (int i = 0; i < events.size(); i++) {
+                Fired fired = events.get(i);
+                recorder.record(fired.binding, fired.event, fired.player());
+                // A server spreads events over ticks; let the writer keep up on a single core
+                if ((i & 1023) == 1023) {
+                    Thread.yield();
+                }
+            }
+        } finally {
+            recorder.close();
+        }
+        return recorder;
+    }
+}
@@ -0,0 +1,126 @@
+package dev.hexlord.hexicript.events;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Stand-ins for the players, worlds and blocks of a replayed trace
+ *
+ * They answer what handlers and their guards ask of an event: names, unique
+ * ids, block types and positions. Players are online and hold every
+ * permission, so permission-guarded handlers run as they would for an
+ * operator. Anything else returns null, zero or false, and messages sent to
+ * a stub player go nowhere. The same name always gives the same object, so
+ * per-player state such as debounce windows behaves as it did live.
+ *
+ * @author hexlorddev
+ * @version 2.0.0
+ */
+final class TraceStubs implements EventTrace.Stubs {
+    
+    private static final String DEFAULT_WORLD = "world";
+    
+    // Values of primitive return types a stub leaves unanswered
+    private static final Map<Class<?>, Object> DEFAULTS = Map.of(
+        boolean.class, false, char.class, '\0', byte.class, (byte) 0, short.class, (short) 0,
+        int.class, 0, long.class, 0L, float.class, 0.0f, double.class, 0.0);
+    
+    private final Map<String, Player> players = new HashMap<>();
+    private final Map<String, World> worlds = new HashMap<>();
+    private Entity entity;
+    
+    /**
+     * Get the stub player of a name
+     */
+    @Override
+    public Player player(String name) {
+        return players.computeIfAbsent(name, this::createPlayer);
+    }
+    
+    @Override
+    public World world(String name) {
+        return worlds.computeIfAbsent(name != null ? name : DEFAULT_WORLD, TraceStubs::createWorld);
+    }
+    
+    /**
+     * Create a stub block; blocks are not cached since events only read them
+     */
+    @Override
+    public Block block(Material type, World world, int x, int y, int z) {
+        return stub(Block.class, "block", (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getType": return type;
+                case "getWorld": return world;
+                case "getX": return x;
+                case "getY": return y;
+                case "getZ": return z;
+                case "getLocation": return new Location(world, x, y, z);
+                default: return null;
+            }
+        });
+    }
+    
+    @Override
+    public Entity entity() {
+        if (entity == null) {
+            entity = stub(Entity.class, "entity", (proxy, method, args) -> null);
+        }
+        return entity;
+    }
+    
+    private Player createPlayer(String name) {
+        // Offline-mode ids, so a name always maps to the same id
+        UUID id = UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(StandardCharsets.UTF_8));
+        return stub(Player.class, name, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                case "getDisplayName": return name;
+                case "getUniqueId": return id;
+                case "isOnline":
+                case "hasPermission": return true;
+                case "getWorld": return world(null);
+                case "getLocation": return new Location(world(null), 0.5, 64, 0.5);
+                default: return null;
+            }
+        });
+    }
+    
+    private static World createWorld(String name) {
+        UUID id = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+        return stub(World.class, name, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getName": return name;
+                case "getUID": return id;
+                default: return null;
+            }
+        });
+    }
+    
+    /**
+     * Create a proxy that answers with the given handler and a default value for anything it leaves null
+     */
+    private static <T> T stub(Class<T> type, String name, InvocationHandler handler) {
+        Object stub = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals": return proxy == args[0];
+                case "hashCode": return System.identityHashCode(proxy);
+                case "toString": return "Stub" + type.getSimpleName() + "{" + name + "}";
+                default:
+                    Object value = handler.invoke(proxy, method, args);
+                    return value != null ? value : DEFAULTS.get(method.getReturnType());
+            }
+        });
+        return type.cast(stub);
+    }
+}
@@ -0,0 +1,252 @@
+package dev.hexlord.hexicript.scheduler;
+
+import dev.hexlord.hexicript.TestEngine;
+import dev.hexlord.hexicript.core.ScriptManager;
+import dev.hexlord.hexicript.core.script.Script;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class PersistentTaskStoreTest {
+    
+    @TempDir
+    Path folder;
+    
+    private static PersistedTask task(int n) {
+        return new PersistedTask(new UUID(7, n), "script" + (n % 10), new String[] { "arg" + n }, null,
+            Collections.emptyMap(), 1_000_000L + n, n % 2 == 0 ? 0 : 50L * n);
+    }
+    
+    private static Map<UUID, PersistedTask> byId(Collection<PersistedTask> tasks) {
+        Map<UUID, PersistedTask> map = new HashMap<>();
+        tasks.forEach(task -> map.put(task.getId(), task));
+        return map;
+    }
+    
+    @Test
+    void tasksSurviveReload() throws Exception {
+        File file = folder.resolve("data/scheduled-tasks.log").toFile();
+        UUID playerId = UUID.randomUUID();
+        PersistedTask withContext = new PersistedTask(UUID.randomUUID(), "arena", new String[] { "a", "b" }, playerId,
+            Map.of("round", 3, "name", "red"), 123_456L, 1_000L);
+        
+        PersistentTaskStore store = new PersistentTaskStore(file);
+        assertTrue(store.load().isEmpty());
+        store.add(withContext);
+        store.add(task(1));
+        store.add(task(2));
+        store.remove(task(1).getId());
+        store.checkpoint(999L);
+        store.close();
+        
+        PersistentTaskStore reloaded = new PersistentTaskStore(file);
+        Map<UUID, PersistedTask> tasks = byId(reloaded.load());
+        reloaded.close();
+        
+        assertEquals(2, tasks.size());
+        assertEquals(999L, reloaded.getLastCheckpoint());
+        assertNull(tasks.get(task(1).getId()));
+        
+        PersistedTask restored = tasks.get(withContext.getId());
+        assertEquals("arena", restored.getScriptName());
+        assertEquals(List.of("a", "b"), List.of(restored.getArgs()));
+        assertEquals(playerId, restored.getPlayerId());
+        assertEquals(3, restored.getVariables().get("round"));
+        assertEquals("red", restored.getVariables().get("name"));
+        assertEquals(123_456L, restored.getDueTime());
+        assertEquals(1_000L, restored.getPeriod());
+        assertTrue(restored.isRepeating());
+    }
+    
+    @Test
+    void tornTailIsDroppedAndLogStaysAppendable() throws Exception {
+        File file = folder.resolve("tasks.log").toFile();
+        
+        PersistentTaskStore store = new PersistentTaskStore(file);
+        store.load();
+        for (int i = 0; i < 5; i++) {
+            store.add(task(i));
+        }
+        store.close();
+        
+        // Cut the last record short, as a crash mid-write would
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        
+        PersistentTaskStore recovered = new PersistentTaskStore(file);
+        Map<UUID, PersistedTask> tasks = byId(recovered.load());
+        assertEquals(4, tasks.size());
+        assertNull(tasks.get(task(4).getId()));
+        
+        recovered.add(task(5));
+        recovered.close();
+        
+        PersistentTaskStore reloaded = new PersistentTaskStore(file);
+        tasks = byId(reloaded.load());
+        reloaded.close();
+        assertEquals(5, tasks.size());
+        assertEquals("arg5", tasks.get(task(5).getId()).getArgs()[0]);
+    }
+    
+    @Test
+    void cleanLogIsNotRewrittenOnLoad() throws Exception {
+        File file = folder.resolve("tasks.log").toFile();
+        
+        PersistentTaskStore store = new PersistentTaskStore(file);
+        store.load();
+        for (int i = 0; i < 20; i++) {
+            store.add(task(i));
+        }
+        store.remove(task(0).getId());
+        store.close();
+        long length = file.length();
+        
+        PersistentTaskStore reloaded = new PersistentTaskStore(file);
+        assertEquals(19, reloaded.load().size());
+        reloaded.close();
+        
+        // The remove record and the task it removed are still there
+        assertEquals(length, file.length());
+    }
+    
+    @Test
+    void logOfMostlyGarbageIsCompactedOnLoad() throws Exception {
+        File file = folder.resolve("tasks.log").toFile();
+        
+        PersistentTaskStore store = new PersistentTaskStore(file);
+        store.load();
+        for (int i = 0; i < 100; i++) {
+            store.add(task(i));
+        }
+        // Checkpoints pile up without triggering a runtime compaction
+        for (int i = 0; i < 2000; i++) {
+            store.checkpoint(i);
+        }
+        store.close();
+        long length = file.length();
+        
+        PersistentTaskStore reloaded = new PersistentTaskStore(file);
+        assertEquals(100, reloaded.load().size());
+        reloaded.close();
+        
+        assertEquals(1999L, reloaded.getLastCheckpoint());
+        assertTrue(file.length() < length / 2);
+    }
+    
+    @Test
+    void removingMostTasksCompactsAtRuntime() throws Exception {
+        File file = folder.resolve("tasks.log").toFile();
+        
+        PersistentTaskStore store = new PersistentTaskStore(file);
+        store.load();
+        for (int i = 0; i < 3000; i++) {
+            store.add(task(i));
+        }
+        store.flush();
+        long full = file.length();
+        
+        for (int i = 0; i < 2900; i++) {
+            store.remove(task(i).getId());
+        }
+        store.close();
+        assertTrue(file.length() < full / 2);
+        
+        PersistentTaskStore reloaded = new PersistentTaskStore(file);
+        assertEquals(100, reloaded.load().size());
+        reloaded.close();
+    }
+    
+    @Test
+    void recordsAppendedDuringACompactionAreKept() throws Exception {
+        File file = folder.resolve("tasks.log").toFile();
+        int count = 20_000;
+        
+        PersistentTaskStore store = new PersistentTaskStore(file);
+        store.load();
+        for (int i = 0; i < count; i++) {
+            store.add(task(i));
+        }
+        store.flush();
+        long full = file.length();
+        
+        // Removing most tasks compacts in the background while more changes arrive
+        Set<UUID> expected = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            if (i % 10 == 0) {
+                expected.add(task(i).getId());
+            } else {
+                store.remove(task(i).getId());
+            }
+            if (i % 100 == 0) {
+                store.add(task(count + i));
+                expected.add(task(count + i).getId());
+            }
+        }
+        store.close();
+        assertTrue(file.length() < full / 2);
+        
+        PersistentTaskStore reloaded = new PersistentTaskStore(file);
+        assertEquals(expected, byId(reloaded.load()).keySet());
+        reloaded.close();
+    }
+    
+    @Test
+    void hundredThousandTasksAreRestoredWithinASecond() throws Exception {
+        File dataFolder = folder.toFile();
+        File file = new File(dataFolder, "data/scheduled-tasks.log");
+        int count = 100_000;
+        long now = System.currentTimeMillis();
+        
+        PersistentTaskStore store = new PersistentTaskStore(file);
+        store.load();
+        for (int i = 0; i < count; i++) {
+            PersistedTask task = task(i);
+            // Due within the next hour, so each is put back on the wheel rather than caught up
+            store.add(new PersistedTask(task.getId(), task.getScriptName(), task.getArgs(), null,
+                task.getVariables(), now + 3_600_000L - i, task.getPeriod()));
+        }
+        store.close();
+        long length = file.length();
+        
+        try (TestEngine test = new TestEngine(config -> config.set("scheduler.persistent.enabled", true), dataFolder)) {
+            // Reading the log at startup leaves it as it is
+            assertEquals(length, file.length());
+            
+            Script script = test.parse("script", "set {ran} to 1");
+            ScriptManager scripts = mock(ScriptManager.class, withSettings().stubOnly());
+            when(scripts.getScript(anyString())).thenReturn(script);
+            when(test.getPlugin().getScriptManager()).thenReturn(scripts);
+            
+            // Garbage left by reading the log is not the restore's to collect
+            System.gc();
+            long started = System.nanoTime();
+            test.getScheduler().restorePersistentTasks();
+            long elapsed = System.nanoTime() - started;
+            
+            assertEquals(count, test.getScheduler().getActiveTaskCount());
+            assertTrue(elapsed < TimeUnit.SECONDS.toNanos(1), "Restored " + count + " tasks in " + elapsed / 1_000_000 + " ms");
+        }
+    }
+}
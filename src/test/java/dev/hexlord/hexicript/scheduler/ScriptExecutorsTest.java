@@ -0,0 +1,82 @@
+package dev.hexlord.hexicript.scheduler;
+
+import dev.hexlord.hexicript.TestServer;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScriptExecutorsTest {
+    
+    private static final int SCRIPTS = 10_000;
+    private static final int THREADS = 200;
+    private static final long SLEEP_MILLIS = 100;
+    
+    private static YamlConfiguration config(ExecutionMode mode) {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("performance.execution_mode", mode.name());
+        config.set("performance.thread_pool_size", THREADS);
+        config.set("performance.max_concurrent_scripts", SCRIPTS);
+        return config;
+    }
+    
+    /**
+     * Run scripts that each block for a while, as on a database query
+     * @return How long they took, in milliseconds
+     */
+    private static long runSleepingScripts(ExecutorService executor) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(SCRIPTS);
+        long start = System.nanoTime();
+        for (int i = 0; i < SCRIPTS; i++) {
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(SLEEP_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+    
+    @Test
+    void tenThousandSleepingScriptsOnBothModes() throws InterruptedException {
+        TestServer.install();
+        ExecutorService probe = VirtualThreads.newExecutor("probe");
+        boolean virtualThreads = probe != null;
+        if (probe != null) {
+            probe.shutdown();
+        }
+        
+        ExecutorService platform = ScriptExecutors.create(config(ExecutionMode.PLATFORM), "test-platform");
+        ExecutorService virtual = ScriptExecutors.create(config(ExecutionMode.VIRTUAL), "test-virtual");
+        try {
+            // Without virtual threads, e.g. on Java 17, VIRTUAL falls back to the platform pool
+            assertEquals(!virtualThreads, virtual instanceof ThreadPoolExecutor);
+            
+            long platformMillis = runSleepingScripts(platform);
+            long virtualMillis = runSleepingScripts(virtual);
+            
+            // Each pool thread is held for the whole sleep of one script at a time
+            long held = SCRIPTS / THREADS * SLEEP_MILLIS;
+            assertTrue(platformMillis >= held, "platform pool took " + platformMillis + " ms");
+            if (virtualThreads) {
+                // A sleeping virtual thread parks and lets go of its carrier
+                assertTrue(virtualMillis < held / 2, "virtual threads took " + virtualMillis + " ms");
+            } else {
+                assertTrue(virtualMillis >= held, "fallback pool took " + virtualMillis + " ms");
+            }
+        } finally {
+            platform.shutdownNow();
+            virtual.shutdownNow();
+        }
+    }
+}
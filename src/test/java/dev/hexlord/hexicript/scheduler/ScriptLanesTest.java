@@ -0,0 +1,139 @@
+package dev.hexlord.hexicript.scheduler;
+
+import dev.hexlord.hexicript.TestServer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ScriptLanesTest {
+    
+    private ManualPool pool;
+    private ScriptLanes lanes;
+    
+    /**
+     * Pool that runs its work only when asked and can be made to refuse it
+     */
+    private static final class ManualPool implements Executor {
+        private final Queue<Runnable> queue = new ArrayDeque<>();
+        private boolean rejecting;
+        // Runs once inside the next refused call, standing in for another submitting thread
+        private Runnable onReject;
+        
+        @Override
+        public void execute(Runnable command) {
+            if (rejecting) {
+                Runnable hook = onReject;
+                onReject = null;
+                if (hook != null) {
+                    hook.run();
+                }
+                throw new RejectedExecutionException("saturated");
+            }
+            queue.add(command);
+        }
+        
+        void runAll() {
+            Runnable command;
+            while ((command = queue.poll()) != null) {
+                command.run();
+            }
+        }
+    }
+   
+   @BeforeAll
+    static void installServer() {
+        TestServer.install();
+    }
+    
+    @BeforeEach
+    void setUp() {
+        pool = new ManualPool();
+        lanes = new ScriptLanes(pool, 4, 1000);
+    }
+    
+    @Test
+    void runsWorkOfOneScriptInSubmissionOrder() {
+        List<Integer> ran = new ArrayList<>();
+        Executor lane = lanes.laneFor("example");
+        for (int i = 0; i < 100; i++) {
+            int index = i;
+            lane.execute(() -> ran.add(index));
+        }
+        
+        pool.runAll();
+        
+        assertEquals(100, ran.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) ran.get(i));
+        }
+        assertEquals(0, lanes.getPendingCount());
+    }
+    
+    @Test
+    void handsBackWorkThePoolRefuses() {
+        pool.rejecting = true;
+        
+        assertThrows(RejectedExecutionException.class, () -> lanes.laneFor("example").execute(() -> { }));
+        assertEquals(0, lanes.getPendingCount());
+    }
+    
+    @Test
+    void retriesALaneWhoseRescheduleWasRefused() {
+        List<Integer> ran = new ArrayList<>();
+        Executor lane = lanes.laneFor("example");
+        for (int i = 0; i < 40; i++) {
+            int index = i;
+            lane.execute(() -> ran.add(index));
+        }
+        
+        // The first batch runs, then the pool refuses the drain of the rest
+        pool.rejecting = true;
+        Runnable drain = pool.queue.poll();
+        drain.run();
+        assertEquals(32, ran.size());
+        assertEquals(8, lanes.getPendingCount());
+        
+        lanes.resumeStalled();
+        assertEquals(0, pool.queue.size());
+        
+        pool.rejecting = false;
+        lanes.resumeStalled();
+        pool.runAll();
+        
+        assertEquals(40, ran.size());
+        assertEquals(0, lanes.getPendingCount());
+        
+        // Nothing is left to retry
+        lanes.resumeStalled();
+        assertEquals(0, pool.queue.size());
+    }
+    
+    @Test
+    void retriesWorkQueuedBehindARefusedSubmission() {
+        List<String> ran = new ArrayList<>();
+        Executor lane = lanes.laneFor("example");
+        
+        // Another thread queues its work while this submission holds the schedule, then the pool refuses it
+        pool.rejecting = true;
+        pool.onReject = () -> lane.execute(() -> ran.add("other"));
+        assertThrows(RejectedExecutionException.class, () -> lane.execute(() -> ran.add("refused")));
+        assertEquals(1, lanes.getPendingCount());
+        
+        pool.rejecting = false;
+        lanes.resumeStalled();
+        pool.runAll();
+        
+        assertEquals(List.of("other"), ran);
+        assertEquals(0, lanes.getPendingCount());
+    }
+}
@@ -0,0 +1,124 @@
+package dev.hexlord.hexicript.scheduler;
+
+import dev.hexlord.hexicript.TestEngine;
+import dev.hexlord.hexicript.core.ScriptEngine;
+import dev.hexlord.hexicript.core.ScriptManager;
+import dev.hexlord.hexicript.core.execution.CancellationToken;
+import dev.hexlord.hexicript.core.execution.ExecutionContext;
+import dev.hexlord.hexicript.core.script.Script;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class ScriptSchedulerTest {
+    
+    private static Object global(TestEngine test, String name) {
+        return test.getEngine().getVariableManager().getVariable(name, new ExecutionContext(null, test.getEngine().getVariableManager()));
+    }
+    
+    @Test
+    void cancellingATaskStopsTheRunItStarted() {
+        try (TestEngine test = new TestEngine()) {
+            ScriptEngine engine = test.getEngine();
+            Script script = test.parse("delayed", "wait 100 ticks\nset {after} to 1");
+            
+            List<Supplier<ScriptTask>> schedules = List.of(
+                () -> test.getScheduler().runLater(script, 1),
+                () -> test.getScheduler().runRepeating(script, 1, 200),
+                () -> test.getScheduler().runAsync(script, null));
+            
+            for (Supplier<ScriptTask> schedule : schedules) {
+                ScriptTask task = schedule.get();
+                test.tickUntil(() -> engine.getSuspendedExecutionCount() == 1, 10_000);
+                assertNotNull(task.getCancellationToken());
+                
+                assertTrue(test.getScheduler().cancelTask(task.getTaskId()));
+                test.tickUntil(() -> engine.getSuspendedExecutionCount() == 0, 10_000);
+                assertTrue(task.getCancellationToken().isCancelled());
+            }
+            
+            assertNull(global(test, "{after}"));
+            assertEquals(0, test.getScheduler().getActiveTaskCount());
+        }
+    }
+    
+    @Test
+    void eachRunGetsItsOwnToken() {
+        try (TestEngine test = new TestEngine()) {
+            Script script = test.parse("counting", "add 1 to {runs}");
+            ScriptTask task = test.getScheduler().runRepeating(script, 1, 1);
+            
+            test.tickUntil(() -> task.getCancellationToken() != null, 10_000);
+            CancellationToken first = task.getCancellationToken();
+            test.tickUntil(() -> task.getCancellationToken() != first, 10_000);
+            
+            // Cancelling the task cancels its latest run only, earlier runs are already done
+            test.getScheduler().cancelTask(task.getTaskId());
+            assertFalse(first.isCancelled());
+            assertTrue(task.getCancellationToken().isCancelled());
+        }
+    }
+    
+    @Test
+    void asyncTasksHandTheirCallbackToTheMainThread() {
+        try (TestEngine test = new TestEngine()) {
+            Script script = test.parse("async", "set {ran} to 1");
+            Thread main = Thread.currentThread();
+            AtomicBoolean calledOnMain = new AtomicBoolean();
+            
+            test.getScheduler().runAsync(script, result -> calledOnMain.set(Thread.currentThread() == main));
+            
+            test.tickUntil(calledOnMain::get, 10_000);
+            assertEquals(0, test.getScheduler().getActiveTaskCount());
+        }
+    }
+    
+    @Test
+    void scriptsScheduleRunsThatSurviveARestart(@TempDir File dataFolder) {
+        Consumer<YamlConfiguration> persistent = config -> config.set("scheduler.persistent.enabled", true);
+        
+        try (TestEngine test = new TestEngine(persistent, dataFolder)) {
+            Script target = loadScripts(test, "target", "set {seen} to 1");
+            Script scheduling = test.parse("scheduling", "run \"target\" in 100 ticks persistently\nrun \"target\" in 1 tick");
+            test.getEngine().executeScript(scheduling, new ExecutionContext(null, test.getEngine().getVariableManager()));
+            
+            // The short run publishes {seen} before it finishes and leaves the active tasks
+            test.tickUntil(() -> global(test, "{seen}") != null && test.getScheduler().getActiveTaskCount(target) == 1, 10_000);
+        }
+        
+        // The persistent run is still due after the restart
+        try (TestEngine test = new TestEngine(persistent, dataFolder)) {
+            loadScripts(test, "target", "set {seen} to 2");
+            test.getScheduler().restorePersistentTasks();
+            
+            test.tickUntil(() -> Integer.valueOf(2).equals(global(test, "{seen}")), 10_000);
+            assertEquals(0, test.getScheduler().getActiveTaskCount());
+        }
+    }
+    
+    /**
+     * Make a script the only one the script manager knows
+     */
+    private static Script loadScripts(TestEngine test, String name, String code) {
+        Script script = test.parse(name, code);
+        ScriptManager scripts = mock(ScriptManager.class, withSettings().stubOnly());
+        when(scripts.getScript(name)).thenReturn(script);
+        when(test.getPlugin().getScriptManager()).thenReturn(scripts);
+        return script;
+    }
+}
@@ -0,0 +1,188 @@
+package dev.hexlord.hexicript.scheduler;
+
+import dev.hexlord.hexicript.TestServer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+    
+    private TimingWheel wheel;
+   
+   @BeforeAll
+    static void installServer() {
+        TestServer.install();
+    }
+    
+    @BeforeEach
+    void setUp() {
+        wheel = new TimingWheel(Thread.currentThread());
+    }
+    
+    private void advance(long ticks) {
+        for (long i = 0; i < ticks; i++) {
+            wheel.tick();
+        }
+    }
+    
+    @Test
+    void runsEachTimerOnItsDeadlineAcrossCascades() {
+        long[] delays = {1, 2, 63, 64, 65, 127, 4095, 4096, 4097, 262143, 262144, 300000};
+        long[] ranAt = new long[delays.length];
+        
+        for (int i = 0; i < delays.length; i++) {
+            int index = i;
+            wheel.schedule(() -> ranAt[index] = wheel.getCurrentTick(), delays[i], 0);
+        }
+        assertEquals(delays.length, wheel.getSize());
+        
+        advance(300000);
+        
+        for (int i = 0; i < delays.length; i++) {
+            assertEquals(delays[i], ranAt[i], "timer with delay " + delays[i]);
+        }
+        assertEquals(0, wheel.getSize());
+    }
+    
+    @Test
+    void delayBelowOneTickRunsOnNextTick() {
+        AtomicInteger runs = new AtomicInteger();
+        wheel.schedule(runs::incrementAndGet, 0, 0);
+        
+        wheel.tick();
+        
+        assertEquals(1, runs.get());
+    }
+    
+    @Test
+    void cancelledTimerNeverRuns() {
+        AtomicInteger runs = new AtomicInteger();
+        TimingWheel.Timer near = wheel.schedule(runs::incrementAndGet, 10, 0);
+        TimingWheel.Timer far = wheel.schedule(runs::incrementAndGet, 5000, 0);
+        
+        near.cancel();
+        far.cancel();
+        
+        assertTrue(near.isCancelled());
+        assertEquals(0, wheel.getSize());
+        advance(6000);
+        assertEquals(0, runs.get());
+    }
+    
+    @Test
+    void timerCancelledFromAnotherThreadIsDropped() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        TimingWheel.Timer timer = wheel.schedule(runs::incrementAndGet, 100, 0);
+        
+        Thread other = new Thread(timer::cancel);
+        other.start();
+        other.join();
+        
+        advance(200);
+        assertEquals(0, runs.get());
+        assertEquals(0, wheel.getSize());
+    }
+    
+    @Test
+    void timerScheduledFromAnotherThreadIsFiledOnNextTick() throws InterruptedException {
+        List<Long> ranAt = new ArrayList<>();
+        advance(10);
+        
+        Thread other = new Thread(() -> wheel.schedule(() -> ranAt.add(wheel.getCurrentTick()), 5, 0));
+        other.start();
+        other.join();
+        assertEquals(1, wheel.getIncomingCount());
+        
+        advance(20);
+        assertEquals(List.of(15L), ranAt);
+    }
+    
+    @Test
+    void repeatingTimerIsRefiledEveryPeriod() {
+        List<Long> ranAt = new ArrayList<>();
+        TimingWheel.Timer timer = wheel.schedule(() -> ranAt.add(wheel.getCurrentTick()), 3, 70);
+        
+        advance(3 + 70 * 3);
+        assertEquals(List.of(3L, 73L, 143L, 213L), ranAt);
+        assertTrue(timer.isRepeating());
+        
+        timer.cancel();
+        advance(500);
+        assertEquals(4, ranAt.size());
+    }
+    
+    @Test
+    void repeatingTimerCanCancelItself() {
+        AtomicInteger runs = new AtomicInteger();
+        TimingWheel.Timer[] self = new TimingWheel.Timer[1];
+        self[0] = wheel.schedule(() -> {
+            if (runs.incrementAndGet() == 3) {
+                self[0].cancel();
+            }
+        }, 1, 1);
+        
+        advance(10);
+        assertEquals(3, runs.get());
+        assertEquals(0, wheel.getSize());
+    }
+    
+    @Test
+    void failingTimerDoesNotDropTheRestOfItsSlot() {
+        AtomicInteger runs = new AtomicInteger();
+        wheel.schedule(runs::incrementAndGet, 5, 0);
+        wheel.schedule(() -> {
+            throw new IllegalStateException("boom");
+        }, 5, 0);
+        wheel.schedule(runs::incrementAndGet, 5, 0);
+        
+        advance(5);
+        
+        assertEquals(2, runs.get());
+        assertEquals(0, wheel.getSize());
+    }
+    
+    @Test
+    void failingRepeatingTimerKeepsRepeating() {
+        AtomicInteger runs = new AtomicInteger();
+        TimingWheel.Timer timer = wheel.schedule(() -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("boom");
+        }, 1, 2);
+        
+        advance(9);
+        
+        assertEquals(5, runs.get());
+        assertFalse(timer.isCancelled());
+        assertEquals(1, wheel.getSize());
+    }
+    
+    @Test
+    void hundredThousandTimersRunOnTime() {
+        int count = 100_000;
+        int horizon = 20 * 60 * 10;
+        Random random = new Random(42);
+        long[] expected = new long[count];
+        long[] ranAt = new long[count];
+        
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            expected[i] = 1 + random.nextInt(horizon);
+            wheel.schedule(() -> ranAt[index] = wheel.getCurrentTick(), expected[i], 0);
+        }
+        advance(horizon);
+        
+        for (int i = 0; i < count; i++) {
+            assertEquals(expected[i], ranAt[i]);
+        }
+        assertEquals(0, wheel.getSize());
+    }
+}
@@ -0,0 +1,90 @@
+package dev.hexlord.hexicript.storage;
+
+import dev.hexlord.hexicript.TestServer;
+import dev.hexlord.hexicript.core.variables.VariableKey;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SQLiteVariableStorageTest {
+    
+    @BeforeAll
+    static void installServer() {
+        TestServer.install();
+    }
+    
+    @TempDir
+    Path folder;
+    
+    private SQLiteVariableStorage open(File file, int maxDirtyEntries) throws Exception {
+        return new SQLiteVariableStorage(file, 60_000, 500, maxDirtyEntries, 0);
+    }
+    
+    private static Map<VariableKey, Object> load(VariableStorage storage) {
+        Map<VariableKey, Object> loaded = new HashMap<>();
+        storage.load(loaded::put);
+        return loaded;
+    }
+    
+    @Test
+    void changesSurviveReopen() throws Exception {
+        File file = folder.resolve("data/variables.db").toFile();
+        
+        SQLiteVariableStorage storage = open(file, 10_000);
+        storage.write(VariableKey.global("coins"), 5);
+        storage.write(VariableKey.global("coins"), 7);
+        storage.write(VariableKey.player("Steve", "home"), "spawn");
+        storage.write(VariableKey.global("gone"), 1L);
+        storage.flush();
+        storage.delete(VariableKey.global("gone"));
+        storage.close();
+        
+        assertTrue(file.exists());
+        assertEquals(1L, storage.getStatistics().get("coalesced_writes"));
+        
+        SQLiteVariableStorage reopened = open(file, 10_000);
+        Map<VariableKey, Object> loaded = load(reopened);
+        reopened.close();
+        
+        assertEquals(2, loaded.size());
+        assertEquals(7, loaded.get(VariableKey.global("coins")));
+        assertEquals("spawn", loaded.get(VariableKey.player("Steve", "home")));
+        assertFalse(loaded.containsKey(VariableKey.global("gone")));
+    }
+    
+    @Test
+    void fullBacklogIsFlushedByTheWriter() throws Exception {
+        File file = folder.resolve("variables.db").toFile();
+        int count = 50_000;
+        
+        SQLiteVariableStorage storage = open(file, 1_000);
+        // Off the main thread the caller flushes once the writer falls behind
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                storage.write(VariableKey.global("key" + i), i);
+            }
+        });
+        writer.start();
+        writer.join();
+        
+        assertTrue((Integer) storage.getStatistics().get("pending_writes") <= 1_001);
+        assertTrue((Long) storage.getStatistics().get("backpressure_events") > 0);
+        storage.close();
+        
+        SQLiteVariableStorage reopened = open(file, 1_000);
+        Map<VariableKey, Object> loaded = load(reopened);
+        reopened.close();
+        
+        assertEquals(count, loaded.size());
+        assertEquals(count - 1, loaded.get(VariableKey.global("key" + (count - 1))));
+    }
+}